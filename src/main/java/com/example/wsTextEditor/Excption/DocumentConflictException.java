@@ -0,0 +1,32 @@
+package com.example.wsTextEditor.Excption;
+
+/**
+ * 文档版本冲突异常
+ * 客户端提交所基于的版本已不是服务器上的最新版本，对应 409
+ */
+public class DocumentConflictException extends RuntimeException {
+
+    /** 响应头：内容哈希，增量保存的基础 */
+    public static final String CONTENT_HASH_HEADER = "X-Content-Hash";
+    /** 响应头：文档版本号，比较并交换保存的基础 */
+    public static final String VERSION_HEADER = "X-Document-Version";
+
+    /** 携带当前版本的响应头名称 */
+    private final String versionHeader;
+    /** 服务器上的当前版本标识 */
+    private final String currentVersion;
+
+    public DocumentConflictException(String message, String versionHeader, String currentVersion) {
+        super(message);
+        this.versionHeader = versionHeader;
+        this.currentVersion = currentVersion;
+    }
+
+    public String getVersionHeader() {
+        return versionHeader;
+    }
+
+    public String getCurrentVersion() {
+        return currentVersion;
+    }
+}
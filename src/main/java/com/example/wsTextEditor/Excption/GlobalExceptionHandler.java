@@ -3,6 +3,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -43,7 +44,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
     }
 
-    // 5. 处理所有其他未捕获的异常 (兜底)
+    // 5. 处理版本冲突 (DocumentConflictException)，响应头带上服务器当前版本
+    @ExceptionHandler(DocumentConflictException.class)
+    public ResponseEntity<String> handleDocumentConflictException(DocumentConflictException e) {
+        logger.info("Conflict: {}", e.getMessage());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.CONFLICT);
+        if (e.getCurrentVersion() != null) {
+            builder.header(e.getVersionHeader(), e.getCurrentVersion());
+        }
+        return builder.body(e.getMessage());
+    }
+
+    // 6. 处理无效的增量编辑 (InvalidPatchException)：编辑超出内容范围
+    @ExceptionHandler(InvalidPatchException.class)
+    public ResponseEntity<String> handleInvalidPatchException(InvalidPatchException e) {
+        logger.info("Invalid patch: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    // 7. 处理 JPA 乐观锁失败：实体读取后被其他请求修改
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException e) {
+        logger.info("Optimistic locking conflict: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("The document was modified by another request, please retry.");
+    }
+
+    // 8. 处理所有其他未捕获的异常 (兜底)
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGeneralException(Exception e) {
         logger.error("Internal server error: ", e); // 记录堆栈信息
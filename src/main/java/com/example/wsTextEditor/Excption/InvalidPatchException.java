@@ -0,0 +1,12 @@
+package com.example.wsTextEditor.Excption;
+
+/**
+ * 增量编辑无效异常
+ * 编辑的范围超出其所基于的内容，属于客户端请求错误，对应 400
+ */
+public class InvalidPatchException extends RuntimeException {
+
+    public InvalidPatchException(String message) {
+        super(message);
+    }
+}
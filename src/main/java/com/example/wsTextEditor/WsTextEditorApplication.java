@@ -2,15 +2,17 @@ package com.example.wsTextEditor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 
 /**
  * WebSocket文本编辑器应用程序主类
- * 启动Spring Boot应用程序并启用事务管理
+ * 启动Spring Boot应用程序并启用事务管理和定时任务
  */
 @SpringBootApplication
 @EnableTransactionManagement
+@EnableScheduling
 public class WsTextEditorApplication {
 
 	/**
@@ -0,0 +1,72 @@
+package com.example.wsTextEditor.config;
+
+import com.example.wsTextEditor.crdt.CRDTBinaryCodec;
+import com.example.wsTextEditor.crdt.CRDTOperation;
+import com.example.wsTextEditor.crdt.CRDTUpdate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CRDT 二进制消息转换器
+ * 只处理 content-type 为 application/octet-stream;codec=crdt 的消息，其余消息仍交给默认的 JSON 转换器。
+ * 使用 octet-stream 主类型是因为 STOMP 只有在该类型下才以二进制 WebSocket 帧发送消息体。
+ */
+public class CRDTBinaryMessageConverter extends AbstractMessageConverter {
+
+    public static final MimeType CRDT_MIME_TYPE =
+            new MimeType("application", "octet-stream", Map.of("codec", "crdt"));
+
+    public CRDTBinaryMessageConverter() {
+        super(CRDT_MIME_TYPE);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CRDTUpdate.class.equals(clazz) || CRDTOperation.class.equals(clazz);
+    }
+
+    @Override
+    protected boolean supportsMimeType(MessageHeaders headers) {
+        // 必须带 codec=crdt 参数，普通的 octet-stream 消息不归本转换器处理
+        MimeType mimeType = getMimeType(headers);
+        return mimeType != null && CRDT_MIME_TYPE.equalsTypeAndSubtype(mimeType)
+                && "crdt".equals(mimeType.getParameter("codec"));
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] bytes)) {
+            return null;
+        }
+        CRDTUpdate update;
+        try {
+            update = CRDTBinaryCodec.decode(bytes);
+        } catch (RuntimeException e) {
+            throw new MessageConversionException(message, "Invalid CRDT frame: " + e.getMessage(), e);
+        }
+        if (CRDTOperation.class.equals(targetClass)) {
+            if (update.getOperations().size() != 1) {
+                throw new MessageConversionException(message, "Expected a single CRDT operation");
+            }
+            return update.getOperations().get(0);
+        }
+        return update;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        if (payload instanceof CRDTOperation operation) {
+            return CRDTBinaryCodec.encode(new CRDTUpdate(new ArrayList<>(List.of(operation)), Collections.emptyMap()));
+        }
+        return CRDTBinaryCodec.encode((CRDTUpdate) payload);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.wsTextEditor.config;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.DocumentPermissionService;
+import com.example.wsTextEditor.service.DocumentRoom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * STOMP 文档权限拦截器
+ * 订阅 /topic/doc/{uniqueId}/** 和发送 /app/doc/{uniqueId}/sync 需要查看权限（所有者或协作者），
+ * 发送其他 /app/doc/{uniqueId}/** 操作需要编辑权限；房间副本带有文档内容，不能只凭登录访问。
+ * 判定结果按文档缓存在会话属性中，连接期间的每条消息不再查询数据库
+ */
+@Component
+public class DocumentChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentChannelInterceptor.class);
+
+    /** 发送目的地前缀，/app/doc/{uniqueId}/... */
+    private static final String APP_PREFIX = "/app/doc/";
+    private static final String SYNC_SUFFIX = "/sync";
+
+    /** 会话属性：文档 uniqueId -> 该会话的访问级别 */
+    static final String ACCESS_ATTRIBUTE = "stomp.documentAccess";
+
+    /** 会话对某个文档的访问级别 */
+    enum Access {
+        NONE, VIEW, EDIT
+    }
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentPermissionService documentPermissionService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        String destination = accessor.getDestination();
+        String uniqueId;
+        Access required;
+        if (command == StompCommand.SUBSCRIBE) {
+            uniqueId = DocumentRoom.parseUniqueId(destination);
+            required = Access.VIEW;
+        } else if (command == StompCommand.SEND) {
+            uniqueId = DocumentRoom.parseUniqueId(destination != null && destination.startsWith(APP_PREFIX)
+                    ? DocumentRoom.DESTINATION_PREFIX + destination.substring(APP_PREFIX.length()) : null);
+            required = destination != null && destination.endsWith(SYNC_SUFFIX) ? Access.VIEW : Access.EDIT;
+        } else {
+            return message;
+        }
+        if (uniqueId == null) {
+            return message;
+        }
+        Access access = access(accessor, uniqueId);
+        if (access.compareTo(required) < 0) {
+            logger.warn("Rejecting STOMP {} to {} from {}: access {}", command, destination,
+                    accessor.getUser() != null ? accessor.getUser().getName() : accessor.getSessionId(), access);
+            throw new AccessDeniedException("No " + required + " access to document " + uniqueId);
+        }
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Access access(StompHeaderAccessor accessor, String uniqueId) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            return lookup(accessor.getUser(), uniqueId);
+        }
+        Map<String, Access> cache = (Map<String, Access>) attributes.computeIfAbsent(ACCESS_ATTRIBUTE,
+                key -> new ConcurrentHashMap<String, Access>());
+        return cache.computeIfAbsent(uniqueId, id -> lookup(accessor.getUser(), id));
+    }
+
+    /**
+     * 只有所有者和协作者可以访问；getUserPermissionLevel 对任何用户都回退为 VIEWER，不能用于此处
+     */
+    private Access lookup(Principal principal, String uniqueId) {
+        if (principal == null) {
+            return Access.NONE;
+        }
+        Optional<Document> document = documentRepository.findByUniqueId(uniqueId);
+        Optional<User> user = userRepository.findByUsername(principal.getName());
+        if (document.isEmpty() || user.isEmpty()) {
+            return Access.NONE;
+        }
+        PermissionLevel level = documentPermissionService.getGrantedPermissionLevel(document.get(), user.get());
+        if (level == null) {
+            return Access.NONE;
+        }
+        return level == PermissionLevel.OWNER || level == PermissionLevel.EDITOR ? Access.EDIT : Access.VIEW;
+    }
+}
@@ -18,6 +18,8 @@ public class RabbitMQConfig {
     public static final String COMMENT_QUEUE = "comment.queue";
     public static final String TASK_ROUTING_KEY = "task.notify";
     public static final String COMMENT_ROUTING_KEY = "comment.notify";
+    /** 缓存失效广播交换机，每个节点绑定自己的匿名队列 */
+    public static final String CACHE_INVALIDATION_EXCHANGE = "cache.invalidation.exchange";
 
     // --- 队列和交换机定义 (保持不变) ---
     @Bean
@@ -50,6 +52,23 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(commentQueue()).to(commentExchange()).with(COMMENT_ROUTING_KEY);
     }
 
+    // --- 缓存失效总线：扇出交换机 + 每个节点一个自动删除的匿名队列 ---
+    @Bean
+    public FanoutExchange cacheInvalidationExchange() {
+        return new FanoutExchange(CACHE_INVALIDATION_EXCHANGE);
+    }
+
+    @Bean
+    public Queue cacheInvalidationQueue() {
+        // 非持久、独占、自动删除：节点下线后队列随连接消失，重启后只接收新的失效事件
+        return new AnonymousQueue(new Base64UrlNamingStrategy("cache.invalidation."));
+    }
+
+    @Bean
+    public Binding cacheInvalidationBinding() {
+        return BindingBuilder.bind(cacheInvalidationQueue()).to(cacheInvalidationExchange());
+    }
+
     // --- 新增的核心配置：JSON转换器 ---
 
     /**
@@ -1,6 +1,7 @@
 package com.example.wsTextEditor.config;
 
 import com.example.wsTextEditor.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,6 +15,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.core.userdetails.User;
 
+import java.util.List;
+
 /**
  * 安全配置类
  * 配置Spring Security的安全策略，包括认证、授权、登录页面等
@@ -22,6 +25,15 @@ import org.springframework.security.core.userdetails.User;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * 管理员权限，索引重建端点只对管理员开放
+     */
+    public static final String ADMIN_AUTHORITY = "ADMIN";
+
+    // 拥有管理员权限的用户名，逗号分隔
+    @Value("${user.admin-usernames:}")
+    private List<String> adminUsernames;
+
     /**
      * 配置安全过滤链
      * @param http HttpSecurity对象
@@ -35,6 +47,7 @@ public class SecurityConfig {
             .authorizeHttpRequests(authorizeRequests ->
                 authorizeRequests
                     .requestMatchers("/api/auth/**", "/login", "/register", "/forgot-password", "/css/**", "/js/**", "/style.css", "/h2-console/**","/actuator/prometheus").permitAll()
+                    .requestMatchers("/actuator/searchreindex/**").hasAuthority(ADMIN_AUTHORITY)
                     .anyRequest().authenticated()
             )
             .formLogin(formLogin ->
@@ -64,10 +77,11 @@ public class SecurityConfig {
     public UserDetailsService userDetailsService(UserRepository userRepository) {
         return username -> userRepository.findByUsername(username)
             .map(user -> {
-                // 移除对role字段的依赖，使用默认权限
+                // 移除对role字段的依赖，使用默认权限；配置中的管理员额外拥有管理员权限
                 return User.withUsername(user.getUsername())
                         .password(user.getPassword())
-                        .authorities("USER")  // 使用默认权限
+                        .authorities(adminUsernames.contains(user.getUsername())
+                                ? new String[]{"USER", ADMIN_AUTHORITY} : new String[]{"USER"})
                         .build();
             })
             .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
@@ -0,0 +1,66 @@
+package com.example.wsTextEditor.config;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按慢消费者策略装饰会话的 STOMP 处理器
+ * 每个会话有自己的发送缓冲，慢连接只占用自己的缓冲，不阻塞出站线程池；
+ * 发送超过时间限制时关闭连接，缓冲超过大小限制时按策略关闭连接（TERMINATE）或丢弃最早的消息（DROP）
+ */
+public class SlowConsumerWebSocketHandler extends SubProtocolWebSocketHandler {
+
+    private final ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy;
+
+    /** 会话ID -> 装饰后的会话，用于统计缓冲积压 */
+    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+    public SlowConsumerWebSocketHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                        ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.overflowStrategy = overflowStrategy;
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        ConcurrentWebSocketSessionDecorator decorated = new ConcurrentWebSocketSessionDecorator(
+                session, getSendTimeLimit(), getSendBufferSizeLimit(), overflowStrategy);
+        sessions.put(session.getId(), decorated);
+        return decorated;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        sessions.remove(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    /**
+     * 所有会话发送缓冲中等待写出的字节数之和
+     */
+    public long getBufferedBytes() {
+        long total = 0;
+        for (ConcurrentWebSocketSessionDecorator session : sessions.values()) {
+            total += session.getBufferSize();
+        }
+        return total;
+    }
+
+    /**
+     * 积压最多的会话的缓冲字节数
+     */
+    public long getMaxBufferedBytes() {
+        long max = 0;
+        for (ConcurrentWebSocketSessionDecorator session : sessions.values()) {
+            max = Math.max(max, session.getBufferSize());
+        }
+        return max;
+    }
+}
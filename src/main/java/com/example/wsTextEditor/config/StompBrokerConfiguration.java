@@ -0,0 +1,75 @@
+package com.example.wsTextEditor.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * STOMP 消息代理基础配置
+ * 代替 {@code @EnableWebSocketMessageBroker}，把会话处理器换成 {@link SlowConsumerWebSocketHandler}
+ * 以应用慢消费者策略，并导出通道线程池队列深度和会话发送缓冲积压指标；
+ * 代理、端点、通道线程池大小和传输限制仍由 {@link WebSocketConfig} 配置
+ */
+@Configuration
+public class StompBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    /** 会话发送缓冲超限时的处理：terminate 关闭连接，drop 丢弃最早的消息 */
+    @Value("${stomp.transport.slow-consumer-policy:terminate}")
+    private String slowConsumerPolicy;
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(
+            @Qualifier("clientInboundChannel") AbstractSubscribableChannel clientInboundChannel,
+            @Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel) {
+        SlowConsumerWebSocketHandler handler = new SlowConsumerWebSocketHandler(clientInboundChannel, clientOutboundChannel,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.valueOf(slowConsumerPolicy.toUpperCase(Locale.ROOT)));
+        handler.setPhase(getPhase());
+        return handler;
+    }
+
+    /**
+     * STOMP 通道指标：入站/出站线程池的排队任务数和活跃线程数，以及会话发送缓冲的积压字节数
+     */
+    @Bean
+    public MeterBinder stompChannelMetrics(@Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+                                           @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor,
+                                           @Qualifier("subProtocolWebSocketHandler") WebSocketHandler webSocketHandler) {
+        return registry -> {
+            bindExecutor(registry, "inbound", inboundExecutor);
+            bindExecutor(registry, "outbound", outboundExecutor);
+            if (webSocketHandler instanceof SlowConsumerWebSocketHandler handler) {
+                Gauge.builder("stomp.session.buffer.bytes", handler, SlowConsumerWebSocketHandler::getBufferedBytes)
+                        .description("Bytes waiting in all STOMP session send buffers")
+                        .register(registry);
+                Gauge.builder("stomp.session.buffer.max.bytes", handler, SlowConsumerWebSocketHandler::getMaxBufferedBytes)
+                        .description("Bytes waiting in the most backed-up STOMP session send buffer")
+                        .register(registry);
+            }
+        };
+    }
+
+    private static void bindExecutor(MeterRegistry registry, String channel, Executor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            Gauge.builder("stomp.channel.queue.size", pool, p -> p.getThreadPoolExecutor().getQueue().size())
+                    .tag("channel", channel)
+                    .description("Messages queued for the STOMP channel thread pool")
+                    .register(registry);
+            Gauge.builder("stomp.channel.active.threads", pool, ThreadPoolTaskExecutor::getActiveCount)
+                    .tag("channel", channel)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.wsTextEditor.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Base64UrlNamingStrategy;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * STOMP 集群代理配置（stomp.broker.mode=cluster 时生效）
+ * 每个节点仍使用内存代理服务本地连接，应用发往 /topic 和 /user 的消息再经 RabbitMQ 直连交换机转发到其他节点。
+ * 路由键即 STOMP 目的地（用户消息为 /user/{用户名}），节点只为本地有订阅者的目的地绑定自己的匿名队列。
+ * 文档房间（CRDT 副本和 Yjs 房间）的更新走另一个交换机，路由键为 {类型}.{文档 uniqueId}，节点在本地房间存在期间绑定
+ */
+@Configuration
+@ConditionalOnProperty(name = "stomp.broker.mode", havingValue = "cluster")
+public class StompClusterBrokerConfig {
+
+    public static final String STOMP_CLUSTER_EXCHANGE = "stomp.cluster.exchange";
+    public static final String ROOM_CLUSTER_EXCHANGE = "room.cluster.exchange";
+
+    @Bean
+    public DirectExchange stompClusterExchange() {
+        return new DirectExchange(STOMP_CLUSTER_EXCHANGE);
+    }
+
+    @Bean
+    public Queue stompClusterQueue() {
+        // 非持久、独占、自动删除：节点下线后队列及其绑定随连接消失
+        return new AnonymousQueue(new Base64UrlNamingStrategy("stomp.cluster."));
+    }
+
+    @Bean
+    public DirectExchange roomClusterExchange() {
+        return new DirectExchange(ROOM_CLUSTER_EXCHANGE);
+    }
+
+    @Bean
+    public Queue roomClusterQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy("room.cluster."));
+    }
+}
@@ -1,19 +1,83 @@
 package com.example.wsTextEditor.config;
 
+import com.example.wsTextEditor.yjs.YjsHandshakeInterceptor;
+import com.example.wsTextEditor.yjs.YjsWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.*;
 import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
 import org.springframework.web.socket.WebSocketHandler;
 
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * WebSocket配置类
- * 配置WebSocket消息代理和STOMP端点
+ * 配置WebSocket消息代理和STOMP端点，以及 Yjs 协同编辑使用的原生 WebSocket 端点；
+ * STOMP 基础设施由 {@link StompBrokerConfiguration} 注册
  */
 @Configuration
-@EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer, WebSocketConfigurer {
+
+    @Autowired
+    private YjsWebSocketHandler yjsWebSocketHandler;
+
+    @Autowired
+    private YjsHandshakeInterceptor yjsHandshakeInterceptor;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private DocumentChannelInterceptor documentChannelInterceptor;
+
+    /** 入站通道（处理客户端发来的消息）线程池 */
+    @Value("${stomp.channel.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+    @Value("${stomp.channel.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+    @Value("${stomp.channel.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+    /** 启用虚拟线程时入站通道同时处理的消息数上限，达到上限后读取线程等待 */
+    @Value("${stomp.channel.inbound.virtual-concurrency-limit:2000}")
+    private int inboundVirtualConcurrencyLimit;
+
+    /** 出站通道（向客户端写消息）线程池 */
+    @Value("${stomp.channel.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+    @Value("${stomp.channel.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+    @Value("${stomp.channel.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    /** 单个会话一次发送允许的最长时间（毫秒），超过即断开 */
+    @Value("${stomp.transport.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+    /** 单个会话发送缓冲上限（字节），超过后按慢消费者策略处理 */
+    @Value("${stomp.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    /** 入站 STOMP 消息大小上限（字节） */
+    @Value("${stomp.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    /**
+     * 注册 Yjs 端点，客户端连接 /yjs/{docId}
+     * @param registry WebSocket处理器注册器
+     */
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(yjsWebSocketHandler, "/yjs/*")
+                .addInterceptors(yjsHandshakeInterceptor);
+    }
 
 
 
@@ -24,17 +88,81 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").withSockJS();
+        // SockJS 只能传输文本帧，二进制 CRDT 客户端使用原生 WebSocket 端点
+        registry.addEndpoint("/ws-bin");
     }
 
     /**
      * 配置消息代理
+     * 各节点都使用内存代理；stomp.broker.mode=cluster 时由 StompClusterBridge 经 RabbitMQ 在节点间转发消息
      * @param config 消息代理注册器
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    /**
+     * 配置传输限制：慢连接的积压受发送时间和缓冲大小约束，超限的会话按 stomp.transport.slow-consumer-policy 处理
+     * @param registration 传输配置
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    /**
+     * 配置入站通道线程池；队列满时由读取连接的线程自己处理，对发送过快的客户端形成背压。
+     * 启用虚拟线程（spring.threads.virtual.enabled 且运行在 Java 21+）时每条消息一个虚拟线程，由并发上限形成背压。
+     * 订阅和发送文档目的地前由 {@link DocumentChannelInterceptor} 检查文档权限
+     * @param registration 通道配置
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(documentChannelInterceptor);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("clientInboundChannel-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inboundVirtualConcurrencyLimit);
+            registration.executor(executor);
+            return;
+        }
+        registration.taskExecutor(callerRunsExecutor())
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    /**
+     * 配置出站通道线程池；写入只进入各会话自己的发送缓冲，慢连接不会占住线程
+     * @param registration 通道配置
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(callerRunsExecutor())
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    private static ThreadPoolTaskExecutor callerRunsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * 注册 CRDT 二进制转换器，返回 true 保留默认的 JSON 等转换器
+     * @param messageConverters 消息转换器列表
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new CRDTBinaryMessageConverter());
+        return true;
+    }
+
 
 }
\ No newline at end of file
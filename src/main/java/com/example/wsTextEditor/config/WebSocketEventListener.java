@@ -1,5 +1,6 @@
 package com.example.wsTextEditor.config;
 
+import com.example.wsTextEditor.service.DocumentRoomService;
 import com.example.wsTextEditor.service.WebSocketNotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,8 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 import java.security.Principal;
 
@@ -20,6 +23,9 @@ public class WebSocketEventListener {
     @Autowired
     private WebSocketNotificationService webSocketNotificationService;
 
+    @Autowired
+    private DocumentRoomService documentRoomService;
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
@@ -33,9 +39,29 @@ public class WebSocketEventListener {
         }
     }
 
+    @EventListener
+    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        try {
+            // 订阅 /topic/doc/{uniqueId} 时增加房间引用计数
+            documentRoomService.subscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId(),
+                    headerAccessor.getDestination());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Subscription to unknown document room {}: {}", headerAccessor.getDestination(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void handleWebSocketUnsubscribeListener(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        documentRoomService.unsubscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+    }
+
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        // 释放该会话持有的全部房间订阅
+        documentRoomService.disconnect(event.getSessionId());
         Principal principal = headerAccessor.getUser();
 
         if (principal != null) {
@@ -5,7 +5,6 @@ import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.DocumentCollaborator;
 import com.example.wsTextEditor.model.User;
 import com.example.wsTextEditor.pojo.CollaboratorInfo;
-import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
 import com.example.wsTextEditor.repository.DocumentRepository;
 import com.example.wsTextEditor.repository.UserRepository;
 import com.example.wsTextEditor.service.ActionLogService;
@@ -18,8 +17,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -39,8 +36,6 @@ public class DocumentCollaboratorController {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private DocumentCollaboratorRepository documentCollaboratorRepository;
-    @Autowired
     private ActionLogService actionLogService;
     // 邀请用户协作API端点（通过邀请UUID）
     @PostMapping("/{documentId}/invite-by-uuid")
@@ -99,21 +94,19 @@ public class DocumentCollaboratorController {
     @PutMapping("/{docId}/collaborators/{userId}/permission")
     public ResponseEntity<String> updateCollaboratorPermission(@PathVariable String docId,
                                                               @PathVariable String userId,
-                                                              @RequestBody Map<String,String> permissionLevelmap
-                                                              )
+                                                              @RequestBody Map<String,String> permissionLevelmap,
+                                                              @AuthenticationPrincipal UserDetails userDetails) throws IllegalAccessException
     {
 
         logger.info("Updating collaborator permission for document {} and user ID {}", docId, userId);
+        User currentUser = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(()->new IllegalArgumentException("Invalid user"));
         Document document = documentRepository.findByUniqueId(docId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid document ID:" + docId));
-        //获取协作者
-       DocumentCollaborator collaborator = documentCollaboratorRepository.findByDocumentAndUserId(document,Long.parseLong(userId))
-               .orElseThrow(()->new IllegalArgumentException("Invalid Argument"+userId+"or"+docId));
        //将字符串转为枚举类
         String permissionStr = permissionLevelmap.get("permissionLevel");
         DocumentCollaborator.PermissionLevel permissionLevel = DocumentCollaborator.PermissionLevel.valueOf(permissionStr);
-        collaborator.setPermissionLevel(permissionLevel);
-       documentCollaboratorRepository.save(collaborator);
+        documentPermissionService.updateCollaboratorPermission(document, currentUser, Long.parseLong(userId), permissionLevel);
        logger.info("Successfully updated collaborator permission for document {} and user ID {} to {}", docId, userId, permissionLevel);
        
         return ResponseEntity.ok("Collaborator permission updated successfully!");
@@ -121,16 +114,15 @@ public class DocumentCollaboratorController {
     }
     //删除文档协作者API端点
     @DeleteMapping("/{docId}/collaborators/{userId}")
-    @Transactional(rollbackFor = Exception.class,propagation = Propagation.REQUIRED)
     public ResponseEntity<String> removeCollaborator(@PathVariable String docId,
                                                     @PathVariable String userId,
-                                                    @AuthenticationPrincipal UserDetails userDetails) {
+                                                    @AuthenticationPrincipal UserDetails userDetails) throws IllegalAccessException {
         logger.info("Removing collaborator {} from document {} by user {}", userId, docId, userDetails.getUsername());
         User currentUser = userRepository.findByUsername(userDetails.getUsername())
                 .orElseThrow(()->new IllegalArgumentException("Invalid user"));
         Document document = documentRepository.findByUniqueId(docId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid document ID:" + docId));
-       documentCollaboratorRepository.deleteByDocumentAndUserId(document,Long.parseLong(userId));
+       documentPermissionService.removeCollaborator(document, currentUser, Long.parseLong(userId));
        actionLogService.logAction("删除文档协作者","删除文档协作者"+"文档的ID:"+docId+"用户ID:"+userId);
        logger.info("Successfully removed collaborator {} from document {}", userId, docId);
        
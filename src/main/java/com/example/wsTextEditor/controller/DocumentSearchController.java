@@ -1,15 +1,15 @@
 package com.example.wsTextEditor.controller;
 
-import com.example.wsTextEditor.model.DocumentSearchEntity;
+import com.example.wsTextEditor.pojo.DocumentSearchPage;
 import com.example.wsTextEditor.service.DocumentSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/search")
 public class DocumentSearchController {
@@ -20,44 +20,59 @@ public class DocumentSearchController {
     private DocumentSearchService documentSearchService;
 
     /**
-     * 根据关键字搜索文档
+     * 根据关键字搜索文档，按相关度排序
      * @param keyword 搜索关键字
-     * @return 匹配的文档列表
+     * @param cursor 上一页返回的 nextCursor
+     * @param size 每页条数
+     * @return 一页当前用户可访问的匹配文档
      */
     @GetMapping("/documents")
-    public ResponseEntity<?> searchDocuments(@RequestParam String keyword) {
+    public ResponseEntity<?> searchDocuments(@RequestParam String keyword,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer size,
+                                             @AuthenticationPrincipal UserDetails userDetails) {
         logger.info("Searching documents with keyword: {}", keyword);
-        List<DocumentSearchEntity> results = documentSearchService.searchByKeyword(keyword);
-        logger.info("Found {} documents matching keyword: {}", results.size(), keyword);
-        return ResponseEntity.ok(results);
+        DocumentSearchPage page = documentSearchService.search(keyword, null, userDetails.getUsername(), cursor, size);
+        logger.info("Found {} documents matching keyword: {}", page.getResults().size(), keyword);
+        return ResponseEntity.ok(page);
     }
 
     /**
-     * 根据编程语言筛选文档
+     * 根据编程语言筛选文档，按更新时间倒序
      * @param language 编程语言
-     * @return 匹配的文档列表
+     * @param cursor 上一页返回的 nextCursor
+     * @param size 每页条数
+     * @return 一页当前用户可访问的匹配文档
      */
     @GetMapping("/documents/language")
-    public ResponseEntity<?> searchDocumentsByLanguage(@RequestParam String language) {
+    public ResponseEntity<?> searchDocumentsByLanguage(@RequestParam String language,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer size,
+                                                       @AuthenticationPrincipal UserDetails userDetails) {
         logger.info("Searching documents by language: {}", language);
-        List<DocumentSearchEntity> results = documentSearchService.searchByLanguage(language);
-        logger.info("Found {} documents with language: {}", results.size(), language);
-        return ResponseEntity.ok(results);
+        DocumentSearchPage page = documentSearchService.search(null, language, userDetails.getUsername(), cursor, size);
+        logger.info("Found {} documents with language: {}", page.getResults().size(), language);
+        return ResponseEntity.ok(page);
     }
 
     /**
-     * 根据关键字和编程语言组合搜索文档
+     * 根据关键字和编程语言组合搜索文档，按相关度排序
      * @param keyword 搜索关键字
      * @param language 编程语言
-     * @return 匹配的文档列表
+     * @param cursor 上一页返回的 nextCursor
+     * @param size 每页条数
+     * @return 一页当前用户可访问的匹配文档
      */
     @GetMapping("/documents/keyword-language")
     public ResponseEntity<?> searchDocumentsByKeywordAndLanguage(
             @RequestParam String keyword,
-            @RequestParam String language) {
+            @RequestParam String language,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @AuthenticationPrincipal UserDetails userDetails) {
         logger.info("Searching documents with keyword: {} and language: {}", keyword, language);
-        List<DocumentSearchEntity> results = documentSearchService.searchByKeywordAndLanguage(keyword, language);
-        logger.info("Found {} documents matching keyword: {} and language: {}", results.size(), keyword, language);
-        return ResponseEntity.ok(results);
+        DocumentSearchPage page = documentSearchService.search(keyword, language, userDetails.getUsername(), cursor, size);
+        logger.info("Found {} documents matching keyword: {} and language: {}", page.getResults().size(), keyword, language);
+        return ResponseEntity.ok(page);
     }
-}
\ No newline at end of file
+}
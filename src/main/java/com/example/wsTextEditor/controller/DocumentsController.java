@@ -1,12 +1,23 @@
 package com.example.wsTextEditor.controller;
 
+import com.example.wsTextEditor.Excption.DocumentConflictException;
 import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.DocumentCollaborator;
 import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.pojo.CacheInvalidationEvent;
+import com.example.wsTextEditor.pojo.DocumentPatch;
+import com.example.wsTextEditor.pojo.DocumentSummary;
+import com.example.wsTextEditor.pojo.TagFacet;
 import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
 import com.example.wsTextEditor.repository.DocumentRepository;
 import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.CacheInvalidationService;
+import com.example.wsTextEditor.service.DocumentContentService;
 import com.example.wsTextEditor.service.DocumentPermissionService;
+import com.example.wsTextEditor.service.DocumentTagService;
+import com.example.wsTextEditor.service.DocumentWriteBehindService;
+import com.example.wsTextEditor.service.OutboxService;
+import com.example.wsTextEditor.service.YjsRoomService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,11 +30,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.nio.file.AccessDeniedException;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -51,6 +60,30 @@ public class DocumentsController {
     @Autowired
     private DocumentCollaboratorRepository documentCollaboratorRepository;
 
+    /** 文档内容延迟写入服务 */
+    @Autowired
+    private DocumentWriteBehindService documentWriteBehindService;
+
+    /** 文档内容存储服务 */
+    @Autowired
+    private DocumentContentService documentContentService;
+
+    /** 文档标签服务 */
+    @Autowired
+    private DocumentTagService documentTagService;
+
+    /** Yjs 房间服务，删除文档时关闭其房间并清理更新日志和快照 */
+    @Autowired
+    private YjsRoomService yjsRoomService;
+
+    /** 集群缓存失效总线，文档元数据变更时通知其他节点 */
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
+
+    /** 事务发件箱，搜索索引更新随文档变更一起提交 */
+    @Autowired
+    private OutboxService outboxService;
+
     /**
      * 保存文档内容
      * @param documentId 文档唯一标识符
@@ -61,7 +94,7 @@ public class DocumentsController {
      * @return 保存结果响应
      */
     @PostMapping("/save")
-    @Transactional(rollbackFor = Exception.class,propagation = Propagation.REQUIRES_NEW)
+    @Transactional(readOnly = true)
     public ResponseEntity<String> saveDocument(@RequestParam String documentId,
                                                @RequestParam String content,
                                                @RequestParam(required = false) String language,
@@ -81,19 +114,81 @@ public class DocumentsController {
             logger.warn("User {} does not have permission to save document {}", userDetails.getUsername(), documentId);
             throw new IllegalAccessException("You don't have permission to save this document.");
         }
-        // 更新文档内容
-        document.setContent(content);
-        if (language != null && !language.isEmpty()) {
-            document.setLanguage(language);
+        // 交给延迟写入服务合并，同一文档在一个周期内只写一次数据库
+        documentWriteBehindService.submit(documentId, content, language, title);
+        logger.info("Document {} saved successfully by user {}", documentId, userDetails.getUsername());
+        return ResponseEntity.ok()
+                .header(DocumentConflictException.CONTENT_HASH_HEADER, DocumentWriteBehindService.contentHash(content))
+                .body("Document saved successfully!");
+    }
+
+    /**
+     * 增量保存文档内容
+     * 编辑应用在服务器上的最新内容上，基础哈希不一致时返回 409，客户端应改用整篇保存
+     * @param docId 文档唯一标识符
+     * @param patch 编辑列表及其所基于内容的哈希
+     * @param userDetails 当前认证用户信息
+     * @return 应用后内容的哈希
+     */
+    @PostMapping("/{docId}/patch")
+    @Transactional(readOnly = true)
+    public ResponseEntity<Map<String, String>> patchDocument(@PathVariable String docId,
+                                                             @RequestBody DocumentPatch patch,
+                                                             @AuthenticationPrincipal UserDetails userDetails) throws Exception {
+        Document document = documentRepository.findByUniqueId(docId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid document ID:" + docId));
+        User currentUser = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new IllegalStateException("User not found"));
+        if (!documentPermissionService.canEditDocument(document, currentUser)) {
+            logger.warn("User {} does not have permission to save document {}", userDetails.getUsername(), docId);
+            throw new IllegalAccessException("You don't have permission to save this document.");
         }
-        if (title != null && !title.isEmpty()) {
-            document.setTitle(title);
+        String hash = documentWriteBehindService.applyPatch(docId, patch, () -> documentContentService.load(docId));
+        logger.debug("Applied {} edits to document {} by user {}", patch.getEdits().size(), docId, userDetails.getUsername());
+        return ResponseEntity.ok()
+                .header(DocumentConflictException.CONTENT_HASH_HEADER, hash)
+                .body(Map.of("hash", hash));
+    }
+    /**
+     * 按版本号保存文档内容（比较并交换）
+     * 只有数据库中的版本号仍等于客户端读取时的版本号才写入，不加行锁；否则返回 409 和当前版本号
+     * @param docId 文档唯一标识符
+     * @param content 文档内容
+     * @param version 客户端读取内容时的版本号
+     * @param userDetails 当前认证用户信息
+     * @return 保存结果响应，响应头带新版本号
+     */
+    @PostMapping("/{docId}/content")
+    @Transactional(rollbackFor = Exception.class, noRollbackFor = DocumentConflictException.class)
+    public ResponseEntity<String> updateDocumentContent(@PathVariable String docId,
+                                                        @RequestParam String content,
+                                                        @RequestParam Long version,
+                                                        @AuthenticationPrincipal UserDetails userDetails) throws Exception {
+        Document document = documentRepository.findByUniqueId(docId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid document ID:" + docId));
+        User currentUser = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new IllegalStateException("User not found"));
+        if (!documentPermissionService.canEditDocument(document, currentUser)) {
+            logger.warn("User {} does not have permission to save document {}", userDetails.getUsername(), docId);
+            throw new IllegalAccessException("You don't have permission to save this document.");
         }
-        // 保存到数据库
-        documentRepository.save(document);
-        logger.info("Document {} saved successfully by user {}", documentId, userDetails.getUsername());
-        return ResponseEntity.ok("Document saved successfully!");
+        // 先写出延迟写入中的保存，版本号才反映全部已接受的修改；写出在独立事务中提交，本方法回滚时不受影响
+        documentWriteBehindService.flushDocument(docId);
+        if (documentRepository.compareAndSetVersion(docId, version, new Date()) == 0) {
+            Long currentVersion = documentRepository.findVersionByUniqueId(docId).orElse(null);
+            logger.info("Rejected save of document {} at version {}, current version is {}", docId, version, currentVersion);
+            throw new DocumentConflictException("Document " + docId + " was modified, current version is " + currentVersion,
+                    DocumentConflictException.VERSION_HEADER, String.valueOf(currentVersion));
+        }
+        // 版本更新已锁定该行，内容写入与其他保存串行
+        documentContentService.store(docId, content);
+        outboxService.recordSearchIndex(docId);
+        logger.info("Document {} saved at version {} by user {}", docId, version + 1, userDetails.getUsername());
+        return ResponseEntity.ok()
+                .header(DocumentConflictException.VERSION_HEADER, String.valueOf(version + 1))
+                .body("Document saved successfully!");
     }
+
     /**
      * 删除文档
      * 只有文档所有者才有权限删除文档
@@ -117,8 +212,13 @@ public class DocumentsController {
              {   
                  logger.info("User {} is owner, deleting document collaborators", userDetails.getUsername());
                  documentCollaboratorRepository.deleteByDocumentId(document.getId());
+                 documentTagService.deleteTags(document);
                  logger.info("Deleting document {}", docId);
                  documentRepository.delete(document);
+                 documentContentService.delete(docId);
+                 yjsRoomService.deleteDocument(docId);
+                 documentPermissionService.invalidateDocument(document.getId());
+                 outboxService.recordSearchDelete(docId);
              }
              else
              {
@@ -144,6 +244,8 @@ public class DocumentsController {
                     .orElseThrow(()->new IllegalArgumentException("Invalid document ID;"));
             document.setTitle(title);
             documentRepository.save(document);
+            outboxService.recordSearchIndex(docId);
+            cacheInvalidationService.publish(CacheInvalidationEvent.documentChanged(document.getId()));
             logger.info("Document {} title updated successfully by user {}", docId, userDetails.getUsername());
         return ResponseEntity.ok("Document title updated successfully!");
     }
@@ -181,57 +283,53 @@ public class DocumentsController {
                 logger.warn("Empty tags provided for document {}", docId);
                 throw new IllegalArgumentException("Tags cannot be empty.");
             }
-            // 解析标签（支持逗号分隔的多个标签）
-            String[] newTags = tagsString.split(",");
-            // 获取文档现有的标签
-            List<String> existingTags = document.getTagList();
-            // 合并现有标签和新标签，去重
-            Set<String> tagSet = new HashSet<>(existingTags);
-            for (String tag : newTags) {
-                String trimmedTag = tag.trim();
-                if (!trimmedTag.isEmpty()) {
-                    tagSet.add(trimmedTag);
-                }
-            }
-            // 更新文档标签
-            document.setTagList(new ArrayList<>(tagSet));
-            documentRepository.save(document);
+            // 解析标签（支持逗号分隔的多个标签），同时写入展示用的 tags 列和 document_tags 索引
+            documentTagService.addTags(document, tagsString);
             logger.info("Tags added successfully to document {} by user {}", docId, userDetails.getUsername());
             return ResponseEntity.ok("Tags added successfully!");
     }
     @GetMapping("/tags")
     public ResponseEntity<?> getTags(@AuthenticationPrincipal UserDetails userDetails)
     {   
-        Set<String> tags = new HashSet<>();
-
             logger.info("Fetching tags for user: {}", userDetails.getUsername());
             User user = userRepository.findByUsername(userDetails.getUsername())
                     .orElseThrow(() -> new IllegalStateException("User not found"));
-            //读取自己有权限访问的文档列表的标签
-            List<DocumentCollaborator> documentcollaborators = documentCollaboratorRepository.findByUser(user);
-            List<Document> documents = documentcollaborators.stream()
-                    .map(DocumentCollaborator::getDocument)
-                    .toList();
-            documents.forEach(document -> tags.addAll(document.getTagList()));
+            //读取自己有权限访问的文档的标签，一条查询完成
+            List<String> tags = documentTagService.getUserTags(user);
             logger.info("Found {} tags for user {}", tags.size(), userDetails.getUsername());
         return ResponseEntity.ok(tags);
     }
+    /**
+     * 获取标签分面：当前用户可访问文档中每个标签的文档数
+     * @param keyword 标签需包含的关键字（可选）
+     * @param userDetails 当前认证用户信息
+     * @return 按文档数倒序的标签分面列表
+     */
+    @GetMapping("/tags/facets")
+    public ResponseEntity<List<TagFacet>> getTagFacets(@RequestParam(required = false) String keyword,
+                                                       @AuthenticationPrincipal UserDetails userDetails)
+    {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new IllegalStateException("User not found"));
+        return ResponseEntity.ok(documentTagService.getFacets(user, keyword));
+    }
     /**
      * 根据标签获取文档列表
-     * @param tag 标签名
+     * @param tag 标签名，多个标签用逗号分隔
+     * @param match any（默认）表示带任一标签，all 表示带全部标签
      * @param userDetails 当前认证用户信息
-     * @return 符合标签条件的文档列表
+     * @return 当前用户可访问的、符合标签条件的文档摘要列表
      */
     @GetMapping("/tags/{tag}")
-    public ResponseEntity<?> getDocumentsByTag(@PathVariable String tag,@AuthenticationPrincipal UserDetails userDetails)
+    public ResponseEntity<?> getDocumentsByTag(@PathVariable String tag,
+                                               @RequestParam(defaultValue = "any") String match,
+                                               @AuthenticationPrincipal UserDetails userDetails)
     {   
-        List<Document> documents = new ArrayList<>();
-
             logger.info("Fetching documents by tag: {} for user: {}", tag, userDetails.getUsername());
             User user =userRepository.findByUsername(userDetails.getUsername())
                     .orElseThrow(()->new IllegalStateException("User not found"));
-           documents = documentRepository.findByTags(tag);
+           List<DocumentSummary> documents = documentTagService.findDocuments(user, DocumentTagService.normalize(tag), "all".equalsIgnoreCase(match));
            logger.info("Found {} documents with tag {} for user {}", documents.size(), tag, userDetails.getUsername());
         return ResponseEntity.ok(documents);
     }
-}
\ No newline at end of file
+}
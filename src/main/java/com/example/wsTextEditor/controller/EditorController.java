@@ -5,16 +5,22 @@ import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.User;
 import com.example.wsTextEditor.model.DocumentCollaborator;
 import com.example.wsTextEditor.pojo.CollaboratorInfo;
+import com.example.wsTextEditor.pojo.DocumentSummary;
 import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
 import com.example.wsTextEditor.repository.DocumentRepository;
 import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.DocumentContentService;
 import com.example.wsTextEditor.service.DocumentPermissionService;
+import com.example.wsTextEditor.service.DocumentTagService;
+import com.example.wsTextEditor.service.DocumentWriteBehindService;
 import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
 import com.example.wsTextEditor.repository.ActionLogRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -46,10 +52,20 @@ public class EditorController {
     private final DocumentCollaboratorRepository documentCollaboratorRepository;
     /** 操作日志仓库，用于记录用户操作 */
     private final ActionLogRepository actionLogRepository;
+    /** 文档内容延迟写入服务，用于读取尚未写入数据库的内容 */
+    private final DocumentWriteBehindService documentWriteBehindService;
+    /** 文档内容存储服务 */
+    private final DocumentContentService documentContentService;
+    /** 文档标签服务 */
+    private final DocumentTagService documentTagService;
     
-    @Value("${y.websocket.url}")
+    @Value("${y.websocket.url:}")
     private String yWebsocketUrl;
 
+    /** 仪表板每页文档数 */
+    @Value("${dashboard.page-size:50}")
+    private int dashboardPageSize;
+
     /**
      * 构造函数，通过依赖注入初始化所需的仓库和服务
      * @param documentRepository 文档仓库
@@ -57,18 +73,27 @@ public class EditorController {
      * @param documentPermissionService 文档权限服务
      * @param documentCollaboratorRepository 文档协作者仓库
      * @param actionLogRepository 操作日志仓库
+     * @param documentWriteBehindService 文档内容延迟写入服务
+     * @param documentContentService 文档内容存储服务
+     * @param documentTagService 文档标签服务
      */
     @Autowired
     public EditorController(DocumentRepository documentRepository, 
                            UserRepository userRepository,
                            DocumentPermissionService documentPermissionService,
                            DocumentCollaboratorRepository documentCollaboratorRepository,
-                           ActionLogRepository actionLogRepository) {
+                           ActionLogRepository actionLogRepository,
+                           DocumentWriteBehindService documentWriteBehindService,
+                           DocumentContentService documentContentService,
+                           DocumentTagService documentTagService) {
         this.documentRepository = documentRepository;
         this.userRepository = userRepository;
         this.documentPermissionService = documentPermissionService;
         this.documentCollaboratorRepository = documentCollaboratorRepository;
         this.actionLogRepository = actionLogRepository;
+        this.documentWriteBehindService = documentWriteBehindService;
+        this.documentContentService = documentContentService;
+        this.documentTagService = documentTagService;
     }
 
     /**
@@ -77,45 +102,46 @@ public class EditorController {
      * @param userDetails 当前认证用户信息
      * @param loginSuccess 登录成功标志
      * @param tagsParam 标签筛选参数
+     * @param match 标签匹配方式：any（默认）或 all
+     * @param cursor 分页游标，为空时加载第一页
      * @return dashboard视图名称
      */
     @GetMapping("/")
     public String dashboard(Model model, @AuthenticationPrincipal UserDetails userDetails, 
                           @RequestParam(value = "loginSuccess", required = false) String loginSuccess,
-                          @RequestParam(value = "tags", required = false) String tagsParam) {
+                          @RequestParam(value = "tags", required = false) String tagsParam,
+                          @RequestParam(value = "match", required = false) String match,
+                          @RequestParam(value = "cursor", required = false) String cursor) {
         if (userDetails == null) {
             logger.info("User not authenticated, redirecting to login");
             return "redirect:/login";
         }
         logger.info("Loading dashboard for user: {}", userDetails.getUsername());
-        //获取用户信息，并且获得用户参与的文档，通过流操作
+        //获取用户信息，并且通过投影查询获得用户参与的文档摘要
         User user = userRepository.findByUsername(userDetails.getUsername()).orElseThrow();
         
-        List<Document> documents;
+        List<DocumentSummary> documents;
+        String nextCursor = null;
         if (tagsParam != null && !tagsParam.isEmpty()) {
-            // 如果有标签参数，按标签筛选文档
-            String[] tags = tagsParam.split(",");
-            Set<Document> documentSet = new HashSet<>();
-            
-            for (String tag : tags) {
-                String trimmedTag = tag.trim();
-                if (!trimmedTag.isEmpty()) {
-                    // 使用新的查询方法来匹配包含标签的文档
-                    List<Document> docsByTag = documentRepository.findByTagContaining( trimmedTag);
-                    documentSet.addAll(docsByTag);
-                }
-            }
-            
-            documents = new ArrayList<>(documentSet);
+            // 如果有标签参数，一条查询按标签筛选用户参与的文档；match=all 时要求带有全部标签
+            documents = documentTagService.findDocuments(user, DocumentTagService.normalize(tagsParam), "all".equalsIgnoreCase(match));
         } else {
-            // 没有标签参数，正常加载所有文档
-            List<DocumentCollaborator> collaborators = documentCollaboratorRepository.findByUser(user);
-            documents = collaborators.stream()
-                    .map(DocumentCollaborator::getDocument)
-                    .collect(Collectors.toList());
+            // 没有标签参数，按更新时间键集分页加载
+            Pageable page = PageRequest.of(0, dashboardPageSize);
+            String[] position = cursor == null ? new String[0] : cursor.split("_");
+            if (position.length == 2 && position[0].matches("\\d+") && position[1].matches("\\d+")) {
+                documents = documentCollaboratorRepository.findSummariesByUserIdBefore(user.getId(),
+                        DocumentSummary.cursorTime(Long.parseLong(position[0])), Long.parseLong(position[1]), page);
+            } else {
+                documents = documentCollaboratorRepository.findSummariesByUserId(user.getId(), page);
+            }
+            if (documents.size() == dashboardPageSize) {
+                nextCursor = documents.get(documents.size() - 1).getCursor();
+            }
         }
         
         model.addAttribute("documents", documents);
+        model.addAttribute("nextCursor", nextCursor);
         model.addAttribute("currentUser", user); // 添加当前用户信息到model中
         model.addAttribute("loginSuccess", loginSuccess); // 添加登录成功标志
         
@@ -140,8 +166,8 @@ public class EditorController {
         doc.setOwner(user);
         doc.setTitle("Untitled Document");
         doc.setLanguage("javascript");
-        doc.setContent("// Welcome to Code Share!\n// Start typing your code here...\n\n");
         documentRepository.save(doc);
+        documentContentService.store(doc.getUniqueId(), "// Welcome to Code Share!\n// Start typing your code here...\n\n");
         
         // 初始化文档权限
         documentPermissionService.initializeDocumentPermissions(doc, user);
@@ -214,6 +240,12 @@ public class EditorController {
         }
 
         model.addAttribute("document", document);
+        // 尚未写入数据库的保存优先于数据库中的内容
+        String pendingContent = documentWriteBehindService.getPendingContent(documentId);
+        String documentContent = pendingContent != null ? pendingContent : documentContentService.load(documentId);
+        model.addAttribute("documentContent", documentContent);
+        // 增量保存的初始基础哈希
+        model.addAttribute("documentHash", DocumentWriteBehindService.contentHash(documentContent));
         model.addAttribute("ywsUrl", yWebsocketUrl);
         model.addAttribute("currentUser", user);
         
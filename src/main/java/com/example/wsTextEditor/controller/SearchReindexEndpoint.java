@@ -0,0 +1,51 @@
+package com.example.wsTextEditor.controller;
+
+import com.example.wsTextEditor.model.SearchReindexJob;
+import com.example.wsTextEditor.service.DocumentReindexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 搜索索引重建的 actuator 端点（/actuator/searchreindex）
+ * GET 查看进度和吞吐量，POST 开始或继续重建，DELETE 取消未完成的重建（执行节点停止写入后删除新索引）
+ */
+@Component
+@Endpoint(id = "searchreindex")
+public class SearchReindexEndpoint {
+
+    @Autowired
+    private DocumentReindexService documentReindexService;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return documentReindexService.getStatus();
+    }
+
+    @WriteOperation
+    public Map<String, Object> start() {
+        Map<String, Object> status;
+        try {
+            SearchReindexJob job = documentReindexService.start();
+            status = documentReindexService.getStatus();
+            status.put("message", "Reindex job " + job.getId() + " running into " + job.getIndexName());
+        } catch (IllegalStateException e) {
+            status = documentReindexService.getStatus();
+            status.put("message", e.getMessage());
+        }
+        return status;
+    }
+
+    @DeleteOperation
+    public Map<String, Object> cancel() {
+        SearchReindexJob job = documentReindexService.cancel();
+        Map<String, Object> status = documentReindexService.getStatus();
+        status.put("message", job == null ? "No reindex job to cancel" : "Cancelled reindex job " + job.getId());
+        return status;
+    }
+}
@@ -1,71 +1,108 @@
-//package com.example.wsTextEditor.controller;
-//
-//import com.example.wsTextEditor.crdt.CRDTDocument;
-//import com.example.wsTextEditor.crdt.CRDTOperation;
-//import org.springframework.messaging.handler.annotation.MessageMapping;
-//import org.springframework.messaging.handler.annotation.SendTo;
-//import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-//import org.springframework.stereotype.Controller;
-//import org.springframework.messaging.simp.SimpMessagingTemplate;
-//import org.springframework.beans.factory.annotation.Autowired;
-//
-//import java.util.List;
-//import java.util.Map;
-//import java.util.concurrent.ConcurrentHashMap;
-//
-//@Controller
-//public class TextEditorWebSocketController {
-//
-//    @Autowired
-//    private SimpMessagingTemplate messagingTemplate;
-//
-//    private final Map<String, CRDTDocument> documents = new ConcurrentHashMap<>();
-//
-//    @MessageMapping("/crdt-operation")
-//    public void handleCRDTOperation(CRDTOperation operation, SimpMessageHeaderAccessor headerAccessor) {
-//        try {
-//            String sessionId = headerAccessor.getSessionId();
-//            if (sessionId == null) {
-//                System.err.println("Error: Session ID is null.");
-//                return;
-//            }
-//
-//            String siteId = operation.getCharacter().getSiteId();
-//            CRDTDocument document = documents.computeIfAbsent(sessionId, k -> new CRDTDocument(siteId));
-//
-//            List<CRDTOperation> processedOperations = document.applyOperation(operation);
-//
-//            for (CRDTOperation op : processedOperations) {
-//                op.setSessionId(sessionId);
-//                System.out.println("Broadcasting CRDT Operation: " + op);
-//                messagingTemplate.convertAndSend("/topic/crdt-changes", op);
-//            }
-//            System.out.println("Document state: " + document.getText());
-//
-//        } catch (Exception e) {
-//            System.err.println("Error processing CRDT operation: " + e.getMessage());
-//            e.printStackTrace();
-//        }
-//    }
-//
-//    @MessageMapping("/request-document")
-//    @SendTo("/topic/document-state")
-//    public Map<String, Object> requestDocument(Map<String, String> payload) {
-//        String sessionId = payload.get("sessionId");
-//        String siteId = payload.get("siteId");
-//        CRDTDocument document = documents.computeIfAbsent(sessionId, k -> new CRDTDocument(siteId));
-//
-//        System.out.println("Sending initial document state for session: " + sessionId);
-//        return Map.of(
-//                "sessionId", sessionId,
-//                "characters", document.getCharacters()
-//        );
-//    }
-//
-//    @MessageMapping("/mouse")
-//    @SendTo("/topic/mouse")
-//    public Map<String, Object> mousePosition(Map<String, Object> data) {
-//        return data;
-//    }
-//}
-//
+package com.example.wsTextEditor.controller;
+
+import com.example.wsTextEditor.config.CRDTBinaryMessageConverter;
+import com.example.wsTextEditor.crdt.CRDTOperation;
+import com.example.wsTextEditor.crdt.CRDTUpdate;
+import com.example.wsTextEditor.service.DocumentBroadcastService;
+import com.example.wsTextEditor.service.DocumentRoom;
+import com.example.wsTextEditor.service.DocumentRoomService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeType;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * CRDT 协同编辑 STOMP 控制器
+ * 操作按文档 uniqueId 路由到对应房间，按批次只广播给订阅了 /topic/doc/{uniqueId} 的协作者
+ */
+@Controller
+public class TextEditorWebSocketController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextEditorWebSocketController.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private DocumentRoomService documentRoomService;
+
+    @Autowired
+    private DocumentBroadcastService documentBroadcastService;
+
+    /**
+     * 处理客户端发来的 CRDT 操作，合并到房间副本后把实际生效的操作加入广播批次
+     * @param uniqueId 文档唯一标识符
+     * @param operation CRDT 操作
+     * @param headerAccessor 消息头
+     */
+    @MessageMapping("/doc/{uniqueId}/operation")
+    public void handleCRDTOperation(@DestinationVariable String uniqueId,
+                                    CRDTOperation operation,
+                                    SimpMessageHeaderAccessor headerAccessor) {
+        DocumentRoom room = documentRoomService.getOrCreateRoom(uniqueId);
+        documentBroadcastService.broadcast(room, room.getDocument().applyOperation(operation), headerAccessor.getSessionId());
+    }
+
+    /**
+     * 处理一批 CRDT 操作（JSON 或 application/octet-stream;codec=crdt 二进制帧）
+     * @param uniqueId 文档唯一标识符
+     * @param update 操作批次
+     * @param headerAccessor 消息头
+     */
+    @MessageMapping("/doc/{uniqueId}/update")
+    public void handleCRDTUpdate(@DestinationVariable String uniqueId,
+                                 CRDTUpdate update,
+                                 SimpMessageHeaderAccessor headerAccessor) {
+        DocumentRoom room = documentRoomService.getOrCreateRoom(uniqueId);
+        documentBroadcastService.broadcast(room, room.getDocument().applyUpdate(update), headerAccessor.getSessionId());
+    }
+
+    /**
+     * 同步请求：客户端发送带状态向量的 CRDTUpdate，只回复其缺少的部分。
+     * 回复发送到请求会话的 /user/queue/doc-sync，编码与请求相同（JSON 或二进制）。
+     * @param uniqueId 文档唯一标识符
+     * @param request 只包含客户端状态向量的更新，新客户端发送空状态向量
+     * @param headerAccessor 消息头
+     */
+    @MessageMapping("/doc/{uniqueId}/sync")
+    public void syncDocument(@DestinationVariable String uniqueId,
+                             CRDTUpdate request,
+                             SimpMessageHeaderAccessor headerAccessor) {
+        DocumentRoom room = documentRoomService.getOrCreateRoom(uniqueId);
+        Map<String, Long> stateVector = request == null ? Collections.emptyMap() : request.getStateVector();
+        CRDTUpdate update = room.getDocument().diff(stateVector);
+
+        String sessionId = headerAccessor.getSessionId();
+        Principal user = headerAccessor.getUser();
+        SimpMessageHeaderAccessor reply = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        reply.setSessionId(sessionId);
+        MimeType contentType = headerAccessor.getContentType();
+        if (contentType != null && CRDTBinaryMessageConverter.CRDT_MIME_TYPE.equalsTypeAndSubtype(contentType)) {
+            reply.setContentType(CRDTBinaryMessageConverter.CRDT_MIME_TYPE);
+        }
+        reply.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(user != null ? user.getName() : sessionId, "/queue/doc-sync",
+                update, reply.getMessageHeaders());
+        logger.debug("Sent {} operations to sync room {}", update.getOperations().size(), uniqueId);
+    }
+
+    /**
+     * 光标位置只在同一文档的协作者之间转发
+     */
+    @MessageMapping("/doc/{uniqueId}/mouse")
+    @SendTo("/topic/doc/{uniqueId}/mouse")
+    public Map<String, Object> mousePosition(@DestinationVariable String uniqueId, Map<String, Object> data) {
+        return data;
+    }
+}
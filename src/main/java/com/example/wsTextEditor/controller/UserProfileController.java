@@ -1,7 +1,9 @@
 package com.example.wsTextEditor.controller;
 
 import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.pojo.CacheInvalidationEvent;
 import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.CacheInvalidationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +35,9 @@ public class UserProfileController {
 
     @Autowired
     private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
     
     // 获取静态资源路径
     @Value("${user.avatar.upload-dir:uploads/avatars/}")
@@ -100,6 +105,7 @@ public class UserProfileController {
         }
         
         userRepository.save(user);
+        cacheInvalidationService.publish(CacheInvalidationEvent.userChanged(user.getId()));
         logger.info("Profile updated successfully for user: {}", username);
         
         Map<String, String> response = new HashMap<>();
@@ -132,6 +138,7 @@ public class UserProfileController {
         // 更新密码
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        cacheInvalidationService.publish(CacheInvalidationEvent.userChanged(user.getId()));
         logger.info("Password changed successfully for user: {}", username);
         
         Map<String, String> response = new HashMap<>();
@@ -180,6 +187,7 @@ public class UserProfileController {
         String avatarUrl = "/" + uploadDir + uniqueFilename;
         user.setAvatarUrl(avatarUrl);
         userRepository.save(user);
+        cacheInvalidationService.publish(CacheInvalidationEvent.userChanged(user.getId()));
         logger.info("Avatar uploaded successfully for user: {}, file: {}", username, uniqueFilename);
         
         Map<String, String> response = new HashMap<>();
@@ -0,0 +1,216 @@
+package com.example.wsTextEditor.crdt;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link CRDTUpdate}.
+ * <pre>
+ * frame     := version stringTable opCount op* svCount (siteRef clock)*
+ * stringTable := count (utf8Length utf8Bytes)*   site and session IDs, each written once
+ * op        := flags siteRef clockDelta [originRef originDistance] (utf8Length utf8Bytes | length) [sessionRef]
+ * </pre>
+ * All integers are unsigned LEB128 varints; signed deltas are zigzag encoded. The clock of an
+ * operation is written relative to the end of the previous run from the same site, so a
+ * continuing run costs one byte, and the origin is written as its distance back from the clock.
+ * Timestamps are not transmitted.
+ */
+public final class CRDTBinaryCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int FLAG_DELETE = 1;
+    private static final int FLAG_ORIGIN = 1 << 1;
+    private static final int FLAG_CONTENT = 1 << 2;
+    private static final int FLAG_SESSION = 1 << 3;
+
+    private CRDTBinaryCodec() {}
+
+    public static byte[] encode(CRDTUpdate update) {
+        List<CRDTOperation> operations = update.getOperations();
+        Map<String, Long> stateVector = update.getStateVector();
+
+        // Collect every string the frame refers to
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (CRDTOperation op : operations) {
+            intern(strings, op.getSiteId());
+            if (op.hasOrigin()) {
+                intern(strings, op.getOriginSiteId());
+            }
+            if (op.getSessionId() != null) {
+                intern(strings, op.getSessionId());
+            }
+        }
+        stateVector.keySet().forEach(site -> intern(strings, site));
+
+        Writer out = new Writer(32 + operations.size() * 8);
+        out.writeVarInt(VERSION);
+        out.writeVarInt(strings.size());
+        for (String value : strings.keySet()) {
+            out.writeString(value);
+        }
+
+        out.writeVarInt(operations.size());
+        Map<String, Long> runEnds = new HashMap<>();
+        for (CRDTOperation op : operations) {
+            boolean delete = op.getType() == CRDTOperation.Type.DELETE;
+            int flags = (delete ? FLAG_DELETE : 0)
+                    | (op.hasOrigin() ? FLAG_ORIGIN : 0)
+                    | (op.getContent() != null ? FLAG_CONTENT : 0)
+                    | (op.getSessionId() != null ? FLAG_SESSION : 0);
+            out.writeVarInt(flags);
+            out.writeVarInt(strings.get(op.getSiteId()));
+            out.writeVarLong(zigzag(op.getClock() - runEnds.getOrDefault(op.getSiteId(), 0L)));
+            runEnds.put(op.getSiteId(), op.getClock() + op.getLength());
+            if (op.hasOrigin()) {
+                out.writeVarInt(strings.get(op.getOriginSiteId()));
+                out.writeVarLong(zigzag(op.getClock() - op.getOriginClock()));
+            }
+            if (op.getContent() != null) {
+                out.writeString(op.getContent());
+            } else {
+                out.writeVarInt(op.getLength());
+            }
+            if (op.getSessionId() != null) {
+                out.writeVarInt(strings.get(op.getSessionId()));
+            }
+        }
+
+        out.writeVarInt(stateVector.size());
+        for (Map.Entry<String, Long> entry : stateVector.entrySet()) {
+            out.writeVarInt(strings.get(entry.getKey()));
+            out.writeVarLong(entry.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    public static CRDTUpdate decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        int version = in.readVarInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported CRDT frame version: " + version);
+        }
+        int stringCount = in.readVarInt();
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = in.readString();
+        }
+
+        int opCount = in.readVarInt();
+        List<CRDTOperation> operations = new ArrayList<>(opCount);
+        Map<String, Long> runEnds = new HashMap<>();
+        for (int i = 0; i < opCount; i++) {
+            int flags = in.readVarInt();
+            String siteId = strings[in.readVarInt()];
+            long clock = runEnds.getOrDefault(siteId, 0L) + unzigzag(in.readVarLong());
+            String originSiteId = null;
+            long originClock = 0;
+            if ((flags & FLAG_ORIGIN) != 0) {
+                originSiteId = strings[in.readVarInt()];
+                originClock = clock - unzigzag(in.readVarLong());
+            }
+            String content = null;
+            int length;
+            if ((flags & FLAG_CONTENT) != 0) {
+                content = in.readString();
+                length = content.length();
+            } else {
+                length = in.readVarInt();
+            }
+            String sessionId = (flags & FLAG_SESSION) != 0 ? strings[in.readVarInt()] : null;
+            CRDTOperation.Type type = (flags & FLAG_DELETE) != 0 ? CRDTOperation.Type.DELETE : CRDTOperation.Type.INSERT;
+            operations.add(new CRDTOperation(type, siteId, clock, originSiteId, originClock, content, length, sessionId, 0));
+            runEnds.put(siteId, clock + length);
+        }
+
+        int svCount = in.readVarInt();
+        Map<String, Long> stateVector = new LinkedHashMap<>();
+        for (int i = 0; i < svCount; i++) {
+            stateVector.put(strings[in.readVarInt()], in.readVarLong());
+        }
+        return new CRDTUpdate(operations, stateVector);
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        strings.putIfAbsent(value, strings.size());
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length);
+            write(utf8, 0, utf8.length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed CRDT frame: integer out of range");
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Malformed CRDT frame: truncated varint");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed CRDT frame: varint too long");
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length > bytes.length - position) {
+                throw new IllegalArgumentException("Malformed CRDT frame: truncated string");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
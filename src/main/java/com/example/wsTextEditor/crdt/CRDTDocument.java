@@ -1,214 +1,478 @@
-//package com.example.wsTextEditor.crdt;
-//
-//import java.util.*;
-//import java.util.concurrent.ConcurrentHashMap;
-//
-//
-///**
-// * CRDT Document that maintains a conflict-free replicated text document
-// * Uses RGA (Replicated Growable Array) algorithm
-// */
-//public class CRDTDocument {
-//    private final Map<String, CRDTCharacter> characters;
-//    private final String siteId;
-//    private long localClock;
-//
-//    public CRDTDocument(String siteId) {
-//        this.characters = new ConcurrentHashMap<>();
-//        this.siteId = siteId;
-//        this.localClock = 0;
-//    }
-//
-//    /**
-//     * Insert a character at the specified position
-//     * @param content The character to insert
-//     * @param afterId The ID of the character this should come after (null for beginning)
-//     * @return The operation that was performed
-//     */
-//    public synchronized CRDTOperation insertCharacter(char content, String afterId) {
-//        long timestamp = System.currentTimeMillis() + (++localClock); // Ensure uniqueness
-//        CRDTCharacter newChar = new CRDTCharacter(content, timestamp, siteId, afterId);
-//        characters.put(newChar.getId(), newChar);
-//        return new CRDTOperation(CRDTOperation.Type.INSERT, newChar, null, siteId, System.currentTimeMillis());
-//    }
-//
-//    /**
-//     * Delete a character by its ID
-//     * @param characterId The ID of the character to delete
-//     * @return The operation that was performed, or null if character not found
-//     */
-//    public synchronized CRDTOperation deleteCharacter(String characterId) {
-//        CRDTCharacter charToDelete = characters.get(characterId);
-//        if (charToDelete != null && !charToDelete.isDeleted()) {
-//            charToDelete.delete();
-//            return new CRDTOperation(CRDTOperation.Type.DELETE, charToDelete, null, siteId, System.currentTimeMillis());
-//        }
-//        return null;
-//    }
-//
-//    /**
-//     * Apply a remote operation to this document
-//     * This method is idempotent and commutative
-//     */
-//    public synchronized List<CRDTOperation> applyOperation(CRDTOperation operation) {
-//        List<CRDTOperation> resultingOperations = new ArrayList<>();
-//        if (operation == null || operation.getCharacter() == null) return resultingOperations;
-//
-//        CRDTCharacter character = operation.getCharacter();
-//
-//        switch (operation.getType()) {
-//            case INSERT:
-//                if (characters.containsKey(character.getId())) {
-//                    break; // Character already exists, do nothing
-//                }
-//
-//                characters.put(character.getId(), character);
-//                resultingOperations.add(operation);
-//
-//                // Find the character that was previously after the new character's predecessor
-//                // and update its afterId to point to the new character.
-//                for (CRDTCharacter oldNextChar : characters.values()) {
-//                    if (!oldNextChar.getId().equals(character.getId()) && java.util.Objects.equals(oldNextChar.getAfterId(), character.getAfterId())) {
-//                        oldNextChar.setAfterId(character.getId());
-//                        CRDTOperation updateOperation = new CRDTOperation(CRDTOperation.Type.UPDATE, oldNextChar, null, this.siteId, System.currentTimeMillis());
-//                        resultingOperations.add(updateOperation);
-//                        break;
-//                    }
-//                }
-//                break;
-//
-//            case DELETE:
-//                CRDTCharacter charToDelete = characters.get(character.getId());
-//                if (charToDelete != null && !charToDelete.isDeleted()) {
-//                    charToDelete.setDeleted(true);
-//                    resultingOperations.add(operation);
-//                }
-//                break;
-//            case UPDATE:
-//                CRDTCharacter charToUpdate = characters.get(character.getId());
-//                if (charToUpdate != null) {
-//                    charToUpdate.setAfterId(character.getAfterId());
-//                    resultingOperations.add(operation);
-//                }
-//                break;
-//        }
-//        return resultingOperations;
-//    }
-//
-//    /**
-//     * Get the current text content of the document
-//     * Characters are ordered based on their causal relationships
-//     */
-//    public synchronized String getText() {
-//        List<CRDTCharacter> orderedChars = getOrderedCharacters();
-//        StringBuilder text = new StringBuilder();
-//
-//        for (CRDTCharacter character : orderedChars) {
-//            if (!character.isDeleted()) {
-//                text.append(character.getContent());
-//            }
-//        }
-//
-//        return text.toString();
-//    }
-//
-//    /**
-//     * Get characters ordered by their causal relationships
-//     * This implements the RGA ordering algorithm
-//     */
-//    private List<CRDTCharacter> getOrderedCharacters() {
-//        List<CRDTCharacter> result = new ArrayList<>();
-//        Map<String, List<CRDTCharacter>> childrenMap = new HashMap<>();
-//
-//        // Build parent-child relationships
-//        for (CRDTCharacter character : characters.values()) {
-//            String afterId = character.getAfterId();
-//            childrenMap.computeIfAbsent(afterId, k -> new ArrayList<>()).add(character);
-//        }
-//
-//        // Sort children by timestamp for deterministic ordering
-//        for (List<CRDTCharacter> children : childrenMap.values()) {
-//            children.sort(CRDTCharacter::compareTo);
-//        }
-//
-//        // Build the ordered list using DFS
-//        buildOrderedList(null, childrenMap, result);
-//
-//        return result;
-//    }
-//
-//    private void buildOrderedList(String parentId, Map<String, List<CRDTCharacter>> childrenMap, List<CRDTCharacter> result) {
-//        List<CRDTCharacter> children = childrenMap.get(parentId);
-//        if (children != null) {
-//            for (CRDTCharacter child : children) {
-//                result.add(child);
-//                buildOrderedList(child.getId(), childrenMap, result);
-//            }
-//        }
-//    }
-//
-//    /**
-//     * Get character ID at a specific position in the visible text
-//     */
-//    public synchronized String getCharacterIdAtPosition(int position) {
-//        List<CRDTCharacter> orderedChars = getOrderedCharacters();
-//        int currentPos = 0;
-//
-//        for (CRDTCharacter character : orderedChars) {
-//            if (!character.isDeleted()) {
-//                if (currentPos == position) {
-//                    return character.getId();
-//                }
-//                currentPos++;
-//            }
-//        }
-//
-//        return null; // Position is at the end
-//    }
-//
-//    /**
-//     * Get the ID of the character that should come before a new insertion at the given position
-//     */
-//    public synchronized String getAfterIdForPosition(int position) {
-//        if (position == 0) {
-//            return null; // Insert at beginning
-//        }
-//
-//        List<CRDTCharacter> orderedChars = getOrderedCharacters();
-//        int currentPos = 0;
-//
-//        for (CRDTCharacter character : orderedChars) {
-//            if (!character.isDeleted()) {
-//                if (currentPos == position - 1) {
-//                    return character.getId();
-//                }
-//                currentPos++;
-//            }
-//        }
-//
-//        // If position is beyond the end, return the last character's ID
-//        for (int i = orderedChars.size() - 1; i >= 0; i--) {
-//            if (!orderedChars.get(i).isDeleted()) {
-//                return orderedChars.get(i).getId();
-//            }
-//        }
-//
-//        return null;
-//    }
-//
-//    // Getters
-//    public String getSiteId() { return siteId; }
-//    public int getCharacterCount() { return (int) characters.values().stream().filter(c -> !c.isDeleted()).count(); }
-//    public List<CRDTCharacter> getCharacters() {
-//        return new ArrayList<>(characters.values());
-//    }
-//
-//    @Override
-//    public String toString() {
-//        return "CRDTDocument{" +
-//                "siteId='" + siteId + '\'' +
-//                ", text='" + getText() + '\'' +
-//                ", characterCount=" + getCharacterCount() +
-//                '}';
-//    }
-//}
+package com.example.wsTextEditor.crdt;
+
+import java.util.*;
+
+
+/**
+ * CRDT Document that maintains a conflict-free replicated text document
+ * Uses RGA (Replicated Growable Array) algorithm
+ *
+ * The linearised sequence lives in an order-statistic tree ({@link CRDTSequence}) of run-length
+ * blocks ({@link CRDTItem}). Consecutive inserts from one site are merged into a single block,
+ * and blocks are split lazily when a remote operation targets an interior character.
+ * Character IDs are (site index, clock) pairs; the site table maps indexes to site IDs.
+ * Clocks come from a {@link LamportClock}, so IDs never depend on wall-clock time and a new
+ * character always orders after everything its author had seen. The highest clock per site forms
+ * the document's state vector, from which {@link #diff(Map)} computes what a peer is missing.
+ */
+public class CRDTDocument {
+    private static final int NO_SITE = CRDTItem.NO_SITE;
+
+    private final CRDTSequence<CRDTItem> sequence;
+    /** Per site index: block start clock -> tree node */
+    private final List<TreeMap<Long, CRDTSequence.Node<CRDTItem>>> index;
+    private final List<String> sites;
+    private final Map<String, Integer> siteIndexes;
+    /** Remote inserts whose origin has not arrived yet, keyed by origin site index and clock */
+    private final Map<Integer, TreeMap<Long, List<CRDTOperation>>> pendingInserts;
+    /** Remote deletes that target characters which have not arrived yet */
+    private final List<CRDTOperation> pendingDeletes;
+    private final String siteId;
+    private final int localSite;
+    private final LamportClock lamportClock;
+
+    public CRDTDocument(String siteId) {
+        this.sequence = new CRDTSequence<>();
+        this.index = new ArrayList<>();
+        this.sites = new ArrayList<>();
+        this.siteIndexes = new HashMap<>();
+        this.pendingInserts = new HashMap<>();
+        this.pendingDeletes = new ArrayList<>();
+        this.siteId = siteId;
+        this.localSite = siteIndex(siteId);
+        this.lamportClock = new LamportClock();
+    }
+
+    /**
+     * Insert text at the specified position
+     * @param position Visible position to insert at
+     * @param text The text to insert
+     * @return The operation that was performed, or null if the text is empty
+     */
+    public synchronized CRDTOperation insertText(int position, String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        int originSite = NO_SITE;
+        long originClock = 0;
+        int anchor = Math.min(position, sequence.visibleLength()) - 1;
+        if (anchor >= 0) {
+            CRDTSequence.Node<CRDTItem> node = sequence.nodeAt(anchor);
+            originSite = node.value.site;
+            originClock = node.value.clock + (anchor - sequence.rank(node));
+        }
+        long clock = lamportClock.tick(text.length());
+        integrate(localSite, clock, originSite, originClock, text, text.length());
+        return CRDTOperation.insert(siteId, clock, siteName(originSite), originClock, text);
+    }
+
+    /**
+     * Delete a range of visible text
+     * @param position Visible position of the first character to delete
+     * @param length Number of characters to delete
+     * @return The operations that were performed, one per contiguous ID range
+     */
+    public synchronized List<CRDTOperation> deleteText(int position, int length) {
+        List<CRDTOperation> operations = new ArrayList<>();
+        int remaining = Math.min(length, sequence.visibleLength() - position);
+        while (position >= 0 && remaining > 0) {
+            CRDTSequence.Node<CRDTItem> node = sequence.nodeAt(position);
+            int offset = position - sequence.rank(node);
+            node = isolate(node, offset, remaining);
+            CRDTItem item = node.value;
+            markDeleted(node);
+            remaining -= item.getLength();
+
+            CRDTOperation last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+            if (last != null && last.getSiteId().equals(sites.get(item.site))
+                    && last.getClock() + last.getLength() == item.clock) {
+                last.setLength(last.getLength() + item.getLength());
+            } else {
+                operations.add(CRDTOperation.delete(sites.get(item.site), item.clock, item.getLength()));
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Apply a remote operation to this document
+     * This method is idempotent and commutative
+     * @return The operations that took effect, including buffered inserts released by this one
+     */
+    public synchronized List<CRDTOperation> applyOperation(CRDTOperation operation) {
+        List<CRDTOperation> resultingOperations = new ArrayList<>();
+        if (operation == null || operation.getSiteId() == null || operation.getLength() <= 0) {
+            return resultingOperations;
+        }
+        lamportClock.observe(operation.getClock() + operation.getLength() - 1);
+
+        switch (operation.getType()) {
+            case INSERT:
+                Deque<CRDTOperation> ready = new ArrayDeque<>();
+                ready.add(operation);
+                while (!ready.isEmpty()) {
+                    CRDTOperation next = ready.poll();
+                    if (applyInsert(next, ready)) {
+                        resultingOperations.add(next);
+                    }
+                }
+                break;
+
+            case DELETE:
+                if (applyDelete(operation)) {
+                    resultingOperations.add(operation);
+                }
+                break;
+        }
+        return resultingOperations;
+    }
+
+    /**
+     * Get the current text content of the document
+     */
+    public synchronized String getText() {
+        StringBuilder text = new StringBuilder(sequence.visibleLength());
+        for (CRDTSequence.Node<CRDTItem> node = sequence.first(); node != null; node = sequence.next(node)) {
+            if (!node.value.isDeleted()) {
+                text.append(node.value.getContent());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Full document state as a list of run operations in document order.
+     * Document order is causal for RGA (every block follows its origin), so the list can be replayed as is.
+     */
+    public synchronized List<CRDTOperation> getOperations() {
+        List<CRDTOperation> operations = new ArrayList<>();
+        CRDTOperation last = null;
+        for (CRDTSequence.Node<CRDTItem> node = sequence.first(); node != null; node = sequence.next(node)) {
+            CRDTItem item = node.value;
+            String itemSite = sites.get(item.site);
+            // Blocks that were split apart but are still adjacent go back into one run
+            if (last != null && last.getSiteId().equals(itemSite)
+                    && last.getClock() + last.getLength() == item.clock
+                    && (last.getContent() == null) == item.isDeleted()) {
+                if (item.isDeleted()) {
+                    last.setLength(last.getLength() + item.getLength());
+                } else {
+                    last.setContent(last.getContent() + item.getContent());
+                }
+                continue;
+            }
+            last = item.isDeleted()
+                    ? CRDTOperation.insertDeleted(itemSite, item.clock, siteName(item.originSite), item.originClock, item.getLength())
+                    : CRDTOperation.insert(itemSite, item.clock, siteName(item.originSite), item.originClock, item.getContent().toString());
+            operations.add(last);
+        }
+        return operations;
+    }
+
+    /**
+     * Apply a batch of remote operations, e.g. the result of {@link #diff(Map)} on another replica
+     * @return The operations that took effect
+     */
+    public synchronized List<CRDTOperation> applyUpdate(CRDTUpdate update) {
+        List<CRDTOperation> resultingOperations = new ArrayList<>();
+        for (CRDTOperation operation : update.getOperations()) {
+            resultingOperations.addAll(applyOperation(operation));
+        }
+        return resultingOperations;
+    }
+
+    /**
+     * State vector of this replica: for every site, the highest clock integrated from it
+     */
+    public synchronized Map<String, Long> getStateVector() {
+        Map<String, Long> stateVector = new LinkedHashMap<>();
+        for (int site = 0; site < sites.size(); site++) {
+            Map.Entry<Long, CRDTSequence.Node<CRDTItem>> last = index.get(site).lastEntry();
+            if (last != null) {
+                stateVector.put(sites.get(site), last.getValue().value.endClock() - 1);
+            }
+        }
+        return stateVector;
+    }
+
+    /**
+     * Compute what a peer with the given state vector is missing: the insert runs with clocks above
+     * its vector, sorted by clock (which is causal under Lamport clocks), followed by the delete set
+     * for the characters it already has. Deletes are idempotent, so the delete set is sent in full.
+     * @param remoteStateVector The peer's state vector; an empty map yields the whole document
+     * @return The missing operations together with this replica's state vector
+     */
+    public synchronized CRDTUpdate diff(Map<String, Long> remoteStateVector) {
+        List<CRDTOperation> inserts = new ArrayList<>();
+        List<CRDTOperation> deletes = new ArrayList<>();
+        for (int site = 0; site < sites.size(); site++) {
+            String name = sites.get(site);
+            Long remote = remoteStateVector == null ? null : remoteStateVector.get(name);
+            long known = remote == null ? 0 : remote;
+            CRDTOperation lastInsert = null;
+            CRDTOperation lastDelete = null;
+            for (CRDTSequence.Node<CRDTItem> node : index.get(site).values()) {
+                CRDTItem item = node.value;
+                // Part of the block the peer already has: only its deletion state matters
+                int knownLength = (int) Math.max(0, Math.min(item.getLength(), known - item.clock + 1));
+                if (knownLength > 0 && item.isDeleted()) {
+                    if (lastDelete != null && lastDelete.getClock() + lastDelete.getLength() == item.clock) {
+                        lastDelete.setLength(lastDelete.getLength() + knownLength);
+                    } else {
+                        lastDelete = CRDTOperation.delete(name, item.clock, knownLength);
+                        deletes.add(lastDelete);
+                    }
+                }
+                if (knownLength == item.getLength()) {
+                    continue;
+                }
+
+                // Part the peer is missing
+                long clock = item.clock + knownLength;
+                int length = item.getLength() - knownLength;
+                String originSite = knownLength > 0 ? name : siteName(item.originSite);
+                long originClock = knownLength > 0 ? clock - 1 : item.originClock;
+                String content = item.isDeleted() ? null : item.getContent().toString().substring(knownLength);
+                if (lastInsert != null && lastInsert.getClock() + lastInsert.getLength() == clock
+                        && name.equals(originSite) && originClock == clock - 1
+                        && (lastInsert.getContent() == null) == (content == null)) {
+                    if (content == null) {
+                        lastInsert.setLength(lastInsert.getLength() + length);
+                    } else {
+                        lastInsert.setContent(lastInsert.getContent() + content);
+                    }
+                } else {
+                    lastInsert = content == null
+                            ? CRDTOperation.insertDeleted(name, clock, originSite, originClock, length)
+                            : CRDTOperation.insert(name, clock, originSite, originClock, content);
+                    inserts.add(lastInsert);
+                }
+            }
+        }
+        inserts.sort(Comparator.comparingLong(CRDTOperation::getClock));
+
+        List<CRDTOperation> operations = new ArrayList<>(inserts.size() + deletes.size());
+        operations.addAll(inserts);
+        operations.addAll(deletes);
+        return new CRDTUpdate(operations, getStateVector());
+    }
+
+    private boolean applyInsert(CRDTOperation operation, Deque<CRDTOperation> ready) {
+        int site = siteIndex(operation.getSiteId());
+        long clock = operation.getClock();
+        int length = operation.getLength();
+        String content = operation.getContent();
+        int originSite = operation.hasOrigin() ? siteIndex(operation.getOriginSiteId()) : NO_SITE;
+        long originClock = operation.getOriginClock();
+        boolean applied = false;
+
+        while (length > 0) {
+            CRDTSequence.Node<CRDTItem> known = find(site, clock);
+            int segment;
+            if (known != null) {
+                // Already integrated (duplicate or overlapping delivery): skip this part of the run
+                segment = (int) Math.min(length, known.value.endClock() - clock);
+            } else {
+                if (originSite != NO_SITE && find(originSite, originClock) == null) {
+                    // Origin not seen yet: hold the rest of the run until it arrives
+                    CRDTOperation rest = content == null
+                            ? CRDTOperation.insertDeleted(operation.getSiteId(), clock, siteName(originSite), originClock, length)
+                            : CRDTOperation.insert(operation.getSiteId(), clock, siteName(originSite), originClock, content);
+                    rest.setSessionId(operation.getSessionId());
+                    pendingInserts.computeIfAbsent(originSite, k -> new TreeMap<>())
+                            .computeIfAbsent(originClock, k -> new ArrayList<>()).add(rest);
+                    return applied;
+                }
+                Map.Entry<Long, CRDTSequence.Node<CRDTItem>> nextKnown = index.get(site).higherEntry(clock);
+                segment = nextKnown == null ? length : (int) Math.min(length, nextKnown.getKey() - clock);
+                integrate(site, clock, originSite, originClock, content == null ? null : content.substring(0, segment), segment);
+                releasePending(site, clock, segment, ready);
+                applied = true;
+            }
+            originSite = site;
+            originClock = clock + segment - 1;
+            clock += segment;
+            length -= segment;
+            content = content == null ? null : content.substring(segment);
+        }
+        return applied;
+    }
+
+    private boolean applyDelete(CRDTOperation operation) {
+        int site = siteIndex(operation.getSiteId());
+        long clock = operation.getClock();
+        int length = operation.getLength();
+        boolean changed = false;
+
+        while (length > 0) {
+            CRDTSequence.Node<CRDTItem> node = find(site, clock);
+            int segment;
+            if (node == null) {
+                Map.Entry<Long, CRDTSequence.Node<CRDTItem>> nextKnown = index.get(site).higherEntry(clock);
+                segment = nextKnown == null ? length : (int) Math.min(length, nextKnown.getKey() - clock);
+                pendingDeletes.add(CRDTOperation.delete(operation.getSiteId(), clock, segment));
+            } else {
+                node = isolate(node, (int) (clock - node.value.clock), length);
+                segment = node.value.getLength();
+                if (!node.value.isDeleted()) {
+                    markDeleted(node);
+                    changed = true;
+                }
+            }
+            clock += segment;
+            length -= segment;
+        }
+        return changed;
+    }
+
+    /**
+     * Place a run in the sequence using the RGA rule: starting right after its origin, skip every block
+     * that orders before it (its first character has a greater ID), then insert. If the run lands
+     * directly after a block it continues, the block is extended instead of adding a new one.
+     */
+    private void integrate(int site, long clock, int originSite, long originClock, String content, int length) {
+        CRDTSequence.Node<CRDTItem> prev = originSite == NO_SITE ? null : splitAfter(originSite, originClock);
+        CRDTSequence.Node<CRDTItem> next = prev == null ? sequence.first() : sequence.next(prev);
+        boolean skipped = false;
+        while (next != null && compare(next.value.site, next.value.clock, site, clock) > 0) {
+            prev = next;
+            next = sequence.next(next);
+            skipped = true;
+        }
+
+        if (!skipped && prev != null && continues(prev.value, site, clock, content)) {
+            prev.value.append(content, length);
+            sequence.setWeight(prev, prev.value.visibleLength());
+        } else {
+            CRDTItem item = new CRDTItem(site, clock, originSite, originClock, content, length);
+            CRDTSequence.Node<CRDTItem> node = sequence.insertAfter(prev, item, item.visibleLength());
+            index.get(site).put(clock, node);
+        }
+
+        if (!pendingDeletes.isEmpty()) {
+            retryPendingDeletes(sites.get(site));
+        }
+    }
+
+    private boolean continues(CRDTItem item, int site, long clock, String content) {
+        return item.site == site && item.endClock() == clock && item.isDeleted() == (content == null);
+    }
+
+    /**
+     * Queue buffered inserts whose origin lies in the run that was just integrated
+     */
+    private void releasePending(int site, long clock, int length, Deque<CRDTOperation> ready) {
+        TreeMap<Long, List<CRDTOperation>> waiting = pendingInserts.get(site);
+        if (waiting == null) {
+            return;
+        }
+        SortedMap<Long, List<CRDTOperation>> released = waiting.subMap(clock, clock + length);
+        for (List<CRDTOperation> operations : released.values()) {
+            ready.addAll(operations);
+        }
+        released.clear();
+        if (waiting.isEmpty()) {
+            pendingInserts.remove(site);
+        }
+    }
+
+    private void retryPendingDeletes(String site) {
+        List<CRDTOperation> retry = new ArrayList<>();
+        pendingDeletes.removeIf(operation -> {
+            if (operation.getSiteId().equals(site)) {
+                retry.add(operation);
+                return true;
+            }
+            return false;
+        });
+        retry.forEach(this::applyDelete);
+    }
+
+    /**
+     * Make the given range start a block and fit inside it, splitting as needed.
+     * @return The node of the block that starts at the offset and is at most maxLength long
+     */
+    private CRDTSequence.Node<CRDTItem> isolate(CRDTSequence.Node<CRDTItem> node, int offset, int maxLength) {
+        if (offset > 0) {
+            node = split(node, offset);
+        }
+        if (maxLength < node.value.getLength()) {
+            split(node, maxLength);
+        }
+        return node;
+    }
+
+    /**
+     * Make the given character the last one of its block
+     */
+    private CRDTSequence.Node<CRDTItem> splitAfter(int site, long clock) {
+        CRDTSequence.Node<CRDTItem> node = find(site, clock);
+        int offset = (int) (clock - node.value.clock) + 1;
+        if (offset < node.value.getLength()) {
+            split(node, offset);
+        }
+        return node;
+    }
+
+    private CRDTSequence.Node<CRDTItem> split(CRDTSequence.Node<CRDTItem> node, int offset) {
+        CRDTItem right = node.value.splitAt(offset);
+        sequence.setWeight(node, node.value.visibleLength());
+        CRDTSequence.Node<CRDTItem> rightNode = sequence.insertAfter(node, right, right.visibleLength());
+        index.get(right.site).put(right.clock, rightNode);
+        return rightNode;
+    }
+
+    private void markDeleted(CRDTSequence.Node<CRDTItem> node) {
+        node.value.delete();
+        sequence.setWeight(node, 0);
+    }
+
+    private CRDTSequence.Node<CRDTItem> find(int site, long clock) {
+        Map.Entry<Long, CRDTSequence.Node<CRDTItem>> entry = index.get(site).floorEntry(clock);
+        if (entry == null || !entry.getValue().value.contains(clock)) {
+            return null;
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Total order on character IDs: clock first, then site ID as a tie breaker
+     */
+    private int compare(int siteA, long clockA, int siteB, long clockB) {
+        if (clockA != clockB) {
+            return Long.compare(clockA, clockB);
+        }
+        return sites.get(siteA).compareTo(sites.get(siteB));
+    }
+
+    private int siteIndex(String site) {
+        Integer existing = siteIndexes.get(site);
+        if (existing != null) {
+            return existing;
+        }
+        int created = sites.size();
+        sites.add(site);
+        index.add(new TreeMap<>());
+        siteIndexes.put(site, created);
+        return created;
+    }
+
+    private String siteName(int site) {
+        return site == NO_SITE ? null : sites.get(site);
+    }
+
+    // Getters
+    public String getSiteId() { return siteId; }
+    public synchronized int getCharacterCount() { return sequence.visibleLength(); }
+    /** Number of run-length blocks in the store, tombstones included */
+    public synchronized int getItemCount() { return sequence.size(); }
+
+    @Override
+    public String toString() {
+        return "CRDTDocument{" +
+                "siteId='" + siteId + '\'' +
+                ", text='" + getText() + '\'' +
+                ", characterCount=" + getCharacterCount() +
+                '}';
+    }
+}
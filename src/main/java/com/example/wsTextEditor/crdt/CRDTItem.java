@@ -0,0 +1,68 @@
+package com.example.wsTextEditor.crdt;
+
+/**
+ * Run-length block of consecutive characters inserted by one site.
+ * Character i of the block has ID (site, clock + i) and follows character i - 1, so only the
+ * first character's origin is stored. Deleted blocks drop their text and keep only the length.
+ */
+final class CRDTItem {
+    static final int NO_SITE = -1;
+
+    final int site;
+    final long clock;
+    /** Site of the character this block follows, or NO_SITE at the beginning of the document */
+    final int originSite;
+    final long originClock;
+    private StringBuilder content;
+    private int length;
+
+    CRDTItem(int site, long clock, int originSite, long originClock, String content, int length) {
+        this.site = site;
+        this.clock = clock;
+        this.originSite = originSite;
+        this.originClock = originClock;
+        this.content = content == null ? null : new StringBuilder(content);
+        this.length = length;
+    }
+
+    int getLength() { return length; }
+
+    boolean isDeleted() { return content == null; }
+
+    int visibleLength() { return content == null ? 0 : length; }
+
+    /** Clock one past the last character of the block */
+    long endClock() { return clock + length; }
+
+    boolean contains(long id) { return id >= clock && id < clock + length; }
+
+    CharSequence getContent() { return content; }
+
+    /**
+     * Extend the block with a run that directly continues it (same site, next clock, same state)
+     */
+    void append(String text, int runLength) {
+        if (content != null) {
+            content.append(text);
+        }
+        length += runLength;
+    }
+
+    void delete() {
+        content = null;
+    }
+
+    /**
+     * Split the block before the given offset and return the right half; this block keeps the left half.
+     */
+    CRDTItem splitAt(int offset) {
+        String rightText = content == null ? null : content.substring(offset);
+        CRDTItem right = new CRDTItem(site, clock + offset, site, clock + offset - 1, rightText, length - offset);
+        if (content != null) {
+            content.setLength(offset);
+            content.trimToSize();
+        }
+        length = offset;
+        return right;
+    }
+}
@@ -1,56 +1,141 @@
-//package com.example.wsTextEditor.crdt;
-//
-//import com.fasterxml.jackson.annotation.JsonCreator;
-//import com.fasterxml.jackson.annotation.JsonProperty;
-//
-//public class CRDTOperation {
-//    public enum Type {
-//        INSERT, DELETE, UPDATE
-//    }
-//
-//    private Type type;
-//    private CRDTCharacter character;
-//    private String sessionId;
-//    private String siteId;
-//    private long timestamp;
-//
-//    public CRDTOperation() {}
-//
-//    @JsonCreator
-//    public CRDTOperation(@JsonProperty("type") Type type,
-//                         @JsonProperty("character") CRDTCharacter character,
-//                         @JsonProperty("sessionId") String sessionId,
-//                         @JsonProperty("siteId") String siteId,
-//                         @JsonProperty("timestamp") long timestamp) {
-//        this.type = type;
-//        this.character = character;
-//        this.sessionId = sessionId;
-//        this.siteId = siteId;
-//        this.timestamp = timestamp;
-//    }
-//
-//    // Getters
-//    public Type getType() { return type; }
-//    public CRDTCharacter getCharacter() { return character; }
-//    public String getSessionId() { return sessionId; }
-//    public String getSiteId() { return siteId; }
-//    public long getTimestamp() { return timestamp; }
-//
-//    // Setters
-//    public void setType(Type type) { this.type = type; }
-//    public void setCharacter(CRDTCharacter character) { this.character = character; }
-//    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
-//    public void setSiteId(String siteId) { this.siteId = siteId; }
-//    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
-//
-//    @Override
-//    public String toString() {
-//        return "CRDTOperation{" +
-//                "type=" + type +
-//                ", character=" + character +
-//                ", sessionId='" + sessionId + '\'' +
-//                ", siteId='" + siteId + '\'' +
-//                ", timestamp=" + timestamp +
-//                '}';
-//    }
-//}
+package com.example.wsTextEditor.crdt;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * A run of consecutive character IDs (siteId, clock) .. (siteId, clock + length - 1).
+ * INSERT carries the text of the run and the ID of the character it follows (origin);
+ * an INSERT without content is a run that was already deleted (tombstone).
+ * DELETE only carries the ID range.
+ */
+public class CRDTOperation {
+    public enum Type {
+        INSERT, DELETE
+    }
+
+    private Type type;
+    private String siteId;
+    private long clock;
+    private String originSiteId;
+    private long originClock;
+    private String content;
+    private int length;
+    private String sessionId;
+    private long timestamp;
+
+    public CRDTOperation() {}
+
+    @JsonCreator
+    public CRDTOperation(@JsonProperty("type") Type type,
+                         @JsonProperty("siteId") String siteId,
+                         @JsonProperty("clock") long clock,
+                         @JsonProperty("originSiteId") String originSiteId,
+                         @JsonProperty("originClock") long originClock,
+                         @JsonProperty("content") String content,
+                         @JsonProperty("length") int length,
+                         @JsonProperty("sessionId") String sessionId,
+                         @JsonProperty("timestamp") long timestamp) {
+        this.type = type;
+        this.siteId = siteId;
+        this.clock = clock;
+        this.originSiteId = originSiteId;
+        this.originClock = originClock;
+        this.content = content;
+        this.length = content != null ? content.length() : length;
+        this.sessionId = sessionId;
+        this.timestamp = timestamp;
+    }
+
+    public static CRDTOperation insert(String siteId, long clock, String originSiteId, long originClock, String content) {
+        return new CRDTOperation(Type.INSERT, siteId, clock, originSiteId, originClock, content, content.length(),
+                null, System.currentTimeMillis());
+    }
+
+    public static CRDTOperation insertDeleted(String siteId, long clock, String originSiteId, long originClock, int length) {
+        return new CRDTOperation(Type.INSERT, siteId, clock, originSiteId, originClock, null, length,
+                null, System.currentTimeMillis());
+    }
+
+    public static CRDTOperation delete(String siteId, long clock, int length) {
+        return new CRDTOperation(Type.DELETE, siteId, clock, null, 0, null, length,
+                null, System.currentTimeMillis());
+    }
+
+    // Getters
+    public Type getType() { return type; }
+    public String getSiteId() { return siteId; }
+    public long getClock() { return clock; }
+    public String getOriginSiteId() { return originSiteId; }
+    public long getOriginClock() { return originClock; }
+    public String getContent() { return content; }
+    public int getLength() { return length; }
+    public String getSessionId() { return sessionId; }
+    public long getTimestamp() { return timestamp; }
+
+    @JsonIgnore
+    public boolean hasOrigin() { return originSiteId != null; }
+
+    /**
+     * Combine this operation with one that directly continues it: an insert typed right after
+     * this run by the same site, or a delete of the ID range adjacent to this one (either side,
+     * so backspacing coalesces too).
+     * @return The combined operation, or null if the two cannot be expressed as one run
+     */
+    public CRDTOperation mergeWith(CRDTOperation next) {
+        if (type != next.type || !siteId.equals(next.siteId) || !Objects.equals(sessionId, next.sessionId)) {
+            return null;
+        }
+        long end = clock + length;
+        if (type == Type.INSERT) {
+            boolean continues = next.clock == end
+                    && siteId.equals(next.originSiteId) && next.originClock == end - 1
+                    && (content == null) == (next.content == null);
+            if (!continues) {
+                return null;
+            }
+            String merged = content == null ? null : content + next.content;
+            return new CRDTOperation(type, siteId, clock, originSiteId, originClock, merged, length + next.length,
+                    sessionId, next.timestamp);
+        }
+        if (next.clock == end) {
+            return new CRDTOperation(type, siteId, clock, null, 0, null, length + next.length, sessionId, next.timestamp);
+        }
+        if (next.clock + next.length == clock) {
+            return new CRDTOperation(type, siteId, next.clock, null, 0, null, length + next.length, sessionId, next.timestamp);
+        }
+        return null;
+    }
+
+    // Setters
+    public void setType(Type type) { this.type = type; }
+    public void setSiteId(String siteId) { this.siteId = siteId; }
+    public void setClock(long clock) { this.clock = clock; }
+    public void setOriginSiteId(String originSiteId) { this.originSiteId = originSiteId; }
+    public void setOriginClock(long originClock) { this.originClock = originClock; }
+    public void setContent(String content) {
+        this.content = content;
+        if (content != null) {
+            this.length = content.length();
+        }
+    }
+    public void setLength(int length) { this.length = length; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+
+    @Override
+    public String toString() {
+        return "CRDTOperation{" +
+                "type=" + type +
+                ", id=" + clock + "_" + siteId +
+                ", origin=" + (originSiteId == null ? "null" : originClock + "_" + originSiteId) +
+                ", content='" + content + '\'' +
+                ", length=" + length +
+                ", sessionId='" + sessionId + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.wsTextEditor.crdt;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Order-statistic treap holding the linearised RGA sequence.
+ * Nodes have no key: their order is the in-order position in which they were inserted.
+ * Every node stores the visible length of its subtree, so rank and position lookups
+ * run in O(log n) expected time. All walks are iterative, so long single-author runs
+ * cannot overflow the stack.
+ */
+final class CRDTSequence<T> {
+
+    static final class Node<T> {
+        final T value;
+        private final int priority;
+        /** Visible length contributed by this node alone (0 for tombstones). */
+        private int weight;
+        /** Visible length of the whole subtree rooted at this node. */
+        private int visible;
+        /** Number of nodes in the subtree rooted at this node. */
+        private int count;
+        private Node<T> left;
+        private Node<T> right;
+        private Node<T> parent;
+
+        private Node(T value, int weight) {
+            this.value = value;
+            this.weight = weight;
+            this.visible = weight;
+            this.count = 1;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+
+        int getWeight() { return weight; }
+    }
+
+    private Node<T> root;
+
+    /**
+     * Insert a value directly after the given node.
+     * @param anchor The node the value should follow (null for the beginning of the sequence)
+     * @param value The value to insert
+     * @param weight The visible length the value contributes
+     * @return The node holding the value
+     */
+    Node<T> insertAfter(Node<T> anchor, T value, int weight) {
+        Node<T> node = new Node<>(value, weight);
+        if (root == null) {
+            root = node;
+            return node;
+        }
+
+        // Attach as the in-order successor of the anchor (or as the very first node)
+        if (anchor == null) {
+            Node<T> first = leftmost(root);
+            first.left = node;
+            node.parent = first;
+        } else if (anchor.right == null) {
+            anchor.right = node;
+            node.parent = anchor;
+        } else {
+            Node<T> successor = leftmost(anchor.right);
+            successor.left = node;
+            node.parent = successor;
+        }
+
+        for (Node<T> p = node.parent; p != null; p = p.parent) {
+            p.visible += weight;
+            p.count++;
+        }
+
+        // Restore the heap property on priorities
+        while (node.parent != null && node.priority > node.parent.priority) {
+            rotateUp(node);
+        }
+        return node;
+    }
+
+    /**
+     * Change the visible length contributed by a node, e.g. when it becomes a tombstone.
+     */
+    void setWeight(Node<T> node, int weight) {
+        int delta = weight - node.weight;
+        if (delta == 0) {
+            return;
+        }
+        node.weight = weight;
+        for (Node<T> p = node; p != null; p = p.parent) {
+            p.visible += delta;
+        }
+    }
+
+    /**
+     * Number of visible elements that precede the given node.
+     */
+    int rank(Node<T> node) {
+        int rank = visible(node.left);
+        for (Node<T> x = node; x.parent != null; x = x.parent) {
+            if (x == x.parent.right) {
+                rank += visible(x.parent.left) + x.parent.weight;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Find the node that covers the given visible position.
+     * @param position Visible position, 0 based
+     * @return The node, or null if the position is outside the visible text
+     */
+    Node<T> nodeAt(int position) {
+        if (position < 0 || position >= visibleLength()) {
+            return null;
+        }
+        Node<T> x = root;
+        while (x != null) {
+            int leftVisible = visible(x.left);
+            if (position < leftVisible) {
+                x = x.left;
+            } else if (position < leftVisible + x.weight) {
+                return x;
+            } else {
+                position -= leftVisible + x.weight;
+                x = x.right;
+            }
+        }
+        return null;
+    }
+
+    Node<T> first() {
+        return root == null ? null : leftmost(root);
+    }
+
+    Node<T> last() {
+        if (root == null) {
+            return null;
+        }
+        Node<T> x = root;
+        while (x.right != null) {
+            x = x.right;
+        }
+        return x;
+    }
+
+    /**
+     * In-order successor of the given node.
+     */
+    Node<T> next(Node<T> node) {
+        if (node.right != null) {
+            return leftmost(node.right);
+        }
+        Node<T> x = node;
+        while (x.parent != null && x == x.parent.right) {
+            x = x.parent;
+        }
+        return x.parent;
+    }
+
+    /**
+     * In-order predecessor of the given node.
+     */
+    Node<T> previous(Node<T> node) {
+        if (node.left != null) {
+            Node<T> x = node.left;
+            while (x.right != null) {
+                x = x.right;
+            }
+            return x;
+        }
+        Node<T> x = node;
+        while (x.parent != null && x == x.parent.left) {
+            x = x.parent;
+        }
+        return x.parent;
+    }
+
+    int visibleLength() {
+        return visible(root);
+    }
+
+    int size() {
+        return root == null ? 0 : root.count;
+    }
+
+    private static <T> Node<T> leftmost(Node<T> node) {
+        Node<T> x = node;
+        while (x.left != null) {
+            x = x.left;
+        }
+        return x;
+    }
+
+    private static int visible(Node<?> node) {
+        return node == null ? 0 : node.visible;
+    }
+
+    private static int count(Node<?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Rotate the node above its parent, keeping the in-order sequence unchanged.
+     */
+    private void rotateUp(Node<T> x) {
+        Node<T> p = x.parent;
+        Node<T> g = p.parent;
+        if (x == p.left) {
+            p.left = x.right;
+            if (x.right != null) {
+                x.right.parent = p;
+            }
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) {
+                x.left.parent = p;
+            }
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+        if (g == null) {
+            root = x;
+        } else if (g.left == p) {
+            g.left = x;
+        } else {
+            g.right = x;
+        }
+        p.visible = visible(p.left) + p.weight + visible(p.right);
+        p.count = count(p.left) + 1 + count(p.right);
+        x.visible = visible(x.left) + x.weight + visible(x.right);
+        x.count = count(x.left) + 1 + count(x.right);
+    }
+}
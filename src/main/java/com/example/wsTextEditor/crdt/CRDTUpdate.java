@@ -0,0 +1,43 @@
+package com.example.wsTextEditor.crdt;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of CRDT operations in causal order, optionally with the state vector of the sender
+ * (site ID -> highest clock it has integrated from that site).
+ */
+public class CRDTUpdate {
+    private List<CRDTOperation> operations;
+    private Map<String, Long> stateVector;
+
+    public CRDTUpdate() {
+        this(new ArrayList<>(), new LinkedHashMap<>());
+    }
+
+    @JsonCreator
+    public CRDTUpdate(@JsonProperty("operations") List<CRDTOperation> operations,
+                      @JsonProperty("stateVector") Map<String, Long> stateVector) {
+        this.operations = operations != null ? operations : new ArrayList<>();
+        this.stateVector = stateVector != null ? stateVector : new LinkedHashMap<>();
+    }
+
+    public List<CRDTOperation> getOperations() { return operations; }
+    public Map<String, Long> getStateVector() { return stateVector; }
+
+    public void setOperations(List<CRDTOperation> operations) { this.operations = operations; }
+    public void setStateVector(Map<String, Long> stateVector) { this.stateVector = stateVector; }
+
+    @Override
+    public String toString() {
+        return "CRDTUpdate{" +
+                "operations=" + operations +
+                ", stateVector=" + stateVector +
+                '}';
+    }
+}
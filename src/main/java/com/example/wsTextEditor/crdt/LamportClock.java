@@ -0,0 +1,42 @@
+package com.example.wsTextEditor.crdt;
+
+/**
+ * Lamport clock for one replica. Every ID a site hands out is greater than every ID it has seen,
+ * so a character always orders after its origin and clock skew between machines is irrelevant.
+ * Not thread safe; guarded by the owning CRDTDocument.
+ */
+public class LamportClock {
+    private long time;
+
+    public LamportClock() {
+        this(0);
+    }
+
+    public LamportClock(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Reserve a run of consecutive timestamps for a local operation
+     * @param count Number of timestamps to reserve
+     * @return The first timestamp of the run
+     */
+    public long tick(int count) {
+        long first = time + 1;
+        time += count;
+        return first;
+    }
+
+    /**
+     * Advance past a timestamp received from another site
+     */
+    public void observe(long remoteTime) {
+        if (remoteTime > time) {
+            time = remoteTime;
+        }
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
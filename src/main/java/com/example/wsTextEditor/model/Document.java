@@ -6,9 +6,10 @@ import java.util.*;
 
 /**
  * 文档实体类
- * 表示一个可协作编辑的文档
+ * 表示一个可协作编辑的文档；正文分块存放，由 DocumentContentService 读写
  */
 @Entity
+@Table(indexes = @Index(name = "idx_document_updated_at_id", columnList = "updated_at, id"))
 public class Document {
 
     /** 文档ID，主键，自动生成 */
@@ -31,10 +32,6 @@ public class Document {
     /** 文档编程语言 */
     private String language;
     
-    /** 文档内容，最大长度10000字符 */
-    @Column(length = 10000)
-    private String content;
-
     /** 文档标签，存储为逗号分隔的字符串 */
     @Column(name = "tags")
     private String tags; // 存储逗号分隔的标签
@@ -50,6 +47,11 @@ public class Document {
     @Column(name = "updated_at")
     private Date updatedAt;
 
+    /** 乐观锁版本号，每次修改加一；已有数据行升级时从 0 开始 */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     /**
      * 实体持久化前回调方法
      * 设置文档唯一标识符和创建时间
@@ -160,17 +162,6 @@ public class Document {
     }
 
 
-    public String getContent() {
-        return content;
-    }
-
-
-    public void setContent(String content) {
-        this.content = content;
-    }
-
-
-
     public Date getCreatedAt() {
         return createdAt;
     }
@@ -188,4 +179,12 @@ public class Document {
     public void setUpdatedAt(Date updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文档内容块
+ * 以内容的 SHA-256 作为主键，相同内容只存一份，可被多个文档或同一文档的多个版本引用
+ */
+@Entity
+@Table(name = "document_chunks")
+public class DocumentChunk {
+
+    /** 块内容的 SHA-256 十六进制串 */
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    /** 块内容，text 类型由 PostgreSQL 自动 TOAST 压缩 */
+    @Column(nullable = false, columnDefinition = "text")
+    private String data;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public DocumentChunk() {
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 文档内容块引用
+ * 按 seq 顺序拼接引用的块即为文档内容
+ */
+@Entity
+@Table(name = "document_chunk_refs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_document_chunk_refs_doc_seq", columnNames = {"doc_id", "seq"}),
+        indexes = @Index(name = "idx_document_chunk_refs_chunk_hash", columnList = "chunk_hash"))
+public class DocumentChunkRef {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 文档唯一标识符 */
+    @Column(name = "doc_id", nullable = false)
+    private String docId;
+
+    /** 块在文档中的序号，从 0 开始 */
+    @Column(nullable = false)
+    private Integer seq;
+
+    /** 引用的块，外键保证块在被引用期间不会被回收 */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chunk_hash", nullable = false)
+    private DocumentChunk chunk;
+
+    public DocumentChunkRef() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(String docId) {
+        this.docId = docId;
+    }
+
+    public Integer getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Integer seq) {
+        this.seq = seq;
+    }
+
+    public DocumentChunk getChunk() {
+        return chunk;
+    }
+
+    public void setChunk(DocumentChunk chunk) {
+        this.chunk = chunk;
+    }
+}
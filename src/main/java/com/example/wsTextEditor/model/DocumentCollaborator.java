@@ -3,7 +3,8 @@ package com.example.wsTextEditor.model;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "document_collaborators")
+@Table(name = "document_collaborators",
+        indexes = @Index(name = "idx_document_collaborators_user_id", columnList = "user_id"))
 public class DocumentCollaborator {
     
     public enum PermissionLevel {
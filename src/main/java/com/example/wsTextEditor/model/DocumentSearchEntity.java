@@ -6,9 +6,12 @@ import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 
 import java.util.Date;
+import java.util.List;
 
 
-@Document(indexName="documents")
+// indexName 是别名，索引重建时指向新版本索引；向新索引写入时以文档版本号做外部版本控制
+// alwaysWriteMapping：启动时把新增字段的映射写入已有索引
+@Document(indexName="documents", versionType = Document.VersionType.EXTERNAL_GTE, alwaysWriteMapping = true)
 public class DocumentSearchEntity {
     //定义基本属性
     @Id
@@ -27,6 +30,9 @@ public class DocumentSearchEntity {
     private Date updateAt;
     @Field(type = FieldType.Keyword)
     private String owner;
+    //有协作者记录的用户名（包括所有者），搜索时按当前用户过滤
+    @Field(type = FieldType.Keyword)
+    private List<String> collaborators;
     //定义set跟get函数
     public Long getId() {
         return id;
@@ -76,6 +82,12 @@ public class DocumentSearchEntity {
     public void setOwner(String owner) {
         this.owner = owner;
     }
+    public List<String> getCollaborators() {
+        return collaborators;
+    }
+    public void setCollaborators(List<String> collaborators) {
+        this.collaborators = collaborators;
+    }
     //构造函数初始化更新时间
     public DocumentSearchEntity(){
     }
@@ -0,0 +1,58 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 文档标签索引
+ * 每个文档的每个标签一行，标签统一存为小写；Document.tags 仍保留原始大小写用于展示
+ */
+@Entity
+@Table(name = "document_tags",
+        uniqueConstraints = @UniqueConstraint(name = "uk_document_tags_document_tag", columnNames = {"document_id", "tag"}),
+        indexes = @Index(name = "idx_document_tags_tag", columnList = "tag"))
+public class DocumentTag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_id", nullable = false)
+    private Document document;
+
+    /** 小写标签 */
+    @Column(nullable = false, length = 100)
+    private String tag;
+
+    public DocumentTag() {
+    }
+
+    public DocumentTag(Document document, String tag) {
+        this.document = document;
+        this.tag = tag;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public void setDocument(Document document) {
+        this.document = document;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文档删除墓碑
+ * 由 document 表上的删除触发器写入（见 schema.sql），不论删除来自哪条代码路径；
+ * 搜索变更同步把对应文档从索引中移除后删除墓碑
+ */
+@Entity
+@Table(name = "document_tombstones")
+public class DocumentTombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 被删除文档的主键 */
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    /** 被删除文档的唯一标识符 */
+    @Column(name = "unique_id", nullable = false)
+    private String uniqueId;
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
+    public DocumentTombstone() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public void setUniqueId(String uniqueId) {
+        this.uniqueId = uniqueId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 事务发件箱事件
+ * 与实体变更在同一事务中写入，提交后由 {@link com.example.wsTextEditor.service.OutboxService} 批量投递到
+ * Elasticsearch 或 RabbitMQ，投递成功后删除
+ */
+@Entity
+@Table(name = "outbox_events", indexes = @Index(name = "idx_outbox_events_available_at", columnList = "available_at, id"))
+public class OutboxEvent {
+
+    /** 事件类型 */
+    public enum Type {
+        /** 重新索引文档 */
+        SEARCH_INDEX,
+        /** 从索引中移除文档 */
+        SEARCH_DELETE,
+        /** 发送 RabbitMQ 消息 */
+        MESSAGE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    /** 搜索事件的文档唯一标识符 */
+    @Column(name = "aggregate_id")
+    private String aggregateId;
+
+    /** 消息事件的交换机 */
+    private String exchange;
+
+    /** 消息事件的路由键 */
+    @Column(name = "routing_key")
+    private String routingKey;
+
+    /** 消息事件的 JSON 消息体 */
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    /** 已投递失败的次数 */
+    private int attempts;
+
+    /** 最后一次投递失败的原因 */
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+
+    /** 早于该时间不投递，失败后按退避推迟 */
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(Type type, String aggregateId, String exchange, String routingKey, String payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.availableAt = this.createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public void setExchange(String exchange) {
+        this.exchange = exchange;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public void setRoutingKey(String routingKey) {
+        this.routingKey = routingKey;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getAvailableAt() {
+        return availableAt;
+    }
+
+    public void setAvailableAt(LocalDateTime availableAt) {
+        this.availableAt = availableAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
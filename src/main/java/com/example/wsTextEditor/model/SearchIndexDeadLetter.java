@@ -0,0 +1,99 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 搜索索引死信
+ * 重试次数用尽仍未写入 Elasticsearch 的索引或删除请求，定时重新投递
+ */
+@Entity
+@Table(name = "search_index_dead_letters")
+public class SearchIndexDeadLetter {
+
+    /** 索引操作类型 */
+    public enum Operation {
+        INDEX, DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 文档唯一标识符 */
+    @Column(name = "unique_id", nullable = false)
+    private String uniqueId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Operation operation;
+
+    /** 已尝试次数 */
+    private int attempts;
+
+    /** 最后一次失败的原因 */
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public SearchIndexDeadLetter() {
+    }
+
+    public SearchIndexDeadLetter(String uniqueId, Operation operation, int attempts, String lastError) {
+        this.uniqueId = uniqueId;
+        this.operation = operation;
+        this.attempts = attempts;
+        this.lastError = lastError;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public void setUniqueId(String uniqueId) {
+        this.uniqueId = uniqueId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 搜索索引重建任务
+ * 记录新版本索引名和按文档主键推进的检查点，节点崩溃后由其他节点（或重启后的节点）从检查点继续；
+ * 乐观锁保证同一时刻只有一个节点在推进任务
+ */
+@Entity
+@Table(name = "search_reindex_jobs")
+public class SearchReindexJob {
+
+    /** 任务状态 */
+    public enum Status {
+        /** 正在重建（包括执行节点崩溃、等待接管的任务） */
+        RUNNING,
+        /** 已完成并切换别名 */
+        COMPLETED,
+        /** 已取消；执行节点停止写入后删除新索引 */
+        CANCELLED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 正在写入的新版本索引名 */
+    @Column(name = "index_name", nullable = false)
+    private String indexName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    /** 已写入的最大文档主键，从其后继续 */
+    @Column(name = "last_document_id", nullable = false)
+    private long lastDocumentId;
+
+    /** 已写入的文档数 */
+    @Column(name = "indexed_count", nullable = false)
+    private long indexedCount;
+
+    /** 任务开始时的文档总数，用于估算进度 */
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    /** 最后一次失败的原因 */
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    /** 执行节点每写完一批更新一次，超过一定时间未更新视为执行节点已失效 */
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /** 取消后新索引被删除的时间，为空表示尚待删除 */
+    @Column(name = "index_deleted_at")
+    private LocalDateTime indexDeletedAt;
+
+    @Version
+    @Column(name = "lock_version")
+    private Long lockVersion;
+
+    public SearchReindexJob() {
+    }
+
+    public SearchReindexJob(String indexName, long totalCount) {
+        this.indexName = indexName;
+        this.totalCount = totalCount;
+        this.status = Status.RUNNING;
+        this.startedAt = LocalDateTime.now();
+        this.heartbeatAt = this.startedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getLastDocumentId() {
+        return lastDocumentId;
+    }
+
+    public void setLastDocumentId(long lastDocumentId) {
+        this.lastDocumentId = lastDocumentId;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public LocalDateTime getIndexDeletedAt() {
+        return indexDeletedAt;
+    }
+
+    public void setIndexDeletedAt(LocalDateTime indexDeletedAt) {
+        this.indexDeletedAt = indexDeletedAt;
+    }
+
+    public Long getLockVersion() {
+        return lockVersion;
+    }
+
+    public void setLockVersion(Long lockVersion) {
+        this.lockVersion = lockVersion;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * 搜索变更同步水位
+ * 已同步到 Elasticsearch 的最后一个文档的 (updated_at, id)，下次从其后继续
+ */
+@Entity
+@Table(name = "search_sync_watermarks")
+public class SearchSyncWatermark {
+
+    /** 同步名称 */
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    /** 已同步的最后一个文档的更新时间 */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt;
+
+    /** 已同步的最后一个文档的主键，区分更新时间相同的文档 */
+    @Column(name = "document_id", nullable = false)
+    private long documentId;
+
+    /** 水位之后第一个文档连续写入失败的次数，达到上限后跳过该文档 */
+    @Column(name = "failed_attempts", nullable = false, columnDefinition = "integer default 0")
+    private int failedAttempts;
+
+    public SearchSyncWatermark() {
+    }
+
+    public SearchSyncWatermark(String name, Date updatedAt, long documentId) {
+        this.name = name;
+        this.updatedAt = updatedAt;
+        this.documentId = documentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(long documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public void setFailedAttempts(int failedAttempts) {
+        this.failedAttempts = failedAttempts;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Yjs 文档快照
+ * 由更新日志合并而成的单条 Yjs 更新，加载时先应用快照再回放 id 大于 lastUpdateId 的日志
+ */
+@Entity
+@Table(name = "yjs_snapshots")
+public class YjsSnapshot {
+
+    /** 文档唯一标识符 */
+    @Id
+    @Column(name = "doc_id")
+    private String docId;
+
+    /** 合并后的 Yjs v1 更新 */
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+
+    /** 已并入快照的最后一条日志 id */
+    @Column(name = "last_update_id", nullable = false)
+    private Long lastUpdateId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public YjsSnapshot() {
+    }
+
+    public YjsSnapshot(String docId) {
+        this.docId = docId;
+        this.lastUpdateId = 0L;
+    }
+
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(String docId) {
+        this.docId = docId;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public Long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public void setLastUpdateId(Long lastUpdateId) {
+        this.lastUpdateId = lastUpdateId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
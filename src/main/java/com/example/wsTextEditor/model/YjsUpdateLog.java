@@ -0,0 +1,63 @@
+package com.example.wsTextEditor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Yjs 增量更新日志
+ * 每行保存一条二进制 Yjs 更新（bytea），按 id 顺序回放；压缩后并入 {@link YjsSnapshot} 并删除
+ */
+@Entity
+@Table(name = "yjs_updates", indexes = @Index(name = "idx_yjs_updates_doc_id", columnList = "doc_id, id"))
+public class YjsUpdateLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 文档唯一标识符 */
+    @Column(name = "doc_id", nullable = false)
+    private String docId;
+
+    /** Yjs v1 更新的原始字节，不含同步协议帧头 */
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public YjsUpdateLog() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(String docId) {
+        this.docId = docId;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
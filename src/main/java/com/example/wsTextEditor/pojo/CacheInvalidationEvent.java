@@ -0,0 +1,87 @@
+package com.example.wsTextEditor.pojo;
+
+/**
+ * 缓存失效事件
+ * 通过 RabbitMQ 扇出交换机广播到所有节点，各节点收到后清除本地缓存中的对应条目
+ */
+public class CacheInvalidationEvent {
+
+    /** 失效事件类型 */
+    public enum Type {
+        /** 用户信息变更，userId 有效 */
+        USER_CHANGED,
+        /** 协作者权限变更，documentId 和 userId 有效 */
+        COLLABORATOR_CHANGED,
+        /** 文档元数据变更或删除，documentId 有效 */
+        DOCUMENT_CHANGED
+    }
+
+    private Type type;
+    private Long documentId;
+    private Long userId;
+    /** 发出事件的节点标识，节点忽略自己发出的事件 */
+    private String origin;
+
+    public CacheInvalidationEvent() {
+    }
+
+    public CacheInvalidationEvent(Type type, Long documentId, Long userId) {
+        this.type = type;
+        this.documentId = documentId;
+        this.userId = userId;
+    }
+
+    public static CacheInvalidationEvent userChanged(Long userId) {
+        return new CacheInvalidationEvent(Type.USER_CHANGED, null, userId);
+    }
+
+    public static CacheInvalidationEvent collaboratorChanged(Long documentId, Long userId) {
+        return new CacheInvalidationEvent(Type.COLLABORATOR_CHANGED, documentId, userId);
+    }
+
+    public static CacheInvalidationEvent documentChanged(Long documentId) {
+        return new CacheInvalidationEvent(Type.DOCUMENT_CHANGED, documentId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationEvent{" +
+                "type=" + type +
+                ", documentId=" + documentId +
+                ", userId=" + userId +
+                ", origin='" + origin + '\'' +
+                '}';
+    }
+}
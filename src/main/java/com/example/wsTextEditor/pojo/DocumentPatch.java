@@ -0,0 +1,86 @@
+package com.example.wsTextEditor.pojo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量保存请求
+ * 编辑按顺序应用，每个编辑的偏移量基于前一个编辑应用后的内容（UTF-16 下标，与浏览器字符串一致）
+ */
+public class DocumentPatch {
+    private String baseHash; // 编辑所基于内容的哈希
+    private List<Edit> edits = new ArrayList<>();
+    private String language;
+    private String title;
+
+    public static class Edit {
+        private int offset;
+        private int deleteCount;
+        private String insertText;
+
+        public Edit() {
+        }
+
+        public Edit(int offset, int deleteCount, String insertText) {
+            this.offset = offset;
+            this.deleteCount = deleteCount;
+            this.insertText = insertText;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public void setOffset(int offset) {
+            this.offset = offset;
+        }
+
+        public int getDeleteCount() {
+            return deleteCount;
+        }
+
+        public void setDeleteCount(int deleteCount) {
+            this.deleteCount = deleteCount;
+        }
+
+        public String getInsertText() {
+            return insertText;
+        }
+
+        public void setInsertText(String insertText) {
+            this.insertText = insertText;
+        }
+    }
+
+    public String getBaseHash() {
+        return baseHash;
+    }
+
+    public void setBaseHash(String baseHash) {
+        this.baseHash = baseHash;
+    }
+
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    public void setEdits(List<Edit> edits) {
+        this.edits = edits;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.wsTextEditor.pojo;
+
+import java.util.List;
+
+/**
+ * 一页搜索结果；nextCursor 为空表示没有下一页
+ */
+public class DocumentSearchPage {
+    private List<DocumentSearchResult> results;
+    /** 传回 cursor 参数取下一页（最后一条结果的排序值） */
+    private String nextCursor;
+
+    public DocumentSearchPage(List<DocumentSearchResult> results, String nextCursor) {
+        this.results = results;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<DocumentSearchResult> getResults() { return results; }
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,45 @@
+package com.example.wsTextEditor.pojo;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索结果中的一条文档，不包含全文，只带标题和内容中的高亮片段
+ */
+public class DocumentSearchResult {
+    private Long id;
+    private String uniqueId;
+    private String title;
+    private String language;
+    private String owner;
+    private Date createAt;
+    private Date updateAt;
+    /** 相关度得分，无关键字时为 NaN */
+    private float score;
+    /** 字段名 -> 高亮片段，片段已由 Elasticsearch 做 HTML 转义，只有 &lt;em&gt; 标签 */
+    private Map<String, List<String>> highlights;
+
+    public DocumentSearchResult(Long id, String uniqueId, String title, String language, String owner,
+                                Date createAt, Date updateAt, float score, Map<String, List<String>> highlights) {
+        this.id = id;
+        this.uniqueId = uniqueId;
+        this.title = title;
+        this.language = language;
+        this.owner = owner;
+        this.createAt = createAt;
+        this.updateAt = updateAt;
+        this.score = score;
+        this.highlights = highlights;
+    }
+
+    public Long getId() { return id; }
+    public String getUniqueId() { return uniqueId; }
+    public String getTitle() { return title; }
+    public String getLanguage() { return language; }
+    public String getOwner() { return owner; }
+    public Date getCreateAt() { return createAt; }
+    public Date getUpdateAt() { return updateAt; }
+    public float getScore() { return score; }
+    public Map<String, List<String>> getHighlights() { return highlights; }
+}
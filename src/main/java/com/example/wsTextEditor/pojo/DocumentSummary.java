@@ -0,0 +1,80 @@
+package com.example.wsTextEditor.pojo;
+
+import com.example.wsTextEditor.model.DocumentCollaborator;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 仪表板文档列表的只读投影，只包含列表需要的列，不加载文档实体和所有者实体
+ */
+public class DocumentSummary {
+    private Long id;
+    private String uniqueId;
+    private String title;
+    private String language;
+    private String tags; // 逗号分隔的标签
+    private Date createdAt;
+    private Date updatedAt;
+    private String ownerName;
+    private DocumentCollaborator.PermissionLevel permissionLevel;
+
+    public DocumentSummary(Long id, String uniqueId, String title, String language, String tags,
+                           Date createdAt, Date updatedAt, String ownerName,
+                           DocumentCollaborator.PermissionLevel permissionLevel) {
+        this.id = id;
+        this.uniqueId = uniqueId;
+        this.title = title;
+        this.language = language;
+        this.tags = tags;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.ownerName = ownerName;
+        this.permissionLevel = permissionLevel;
+    }
+
+    /**
+     * 作为下一页起点的游标："更新时间微秒_文档ID"
+     * updated_at 精确到微秒，只保留毫秒时游标会排在它所在的行之前，下一页重复该行并打乱同一毫秒内的其他行
+     */
+    public String getCursor() {
+        long micros = 0;
+        if (updatedAt instanceof Timestamp timestamp) {
+            micros = Math.floorDiv(timestamp.getTime(), 1000) * 1_000_000 + timestamp.getNanos() / 1000;
+        } else if (updatedAt != null) {
+            micros = updatedAt.getTime() * 1000;
+        }
+        return micros + "_" + id;
+    }
+
+    /**
+     * 把游标中的微秒时间还原为时间戳
+     * @param micros 游标中的更新时间（微秒）
+     * @return 保留微秒的时间戳
+     */
+    public static Timestamp cursorTime(long micros) {
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1_000_000) * 1000);
+        timestamp.setNanos((int) Math.floorMod(micros, 1_000_000) * 1000);
+        return timestamp;
+    }
+
+    public List<String> getTagList() {
+        if (tags == null || tags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(tags.split(","));
+    }
+
+    public Long getId() { return id; }
+    public String getUniqueId() { return uniqueId; }
+    public String getTitle() { return title; }
+    public String getLanguage() { return language; }
+    public String getTags() { return tags; }
+    public Date getCreatedAt() { return createdAt; }
+    public Date getUpdatedAt() { return updatedAt; }
+    public String getOwnerName() { return ownerName; }
+    public DocumentCollaborator.PermissionLevel getPermissionLevel() { return permissionLevel; }
+}
@@ -0,0 +1,20 @@
+package com.example.wsTextEditor.pojo;
+
+/**
+ * 标签分面：标签及当前用户可访问文档中带该标签的文档数
+ */
+public class TagFacet {
+    private String tag;
+    private long count;
+
+    public TagFacet(String tag, long count) {
+        this.tag = tag;
+        this.count = count;
+    }
+
+    public String getTag() { return tag; }
+    public void setTag(String tag) { this.tag = tag; }
+
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+}
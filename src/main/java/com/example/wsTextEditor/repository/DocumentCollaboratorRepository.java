@@ -4,8 +4,14 @@ import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.DocumentCollaborator;
 import com.example.wsTextEditor.model.User;
 import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
+import com.example.wsTextEditor.pojo.DocumentSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +29,14 @@ public interface DocumentCollaboratorRepository extends JpaRepository<DocumentCo
      */
     List<DocumentCollaborator> findByDocument(Document document);
 
+    /**
+     * 批量查询文档的协作者用户名，供搜索索引写入
+     * @param documentIds 文档ID
+     * @return 每行为 [文档ID, 用户名]
+     */
+    @Query("SELECT c.document.id, c.user.username FROM DocumentCollaborator c WHERE c.document.id IN :documentIds")
+    List<Object[]> findUsernamesByDocumentIdIn(@Param("documentIds") Collection<Long> documentIds);
+
     /**
      * 根据用户对象查找该用户参与的所有文档协作记录
      * @param user 指定的用户对象
@@ -73,4 +87,62 @@ public interface DocumentCollaboratorRepository extends JpaRepository<DocumentCo
      * @param userId 用户ID
      */
     void deleteByDocumentAndUserId(Document document , long userId);
+
+    /**
+     * 仪表板第一页：用户参与的文档摘要，按更新时间倒序
+     * @param userId 用户ID
+     * @param pageable 只使用其中的页大小
+     * @return 文档摘要列表
+     */
+    @Query("SELECT new com.example.wsTextEditor.pojo.DocumentSummary(d.id, d.uniqueId, d.title, d.language, d.tags, " +
+            "d.createdAt, d.updatedAt, o.username, c.permissionLevel) " +
+            "FROM DocumentCollaborator c JOIN c.document d JOIN d.owner o " +
+            "WHERE c.user.id = :userId " +
+            "ORDER BY d.updatedAt DESC, d.id DESC")
+    List<DocumentSummary> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * 仪表板后续页（键集分页）：排在游标 (updatedAt, id) 之后的文档摘要
+     * @param userId 用户ID
+     * @param updatedAt 上一页最后一条的更新时间
+     * @param id 上一页最后一条的文档ID
+     * @param pageable 只使用其中的页大小
+     * @return 文档摘要列表
+     */
+    @Query("SELECT new com.example.wsTextEditor.pojo.DocumentSummary(d.id, d.uniqueId, d.title, d.language, d.tags, " +
+            "d.createdAt, d.updatedAt, o.username, c.permissionLevel) " +
+            "FROM DocumentCollaborator c JOIN c.document d JOIN d.owner o " +
+            "WHERE c.user.id = :userId AND (d.updatedAt < :updatedAt OR (d.updatedAt = :updatedAt AND d.id < :id)) " +
+            "ORDER BY d.updatedAt DESC, d.id DESC")
+    List<DocumentSummary> findSummariesByUserIdBefore(@Param("userId") Long userId, @Param("updatedAt") Date updatedAt,
+                                                      @Param("id") Long id, Pageable pageable);
+
+    /**
+     * 用户参与的、带有任一指定标签的文档摘要
+     * @param userId 用户ID
+     * @param tags 小写标签
+     * @return 文档摘要列表
+     */
+    @Query("SELECT new com.example.wsTextEditor.pojo.DocumentSummary(d.id, d.uniqueId, d.title, d.language, d.tags, " +
+            "d.createdAt, d.updatedAt, o.username, c.permissionLevel) " +
+            "FROM DocumentCollaborator c JOIN c.document d JOIN d.owner o " +
+            "WHERE c.user.id = :userId AND d.id IN (SELECT t.document.id FROM DocumentTag t WHERE t.tag IN :tags) " +
+            "ORDER BY d.updatedAt DESC, d.id DESC")
+    List<DocumentSummary> findSummariesByUserIdAndAnyTag(@Param("userId") Long userId, @Param("tags") Collection<String> tags);
+
+    /**
+     * 用户参与的、同时带有全部指定标签的文档摘要
+     * @param userId 用户ID
+     * @param tags 小写标签，不能重复
+     * @param tagCount 标签个数
+     * @return 文档摘要列表
+     */
+    @Query("SELECT new com.example.wsTextEditor.pojo.DocumentSummary(d.id, d.uniqueId, d.title, d.language, d.tags, " +
+            "d.createdAt, d.updatedAt, o.username, c.permissionLevel) " +
+            "FROM DocumentCollaborator c JOIN c.document d JOIN d.owner o " +
+            "WHERE c.user.id = :userId AND d.id IN (SELECT t.document.id FROM DocumentTag t WHERE t.tag IN :tags " +
+            "GROUP BY t.document.id HAVING COUNT(t) = :tagCount) " +
+            "ORDER BY d.updatedAt DESC, d.id DESC")
+    List<DocumentSummary> findSummariesByUserIdAndAllTags(@Param("userId") Long userId, @Param("tags") Collection<String> tags,
+                                                          @Param("tagCount") long tagCount);
 }
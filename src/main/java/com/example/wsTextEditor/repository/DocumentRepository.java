@@ -2,19 +2,48 @@ package com.example.wsTextEditor.repository;
 
 import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     Optional<Document> findByUniqueId(String uniqueId);
+
+    // 批量读取文档及其所有者，供搜索索引批量写入
+    @Query("SELECT d FROM Document d JOIN FETCH d.owner WHERE d.uniqueId IN :uniqueIds")
+    List<Document> findWithOwnerByUniqueIdIn(@Param("uniqueIds") Collection<String> uniqueIds);
+    // 按主键键集分页读取文档及其所有者，供索引重建逐批读取
+    @Query("SELECT d FROM Document d JOIN FETCH d.owner WHERE d.id > :afterId ORDER BY d.id")
+    List<Document> findWithOwnerByIdGreaterThan(@Param("afterId") Long afterId, Pageable pageable);
+    // 水位 (updatedAt, id) 之后、截止时间之前修改的文档及其所有者，按 (updatedAt, id) 排序，供搜索变更同步逐批读取
+    @Query("SELECT d FROM Document d JOIN FETCH d.owner " +
+            "WHERE (d.updatedAt > :updatedAt OR (d.updatedAt = :updatedAt AND d.id > :afterId)) AND d.updatedAt <= :before " +
+            "ORDER BY d.updatedAt, d.id")
+    List<Document> findChangedAfter(@Param("updatedAt") Date updatedAt, @Param("afterId") Long afterId,
+                                    @Param("before") Date before, Pageable pageable);
+    // 给定主键中仍然存在的文档
+    @Query("SELECT d.id FROM Document d WHERE d.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
     List<Document> findByOwner(User owner);
-    // 根据标签查找文档
-    List<Document> findByTags(String tag);
-    // 根据用户和标签（模糊匹配）查找文档
-    @Query("SELECT d FROM Document d WHERE LOWER(d.tags) LIKE LOWER(CONCAT('%', :tag, '%'))")
-    List<Document> findByTagContaining( @Param("tag") String tag);
-}
\ No newline at end of file
+    // 文档当前版本号
+    @Query("SELECT d.version FROM Document d WHERE d.uniqueId = :uniqueId")
+    Optional<Long> findVersionByUniqueId(@Param("uniqueId") String uniqueId);
+    // 在展示用的 tags 列末尾追加标签；不经过实体保存，不受版本号影响
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Document d SET d.tags = CASE WHEN d.tags IS NULL OR d.tags = '' THEN :tags ELSE CONCAT(d.tags, ',', :tags) END, " +
+            "d.updatedAt = :updatedAt WHERE d.id = :id")
+    int appendTags(@Param("id") Long id, @Param("tags") String tags, @Param("updatedAt") Date updatedAt);
+    // 版本号一致时才递增版本（比较并交换），返回更新的行数；内容由调用方在同一事务中写入
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Document d SET d.version = d.version + 1, d.updatedAt = :updatedAt " +
+            "WHERE d.uniqueId = :uniqueId AND d.version = :version")
+    int compareAndSetVersion(@Param("uniqueId") String uniqueId, @Param("version") Long version,
+                             @Param("updatedAt") Date updatedAt);
+}
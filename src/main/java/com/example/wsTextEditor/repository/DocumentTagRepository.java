@@ -0,0 +1,31 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.DocumentTag;
+import com.example.wsTextEditor.pojo.TagFacet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface DocumentTagRepository extends JpaRepository<DocumentTag, Long> {
+    // 文档现有的标签
+    @Query("SELECT t.tag FROM DocumentTag t WHERE t.document.id = :documentId")
+    List<String> findTagsByDocumentId(@Param("documentId") Long documentId);
+
+    // 用户可访问文档的全部标签
+    @Query("SELECT DISTINCT t.tag FROM DocumentTag t, DocumentCollaborator c " +
+            "WHERE c.document = t.document AND c.user.id = :userId ORDER BY t.tag")
+    List<String> findTagsByUserId(@Param("userId") Long userId);
+
+    // 用户可访问文档的标签分面计数，标签包含关键字（由 pg_trgm 索引支持）；关键字中的 %、_ 和 \ 需由调用方转义
+    @Query("SELECT new com.example.wsTextEditor.pojo.TagFacet(t.tag, COUNT(t)) FROM DocumentTag t, DocumentCollaborator c " +
+            "WHERE c.document = t.document AND c.user.id = :userId AND t.tag LIKE CONCAT('%', :keyword, '%') ESCAPE '\\' " +
+            "GROUP BY t.tag ORDER BY COUNT(t) DESC, t.tag")
+    List<TagFacet> findFacetsByUserId(@Param("userId") Long userId, @Param("keyword") String keyword);
+
+    @Modifying
+    @Query("DELETE FROM DocumentTag t WHERE t.document.id = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -0,0 +1,12 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.DocumentTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface DocumentTombstoneRepository extends JpaRepository<DocumentTombstone, Long> {
+    // 最早的若干条墓碑
+    List<DocumentTombstone> findByOrderByIdAsc(Pageable pageable);
+}
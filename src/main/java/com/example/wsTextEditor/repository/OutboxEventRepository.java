@@ -0,0 +1,16 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    // 锁定一批已到投递时间的事件，其他节点跳过已锁定的行，多个节点可以同时投递
+    @Query(value = "SELECT * FROM outbox_events WHERE available_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEvent> lockAvailable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -0,0 +1,12 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.SearchIndexDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface SearchIndexDeadLetterRepository extends JpaRepository<SearchIndexDeadLetter, Long> {
+    // 最早进入死信的若干条，用于重新投递
+    List<SearchIndexDeadLetter> findByOrderByIdAsc(Pageable pageable);
+}
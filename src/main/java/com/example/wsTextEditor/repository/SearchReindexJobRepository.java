@@ -0,0 +1,18 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.SearchReindexJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SearchReindexJobRepository extends JpaRepository<SearchReindexJob, Long> {
+    // 最近一个处于该状态的任务
+    Optional<SearchReindexJob> findFirstByStatusOrderByIdDesc(SearchReindexJob.Status status);
+
+    // 最近一个任务
+    Optional<SearchReindexJob> findFirstByOrderByIdDesc();
+
+    // 已取消但新索引尚未删除的任务
+    List<SearchReindexJob> findByStatusAndIndexDeletedAtIsNull(SearchReindexJob.Status status);
+}
@@ -0,0 +1,7 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.SearchSyncWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SearchSyncWatermarkRepository extends JpaRepository<SearchSyncWatermark, String> {
+}
@@ -0,0 +1,7 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.YjsSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface YjsSnapshotRepository extends JpaRepository<YjsSnapshot, String> {
+}
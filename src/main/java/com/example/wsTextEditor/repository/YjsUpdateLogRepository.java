@@ -0,0 +1,27 @@
+package com.example.wsTextEditor.repository;
+
+import com.example.wsTextEditor.model.YjsUpdateLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface YjsUpdateLogRepository extends JpaRepository<YjsUpdateLog, Long> {
+    // 文档尚未压缩的日志，按写入顺序
+    List<YjsUpdateLog> findByDocIdOrderByIdAsc(String docId);
+
+    // 日志条数达到阈值、需要压缩的文档
+    @Query("SELECT u.docId FROM YjsUpdateLog u GROUP BY u.docId HAVING COUNT(u) >= :threshold")
+    List<String> findDocIdsWithAtLeast(@Param("threshold") long threshold);
+
+    @Modifying
+    @Query("DELETE FROM YjsUpdateLog u WHERE u.id IN :ids")
+    int deleteCompacted(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM YjsUpdateLog u WHERE u.docId = :docId")
+    int deleteByDocId(@Param("docId") String docId);
+}
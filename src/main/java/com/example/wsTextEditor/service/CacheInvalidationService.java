@@ -0,0 +1,76 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.config.RabbitMQConfig;
+import com.example.wsTextEditor.pojo.CacheInvalidationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+/**
+ * 集群缓存失效总线
+ * 通过扇出交换机把 {@link CacheInvalidationEvent} 广播给所有节点；每个节点用一个自动删除的匿名队列订阅，
+ * 收到其他节点的事件后作为 Spring 应用事件发布，持有本地缓存的服务用 {@code @EventListener} 清除对应条目。
+ * 广播失败只记录日志，由各缓存的 TTL 兜底
+ */
+@Service
+public class CacheInvalidationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationService.class);
+
+    /** 本节点标识，每次启动生成 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 广播缓存失效事件；处于事务中时在提交后发送，其他节点不会在提交前重新读到旧数据
+     * 调用方负责清除本节点的缓存
+     * @param event 失效事件
+     */
+    public void publish(CacheInvalidationEvent event) {
+        event.setOrigin(nodeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(CacheInvalidationEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.CACHE_INVALIDATION_EXCHANGE, "", event);
+        } catch (AmqpException e) {
+            logger.warn("Failed to broadcast cache invalidation {}: {}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * 接收其他节点广播的失效事件，转发为本地应用事件
+     */
+    @RabbitListener(queues = "#{cacheInvalidationQueue.name}")
+    public void handleInvalidation(CacheInvalidationEvent event) {
+        if (nodeId.equals(event.getOrigin())) {
+            return;
+        }
+        logger.debug("Applying cache invalidation from node {}: {}", event.getOrigin(), event);
+        applicationEventPublisher.publishEvent(event);
+    }
+}
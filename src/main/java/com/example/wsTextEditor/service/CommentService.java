@@ -1,11 +1,13 @@
 package com.example.wsTextEditor.service;
 
+import com.example.wsTextEditor.config.RabbitMQConfig;
 import com.example.wsTextEditor.model.*;
 import com.example.wsTextEditor.repository.CommentRepository;
 import com.example.wsTextEditor.repository.DocumentRepository;
 import com.example.wsTextEditor.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZoneId;
 import java.util.ArrayList;
@@ -25,7 +27,7 @@ public class CommentService {
     @Autowired
     private DocumentRepository documentRepository;
     @Autowired
-    private MessageProducerService messageProducerService;
+    private OutboxService outboxService;
     public List<Comment> getAllComments() {
         return commentRepository.findAll();
     }
@@ -38,6 +40,7 @@ public class CommentService {
         return commentRepository.findById(id);
     }
 
+    @Transactional(rollbackFor = Exception.class)
     public Comment createComment(Comment comment,String username) {
         comment.setCreatedAt(new Date());
         // 确保likedUsers列表已初始化
@@ -46,8 +49,10 @@ public class CommentService {
         }
 
         comment.setAuthor(username);
-        sendCommentNotification(comment, "create");
-        return commentRepository.save(comment);
+        // 先保存再登记通知，通知中带有评论ID
+        Comment savedComment = commentRepository.save(comment);
+        sendCommentNotification(savedComment, "create");
+        return savedComment;
     }
 
 
@@ -73,6 +78,7 @@ public class CommentService {
      * @param username 点赞用户的用户名
      * @return 更新后的评论
      */
+    @Transactional(rollbackFor = Exception.class)
     public Comment likeComment(Long id, String username) throws IllegalStateException {
         Comment comment = commentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Comment not found with id: " + id));
@@ -87,9 +93,10 @@ public class CommentService {
         message.setAction("like");
         message.setData(comment.getAuthor());
         message.setSender(username);
-        // 发送到RabbitMQ，由MessageConsumerService处理并广播给WebSocket客户端
-        messageProducerService.sendTaskMessage(message);
-        return commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(comment);
+        // 写入发件箱，提交后发送到RabbitMQ，由MessageConsumerService处理并广播给WebSocket客户端
+        outboxService.recordMessage(RabbitMQConfig.TASK_EXCHANGE, RabbitMQConfig.TASK_ROUTING_KEY, message);
+        return savedComment;
     }
     
     /**
@@ -129,7 +136,7 @@ public class CommentService {
             // 将Date转换为LocalDateTime
             message.setTimestamp(new Date().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
 
-            // 发送到RabbitMQ，由MessageConsumerService处理并广播给WebSocket客户端
-            messageProducerService.sendTaskMessage(message);
+            // 写入发件箱，提交后发送到RabbitMQ，由MessageConsumerService处理并广播给WebSocket客户端
+            outboxService.recordMessage(RabbitMQConfig.TASK_EXCHANGE, RabbitMQConfig.TASK_ROUTING_KEY, message);
     }
 }
\ No newline at end of file
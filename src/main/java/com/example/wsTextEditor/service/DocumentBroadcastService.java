@@ -0,0 +1,93 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.config.CRDTBinaryMessageConverter;
+import com.example.wsTextEditor.crdt.CRDTBinaryCodec;
+import com.example.wsTextEditor.crdt.CRDTOperation;
+import com.example.wsTextEditor.crdt.CRDTUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档房间广播服务
+ * 在一个短时间窗口内收集房间内生效的操作，合并相邻的同站点插入和删除后，
+ * 每个窗口只向房间目的地发送一帧 CRDTUpdate。集群模式下生效的操作同时立即转发给其他节点的房间副本
+ */
+@Service
+public class DocumentBroadcastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentBroadcastService.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private ObjectProvider<RoomClusterRelay> roomClusterRelay;
+
+    /** 批次窗口（毫秒），为 0 时每次立即发送 */
+    @Value("${crdt.broadcast.window-ms:20}")
+    private long windowMs;
+
+    /** 批次中操作数达到该值时立即发送，不再等待窗口结束 */
+    @Value("${crdt.broadcast.max-operations:200}")
+    private int maxOperations;
+
+    /**
+     * 加入房间的待广播批次
+     * @param room 文档房间
+     * @param operations 已合并到房间副本的操作
+     * @param sessionId 产生这些操作的会话，客户端据此忽略自己的回显
+     */
+    public void broadcast(DocumentRoom room, List<CRDTOperation> operations, String sessionId) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        operations.forEach(op -> op.setSessionId(sessionId));
+        roomClusterRelay.ifAvailable(relay -> relay.publish(RoomClusterRelay.CRDT, room.getUniqueId(), RoomClusterRelay.TYPE_UPDATE,
+                CRDTBinaryCodec.encode(new CRDTUpdate(operations, Collections.emptyMap()))));
+        boolean schedule = room.enqueue(operations);
+        if (windowMs <= 0 || room.getOutboundSize() >= maxOperations) {
+            flush(room);
+        } else if (schedule) {
+            taskScheduler.schedule(() -> flush(room), Instant.now().plusMillis(windowMs));
+        }
+    }
+
+    /**
+     * 发送房间当前批次：JSON 订阅者和二进制订阅者各收到一帧
+     * @param room 文档房间
+     */
+    public void flush(DocumentRoom room) {
+        // 取批次和发送在同一把锁内，保证房间内各批次的发送顺序
+        room.getSendLock().lock();
+        try {
+            List<CRDTOperation> batch = room.drainOutbound();
+            if (batch.isEmpty()) {
+                return;
+            }
+            CRDTUpdate update = new CRDTUpdate(batch, Collections.emptyMap());
+            messagingTemplate.convertAndSend(room.getDestination(), update);
+            if (room.hasBinarySubscribers()) {
+                messagingTemplate.convertAndSend(room.getBinaryDestination(), update,
+                        Map.of(MessageHeaders.CONTENT_TYPE, CRDTBinaryMessageConverter.CRDT_MIME_TYPE));
+            }
+            logger.debug("Flushed {} operations to room {}", batch.size(), room.getUniqueId());
+        } finally {
+            room.getSendLock().unlock();
+        }
+    }
+}
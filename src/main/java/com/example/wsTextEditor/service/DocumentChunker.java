@@ -0,0 +1,70 @@
+package com.example.wsTextEditor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按内容切分文档（gear 滚动哈希）
+ * 切分点只取决于其前面几十个字符，在文档中间插入或删除只会改变附近的块，其余块的哈希保持不变
+ */
+public final class DocumentChunker {
+
+    /** 块的最小、最大长度（UTF-16 字符） */
+    static final int MIN_CHUNK_LENGTH = 2 * 1024;
+    static final int MAX_CHUNK_LENGTH = 64 * 1024;
+    /** 13 位掩码，平均块长约 8K 字符；取高位使其依赖更长的窗口 */
+    private static final long BOUNDARY_MASK = 0x1FFFL << 32;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子的 SplitMix64，保证各节点、各次启动切分结果一致
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private DocumentChunker() {}
+
+    /**
+     * 切分文档内容
+     * @param content 文档内容
+     * @return 按顺序排列的块，拼接后等于原内容；空内容返回空列表
+     */
+    public static List<String> split(String content) {
+        List<String> chunks = new ArrayList<>();
+        int length = content.length();
+        int start = 0;
+        while (start < length) {
+            int end = boundary(content, start, length);
+            chunks.add(content.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static int boundary(String content, int start, int length) {
+        if (length - start <= MIN_CHUNK_LENGTH) {
+            return length;
+        }
+        int limit = start + Math.min(length - start, MAX_CHUNK_LENGTH);
+        long hash = 0;
+        for (int i = start; i < limit; i++) {
+            char c = content.charAt(i);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+            // 不在代理对中间切分，否则块无法编码为合法的 UTF-8
+            if (i + 1 - start >= MIN_CHUNK_LENGTH && (hash & BOUNDARY_MASK) == 0 && !Character.isHighSurrogate(c)) {
+                return i + 1;
+            }
+        }
+        if (limit < length && Character.isHighSurrogate(content.charAt(limit - 1))) {
+            return limit + 1;
+        }
+        return limit;
+    }
+}
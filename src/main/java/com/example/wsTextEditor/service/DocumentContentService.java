@@ -0,0 +1,206 @@
+package com.example.wsTextEditor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 文档内容存储服务
+ * 文档内容不在 document 表中，而是按内容切分为块（document_chunks，以 SHA-256 去重），
+ * 由 document_chunk_refs 按顺序引用。保存时只写入新出现的块和变化位置之后的引用，
+ * 读取文档元数据的查询不会带出正文。
+ */
+@Service
+public class DocumentContentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentContentService.class);
+
+    private static final String LOAD_SQL =
+            "SELECT c.data FROM document_chunk_refs r JOIN document_chunks c ON c.hash = r.chunk_hash " +
+            "WHERE r.doc_id = ? ORDER BY r.seq";
+    private static final String LOAD_ALL_SQL =
+            "SELECT r.doc_id, c.data FROM document_chunk_refs r JOIN document_chunks c ON c.hash = r.chunk_hash " +
+            "WHERE r.doc_id IN (%s) ORDER BY r.doc_id, r.seq";
+    private static final String REF_HASHES_SQL =
+            "SELECT chunk_hash FROM document_chunk_refs WHERE doc_id = ? ORDER BY seq";
+    private static final String INSERT_CHUNK_SQL =
+            "INSERT INTO document_chunks (hash, data, created_at) VALUES (?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    private static final String DELETE_REFS_FROM_SQL =
+            "DELETE FROM document_chunk_refs WHERE doc_id = ? AND seq >= ?";
+    private static final String INSERT_REF_SQL =
+            "INSERT INTO document_chunk_refs (doc_id, seq, chunk_hash) VALUES (?, ?, ?)";
+    private static final String DELETE_UNREFERENCED_CHUNKS_SQL =
+            "DELETE FROM document_chunks c WHERE c.created_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM document_chunk_refs r WHERE r.chunk_hash = c.hash)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private record Chunk(String hash, String data) {}
+
+    /**
+     * 读取文档内容
+     * @param uniqueId 文档唯一标识符
+     * @return 文档内容，没有内容时返回空字符串
+     */
+    public String load(String uniqueId) {
+        List<String> chunks = jdbcTemplate.queryForList(LOAD_SQL, String.class, uniqueId);
+        return String.join("", chunks);
+    }
+
+    /**
+     * 一次查询读取多个文档的内容
+     * @param uniqueIds 文档唯一标识符
+     * @return 文档唯一标识符 -> 文档内容，没有内容的文档为空字符串
+     */
+    public Map<String, String> loadAll(Collection<String> uniqueIds) {
+        Map<String, StringBuilder> builders = new LinkedHashMap<>();
+        for (String uniqueId : uniqueIds) {
+            builders.put(uniqueId, new StringBuilder());
+        }
+        if (!builders.isEmpty()) {
+            String sql = String.format(LOAD_ALL_SQL, String.join(",", Collections.nCopies(builders.size(), "?")));
+            jdbcTemplate.query(sql, rs -> {
+                builders.get(rs.getString(1)).append(rs.getString(2));
+            }, builders.keySet().toArray());
+        }
+        Map<String, String> contents = new HashMap<>();
+        builders.forEach((uniqueId, builder) -> contents.put(uniqueId, builder.toString()));
+        return contents;
+    }
+
+    /**
+     * 保存文档内容
+     * 调用方须在同一事务中先更新 document 行（行锁使同一文档的保存串行执行）
+     * @param uniqueId 文档唯一标识符
+     * @param content 文档内容
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void store(String uniqueId, String content) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (String data : DocumentChunker.split(content == null ? "" : content)) {
+            chunks.add(new Chunk(DocumentWriteBehindService.contentHash(data), data));
+        }
+        List<String> existing = jdbcTemplate.queryForList(REF_HASHES_SQL, String.class, uniqueId);
+        int common = 0;
+        while (common < chunks.size() && common < existing.size()
+                && chunks.get(common).hash().equals(existing.get(common))) {
+            common++;
+        }
+        if (common == chunks.size() && common == existing.size()) {
+            return;
+        }
+        // 文档已引用的块一定存在，只写入新出现的块
+        Set<String> known = new HashSet<>(existing);
+        List<Chunk> fresh = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (known.add(chunk.hash())) {
+                fresh.add(chunk);
+            }
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (!fresh.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CHUNK_SQL, fresh, fresh.size(), (ps, chunk) -> {
+                ps.setString(1, chunk.hash());
+                ps.setString(2, chunk.data());
+                ps.setTimestamp(3, now);
+            });
+        }
+        // 公共前缀之后的引用整体替换
+        jdbcTemplate.update(DELETE_REFS_FROM_SQL, uniqueId, common);
+        int first = common;
+        if (first == chunks.size()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_REF_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, uniqueId);
+                ps.setInt(2, first + i);
+                ps.setString(3, chunks.get(first + i).hash());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunks.size() - first;
+            }
+        });
+        logger.debug("Stored document {}: {} chunks, {} new, {} references rewritten",
+                uniqueId, chunks.size(), fresh.size(), chunks.size() - first);
+    }
+
+    /**
+     * 删除文档的内容引用，块由定时任务回收
+     * @param uniqueId 文档唯一标识符
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void delete(String uniqueId) {
+        jdbcTemplate.update(DELETE_REFS_FROM_SQL, uniqueId, 0);
+    }
+
+    /**
+     * 定时回收不再被引用的块；只回收创建超过一小时的块，避免与正在保存的事务竞争
+     */
+    @Scheduled(fixedDelayString = "${document.content.chunk-gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        try {
+            int deleted = jdbcTemplate.update(DELETE_UNREFERENCED_CHUNKS_SQL, Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+            if (deleted > 0) {
+                logger.info("Removed {} unreferenced document chunks", deleted);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to remove unreferenced document chunks: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时把旧版本存放在 document.content 列中的内容迁移为块，并清空该列
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyContent() {
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_name = 'document' AND column_name = 'content'",
+                Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT unique_id, content FROM document WHERE content IS NOT NULL");
+        for (Map<String, Object> row : rows) {
+            String uniqueId = (String) row.get("unique_id");
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("UPDATE document SET content = NULL WHERE unique_id = ?", uniqueId);
+                store(uniqueId, (String) row.get("content"));
+            });
+        }
+        if (!rows.isEmpty()) {
+            logger.info("Migrated the content of {} documents to chunked storage", rows.size());
+        }
+    }
+}
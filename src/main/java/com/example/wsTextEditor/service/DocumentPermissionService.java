@@ -6,15 +6,28 @@ import com.example.wsTextEditor.model.User;
 import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
 import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
 import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.pojo.CacheInvalidationEvent;
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.CacheObj;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * 文档权限服务类
- * 处理文档的权限控制，包括协作者管理、权限验证等
+ * 处理文档的权限控制，包括协作者管理、权限验证等；
+ * 权限判定结果按 (文档ID, 用户ID) 缓存在进程内，协作者变更时显式失效并通过 {@link CacheInvalidationService}
+ * 通知其他节点，广播丢失时依靠 TTL 过期
  */
 @Service
 public class DocumentPermissionService {
@@ -26,15 +39,41 @@ public class DocumentPermissionService {
     /** 用户仓库 */
     @Autowired
     private UserRepository userRepository;
+
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
+
+    /** 协作者变化后重新索引文档，搜索按协作者过滤 */
+    @Autowired
+    private OutboxService outboxService;
+
+    /** 权限缓存最大条目数 */
+    @Value("${document.permission-cache.capacity:10000}")
+    private int cacheCapacity;
+
+    /** 权限缓存条目存活时间（毫秒），兜底丢失的失效广播 */
+    @Value("${document.permission-cache.ttl-ms:60000}")
+    private long cacheTtlMs;
+
+    /** "文档ID:用户ID" -> 权限级别，LRU 淘汰 */
+    private Cache<String, PermissionLevel> permissionCache;
+
+    @PostConstruct
+    public void init() {
+        permissionCache = CacheUtil.newLRUCache(cacheCapacity, cacheTtlMs);
+    }
     
     /**
      * 初始化文档权限（文档创建时调用）
      * @param document 文档
      * @param owner 文档所有者
      */
+    @Transactional(rollbackFor = Exception.class)
     public void initializeDocumentPermissions(Document document, User owner) {
         DocumentCollaborator ownerCollaborator = new DocumentCollaborator(document, owner, PermissionLevel.OWNER);
         documentCollaboratorRepository.save(ownerCollaborator);
+        invalidate(document.getId(), owner.getId());
+        outboxService.recordSearchIndex(document.getUniqueId());
     }
     
     /**
@@ -45,6 +84,7 @@ public class DocumentPermissionService {
      * @param permissionLevel 权限级别
      * @return 是否邀请成功
      */
+    @Transactional(rollbackFor = Exception.class)
     public boolean inviteUserToDocument(Document document, User invitingUser, String username, PermissionLevel permissionLevel) {
         // 检查邀请人是否有权限邀请他人
         if (!canInviteUsers(document, invitingUser)) {
@@ -67,6 +107,8 @@ public class DocumentPermissionService {
         // 创建协作者记录
         DocumentCollaborator collaborator = new DocumentCollaborator(document, invitedUser, permissionLevel);
         documentCollaboratorRepository.save(collaborator);
+        invalidate(document.getId(), invitedUser.getId());
+        outboxService.recordSearchIndex(document.getUniqueId());
         
         return true;
     }
@@ -79,6 +121,7 @@ public class DocumentPermissionService {
      * @param permissionLevel 权限级别
      * @return 是否邀请成功
      */
+    @Transactional(rollbackFor = Exception.class)
     public boolean inviteUserToDocumentByUuid(Document document, User invitingUser, String invitationUuid, PermissionLevel permissionLevel) {
         // 检查邀请人是否有权限邀请他人
         if (!canInviteUsers(document, invitingUser)) {
@@ -101,6 +144,8 @@ public class DocumentPermissionService {
         // 创建协作者记录
         DocumentCollaborator collaborator = new DocumentCollaborator(document, invitedUser, permissionLevel);
         documentCollaboratorRepository.save(collaborator);
+        invalidate(document.getId(), invitedUser.getId());
+        outboxService.recordSearchIndex(document.getUniqueId());
         
         return true;
     }
@@ -112,13 +157,45 @@ public class DocumentPermissionService {
      * @return 是否有权限
      */
     public boolean canInviteUsers(Document document, User user) {
-        Optional<DocumentCollaborator> collaboratorOpt = documentCollaboratorRepository.findByDocumentAndUser(document, user);
-        if (collaboratorOpt.isEmpty()) {
-            return false;
+        return getUserPermissionLevel(document, user) == PermissionLevel.OWNER;
+    }
+
+    /**
+     * 修改协作者的权限级别
+     * @param document 文档
+     * @param actingUser 操作人（必须是文档所有者）
+     * @param userId 协作者用户ID
+     * @param permissionLevel 新的权限级别
+     * @throws IllegalAccessException 操作人不是文档所有者
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void updateCollaboratorPermission(Document document, User actingUser, Long userId, PermissionLevel permissionLevel) throws IllegalAccessException {
+        if (!canInviteUsers(document, actingUser)) {
+            throw new IllegalAccessException("User not authorized to manage collaborators of document");
         }
-        
-        PermissionLevel level = collaboratorOpt.get().getPermissionLevel();
-        return level == PermissionLevel.OWNER;
+        DocumentCollaborator collaborator = documentCollaboratorRepository.findByDocumentAndUserId(document, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid Argument" + userId + "or" + document.getUniqueId()));
+        collaborator.setPermissionLevel(permissionLevel);
+        documentCollaboratorRepository.save(collaborator);
+        invalidate(document.getId(), userId);
+        outboxService.recordSearchIndex(document.getUniqueId());
+    }
+
+    /**
+     * 移除文档协作者
+     * @param document 文档
+     * @param actingUser 操作人（必须是文档所有者）
+     * @param userId 协作者用户ID
+     * @throws IllegalAccessException 操作人不是文档所有者
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void removeCollaborator(Document document, User actingUser, Long userId) throws IllegalAccessException {
+        if (!canInviteUsers(document, actingUser)) {
+            throw new IllegalAccessException("User not authorized to manage collaborators of document");
+        }
+        documentCollaboratorRepository.deleteByDocumentAndUserId(document, userId);
+        invalidate(document.getId(), userId);
+        outboxService.recordSearchIndex(document.getUniqueId());
     }
     
     /**
@@ -133,13 +210,96 @@ public class DocumentPermissionService {
             return PermissionLevel.OWNER;
         }
         
-        Optional<DocumentCollaborator> collaboratorOpt = documentCollaboratorRepository.findByDocumentAndUser(document, user);
-        if (collaboratorOpt.isPresent()) {
-            return collaboratorOpt.get().getPermissionLevel();
+        String key = cacheKey(document.getId(), user.getId());
+        // 不刷新访问时间，条目从写入起最多存活 TTL
+        PermissionLevel cached = permissionCache.get(key, false);
+        if (cached != null) {
+            return cached;
         }
         
         // 默认为VIEWER权限
-        return PermissionLevel.VIEWER;
+        PermissionLevel level = documentCollaboratorRepository.findByDocumentAndUser(document, user)
+                .map(DocumentCollaborator::getPermissionLevel)
+                .orElse(PermissionLevel.VIEWER);
+        permissionCache.put(key, level);
+        return level;
+    }
+
+    /**
+     * 获取用户在文档上被明确授予的权限级别，不回退到默认的 VIEWER
+     * 每次查询数据库，只用于建立连接等低频检查
+     * @param document 文档
+     * @param user 用户
+     * @return 所有者为 OWNER，协作者为其权限级别，其他用户为 null
+     */
+    public PermissionLevel getGrantedPermissionLevel(Document document, User user) {
+        if (document.getOwner().getId().equals(user.getId())) {
+            return PermissionLevel.OWNER;
+        }
+        return documentCollaboratorRepository.findByDocumentAndUser(document, user)
+                .map(DocumentCollaborator::getPermissionLevel)
+                .orElse(null);
+    }
+
+    /**
+     * 使某个用户在某个文档上的权限缓存失效，并广播给其他节点
+     * 立即失效一次；处于事务中时提交后再失效一次，避免并发请求在提交前把旧值重新读回缓存
+     * @param documentId 文档ID
+     * @param userId 用户ID
+     */
+    public void invalidate(Long documentId, Long userId) {
+        evictLocal(documentId, userId);
+        cacheInvalidationService.publish(CacheInvalidationEvent.collaboratorChanged(documentId, userId));
+    }
+
+    /**
+     * 使某个文档的全部权限缓存失效（文档删除或所有者变更时），并广播给其他节点
+     * @param documentId 文档ID
+     */
+    public void invalidateDocument(Long documentId) {
+        onCacheInvalidation(CacheInvalidationEvent.documentChanged(documentId));
+        cacheInvalidationService.publish(CacheInvalidationEvent.documentChanged(documentId));
+    }
+
+    /**
+     * 处理其他节点广播的失效事件
+     * @param event 失效事件
+     */
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationEvent event) {
+        switch (event.getType()) {
+            case COLLABORATOR_CHANGED -> evictLocal(event.getDocumentId(), event.getUserId());
+            case DOCUMENT_CHANGED -> evictMatching(event.getDocumentId() + ":", null);
+            case USER_CHANGED -> evictMatching(null, ":" + event.getUserId());
+        }
+    }
+
+    private void evictMatching(String prefix, String suffix) {
+        // cacheObjIterator 在锁内复制条目，遍历时不受并发读写影响
+        Iterator<CacheObj<String, PermissionLevel>> entries = permissionCache.cacheObjIterator();
+        while (entries.hasNext()) {
+            String key = entries.next().getKey();
+            if ((prefix == null || key.startsWith(prefix)) && (suffix == null || key.endsWith(suffix))) {
+                permissionCache.remove(key);
+            }
+        }
+    }
+
+    private void evictLocal(Long documentId, Long userId) {
+        String key = cacheKey(documentId, userId);
+        permissionCache.remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    permissionCache.remove(key);
+                }
+            });
+        }
+    }
+
+    private static String cacheKey(Long documentId, Long userId) {
+        return documentId + ":" + userId;
     }
     
     /**
@@ -0,0 +1,431 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentSearchEntity;
+import com.example.wsTextEditor.model.SearchReindexJob;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.SearchReindexJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 搜索索引重建服务
+ * 把所有文档写入一个新版本索引，完成后原子地把别名切换过去，重建期间搜索照常使用旧索引：
+ * <ul>
+ *     <li>按主键键集分页逐批读取，每批拆成若干片并行读取内容、转换并 bulk 写入，内存只保留一批</li>
+ *     <li>每批写完在 search_reindex_jobs 中记录检查点，节点崩溃后由心跳超时的检测从检查点继续</li>
+ *     <li>重建期间 {@link SearchIndexingService} 同时写入新索引；新索引按文档版本号做外部版本控制，
+ *     重建读到的旧版本不会覆盖已写入的新版本；每批写完再核对一次，删除期间已被删掉的文档</li>
+ * </ul>
+ */
+@Service
+public class DocumentReindexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentReindexService.class);
+
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /** 每批读取的文档数 */
+    @Value("${search.reindex.batch-size:500}")
+    private int batchSize;
+
+    /** 每批拆分的并行写入片数 */
+    @Value("${search.reindex.parallelism:4}")
+    private int parallelism;
+
+    /** 心跳超过该时间（毫秒）未更新的任务视为执行节点已失效，可以接管 */
+    @Value("${search.reindex.stale-after-ms:120000}")
+    private long staleAfterMs;
+
+    /** 切换别名后删除旧版本索引 */
+    @Value("${search.reindex.delete-old-index:true}")
+    private boolean deleteOldIndex;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private SearchReindexJobRepository reindexJobRepository;
+
+    @Autowired
+    private DocumentSyncService documentSyncService;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** 执行任务的线程 */
+    private ExecutorService runner;
+
+    /** 并行写入各片的线程 */
+    private ExecutorService workers;
+
+    /** 本节点正在执行任务 */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final ReentrantLock startLock = new ReentrantLock();
+
+    private volatile boolean stopping;
+
+    /** 本节点当前任务的进度，供指标读取 */
+    private volatile long indexedCount;
+    private volatile long totalCount;
+
+    /** 本次执行（从开始或接管算起）写入的文档数与开始时间，用于计算吞吐量 */
+    private volatile long runIndexed;
+    private volatile long runStartedNanos;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger workerCount = new AtomicInteger();
+        runner = Executors.newSingleThreadExecutor(task -> new Thread(task, "search-reindex"));
+        workers = Executors.newFixedThreadPool(parallelism,
+                task -> new Thread(task, "search-reindex-worker-" + workerCount.incrementAndGet()));
+        Gauge.builder("search.reindex.indexed.documents", this, service -> service.indexedCount)
+                .description("Documents written to the new index by the reindex job running on this node")
+                .register(meterRegistry);
+        Gauge.builder("search.reindex.total.documents", this, service -> service.totalCount)
+                .description("Documents in the database when the reindex job started")
+                .register(meterRegistry);
+        Gauge.builder("search.reindex.throughput", this, DocumentReindexService::getThroughput)
+                .description("Documents per second written by the reindex job running on this node")
+                .baseUnit("documents/s")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始重建；已有未完成的任务时从其检查点继续
+     * @return 任务
+     * @throws IllegalStateException 本节点或其他节点正在执行任务
+     */
+    public SearchReindexJob start() {
+        startLock.lock();
+        try {
+            if (running.get()) {
+                throw new IllegalStateException("A reindex job is already running on this node");
+            }
+            SearchReindexJob job = reindexJobRepository.findFirstByStatusOrderByIdDesc(SearchReindexJob.Status.RUNNING)
+                    .map(this::claim)
+                    .orElseGet(this::createJob);
+            running.set(true);
+            runner.execute(() -> run(job));
+            return job;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    private SearchReindexJob createJob() {
+        String indexName = aliasName() + "_" + LocalDateTime.now().format(INDEX_SUFFIX);
+        IndexOperations entityOps = elasticsearchOperations.indexOps(DocumentSearchEntity.class);
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName))
+                .create(entityOps.createSettings(), entityOps.createMapping());
+        SearchReindexJob job = reindexJobRepository.save(new SearchReindexJob(indexName, documentRepository.count()));
+        logger.info("Started reindex job {} into {} for {} documents", job.getId(), indexName, job.getTotalCount());
+        return job;
+    }
+
+    /**
+     * 接管心跳超时的任务，乐观锁保证只有一个节点接管成功
+     */
+    private SearchReindexJob claim(SearchReindexJob job) {
+        if (job.getHeartbeatAt() != null && job.getHeartbeatAt().isAfter(LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000))) {
+            throw new IllegalStateException("Reindex job " + job.getId() + " is running on another node");
+        }
+        job.setHeartbeatAt(LocalDateTime.now());
+        try {
+            job = reindexJobRepository.save(job);
+        } catch (OptimisticLockingFailureException e) {
+            throw new IllegalStateException("Reindex job " + job.getId() + " was claimed by another node");
+        }
+        logger.info("Resuming reindex job {} into {} after document {}", job.getId(), job.getIndexName(), job.getLastDocumentId());
+        return job;
+    }
+
+    private void run(SearchReindexJob job) {
+        indexedCount = job.getIndexedCount();
+        totalCount = job.getTotalCount();
+        runIndexed = 0;
+        runStartedNanos = System.nanoTime();
+        try {
+            while (!stopping) {
+                List<Document> batch = documentRepository.findWithOwnerByIdGreaterThan(job.getLastDocumentId(),
+                        PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    complete(job);
+                    return;
+                }
+                writeBatch(batch, job.getIndexName());
+                job.setLastDocumentId(batch.get(batch.size() - 1).getId());
+                job.setIndexedCount(job.getIndexedCount() + batch.size());
+                job.setHeartbeatAt(LocalDateTime.now());
+                // 检查点；任务被取消或被其他节点接管时版本号已变，保存失败即停止
+                job = reindexJobRepository.save(job);
+                indexedCount = job.getIndexedCount();
+                runIndexed += batch.size();
+            }
+            logger.info("Reindex job {} paused at document {} for shutdown", job.getId(), job.getLastDocumentId());
+        } catch (OptimisticLockingFailureException e) {
+            // 本批各片已写完，本节点不会再写入新索引；任务被取消时由本节点删除新索引
+            SearchReindexJob current = reindexJobRepository.findById(job.getId()).orElse(null);
+            if (current != null && current.getStatus() == SearchReindexJob.Status.CANCELLED) {
+                logger.info("Reindex job {} was cancelled, stopping", job.getId());
+                deleteCancelledIndex(current);
+            } else {
+                logger.info("Reindex job {} was taken over by another node", job.getId());
+            }
+        } catch (RuntimeException e) {
+            // 任务保持运行状态，心跳超时后从检查点重试
+            logger.error("Reindex job {} failed after document {}, will resume from the checkpoint: {}",
+                    job.getId(), job.getLastDocumentId(), e.getMessage());
+            recordError(job.getId(), e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 把一批文档拆成若干片并行写入新索引，再删除其中已被删除的文档
+     */
+    private void writeBatch(List<Document> batch, String indexName) {
+        int sliceSize = Math.max(1, (batch.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += sliceSize) {
+            List<Document> slice = batch.subList(from, Math.min(batch.size(), from + sliceSize));
+            slices.add(CompletableFuture.runAsync(() -> documentSyncService.bulkIndex(slice, indexName), workers));
+        }
+        try {
+            CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        // 读取之后被删除的文档可能在删除同步之后才写入新索引
+        List<Long> ids = batch.stream().map(Document::getId).toList();
+        Set<Long> existing = new HashSet<>(documentRepository.findExistingIds(ids));
+        List<String> deleted = batch.stream()
+                .filter(document -> !existing.contains(document.getId()))
+                .map(Document::getUniqueId)
+                .toList();
+        documentSyncService.bulkDelete(deleted, indexName);
+    }
+
+    /**
+     * 刷新新索引，把别名原子地从旧索引切换到新索引，然后结束任务
+     */
+    private void complete(SearchReindexJob job) {
+        String alias = aliasName();
+        String indexName = job.getIndexName();
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).refresh();
+        Set<String> oldIndices = aliasedIndices(alias);
+        // 切换后崩溃再次完成时，别名已指向新索引
+        boolean swapped = oldIndices.remove(indexName);
+        AliasActions actions = new AliasActions(new AliasAction.Add(
+                AliasActionParameters.builder().withIndices(indexName).withAliases(alias).build()));
+        if (!oldIndices.isEmpty()) {
+            actions.add(new AliasAction.Remove(
+                    AliasActionParameters.builder().withIndices(oldIndices.toArray(String[]::new)).withAliases(alias).build()));
+        } else if (!swapped && elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).exists()) {
+            // 别名所用的名字还是一个普通索引（第一次重建），在同一个请求中删除它
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(alias).build()));
+        }
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).alias(actions);
+        logger.info("Alias {} now points to {}, replacing {}", alias, indexName, oldIndices.isEmpty() ? alias : oldIndices);
+
+        job.setStatus(SearchReindexJob.Status.COMPLETED);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setHeartbeatAt(job.getFinishedAt());
+        reindexJobRepository.save(job);
+        logger.info("Reindex job {} completed with {} documents", job.getId(), job.getIndexedCount());
+
+        if (deleteOldIndex) {
+            for (String oldIndex : oldIndices) {
+                try {
+                    elasticsearchOperations.indexOps(IndexCoordinates.of(oldIndex)).delete();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to delete old search index {}: {}", oldIndex, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Set<String> aliasedIndices(String alias) {
+        try {
+            return new HashSet<>(elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).getAliases(alias).keySet());
+        } catch (RuntimeException e) {
+            // 别名不存在
+            return new HashSet<>();
+        }
+    }
+
+    private void recordError(Long jobId, String error) {
+        try {
+            reindexJobRepository.findById(jobId).ifPresent(job -> {
+                job.setLastError(error);
+                reindexJobRepository.save(job);
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Failed to record the error of reindex job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 取消未完成的任务，别名保持不变
+     * 执行节点可能仍在写入新索引，此时删除会让 Elasticsearch 按动态映射自动重建出一个无人管理的索引；
+     * 因此这里只修改状态，新索引由执行节点在检查点保存失败（写入已停止）后删除，
+     * 没有执行节点（心跳超时）的任务由 {@link #deleteAbandonedIndices()} 删除
+     * @return 被取消的任务，没有未完成的任务时为 null
+     */
+    public SearchReindexJob cancel() {
+        SearchReindexJob job = reindexJobRepository.findFirstByStatusOrderByIdDesc(SearchReindexJob.Status.RUNNING)
+                .orElse(null);
+        if (job == null) {
+            return null;
+        }
+        job.setStatus(SearchReindexJob.Status.CANCELLED);
+        job.setFinishedAt(LocalDateTime.now());
+        job = reindexJobRepository.save(job);
+        logger.info("Cancelled reindex job {}, {} is deleted once its runner stops", job.getId(), job.getIndexName());
+        return job;
+    }
+
+    /**
+     * 定时删除已取消且心跳超时（执行节点已停止或失效）的任务的新索引
+     */
+    @Scheduled(fixedDelayString = "${search.reindex.resume-check-interval-ms:60000}")
+    public void deleteAbandonedIndices() {
+        try {
+            LocalDateTime staleBefore = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000);
+            for (SearchReindexJob job : reindexJobRepository.findByStatusAndIndexDeletedAtIsNull(SearchReindexJob.Status.CANCELLED)) {
+                if (job.getHeartbeatAt() == null || job.getHeartbeatAt().isBefore(staleBefore)) {
+                    deleteCancelledIndex(job);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete the indices of cancelled reindex jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除已取消任务的新索引；先记录删除时间，乐观锁保证只有一个节点删除
+     */
+    private void deleteCancelledIndex(SearchReindexJob job) {
+        job.setIndexDeletedAt(LocalDateTime.now());
+        try {
+            job = reindexJobRepository.save(job);
+        } catch (OptimisticLockingFailureException e) {
+            return;
+        }
+        try {
+            // 取消与完成同时发生时别名可能已切换到新索引，此时保留它
+            if (aliasedIndices(aliasName()).contains(job.getIndexName())) {
+                logger.warn("Reindex job {} was cancelled after {} became the live index, keeping it", job.getId(), job.getIndexName());
+                return;
+            }
+            elasticsearchOperations.indexOps(IndexCoordinates.of(job.getIndexName())).delete();
+            logger.info("Deleted {} of cancelled reindex job {}", job.getIndexName(), job.getId());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete {} of cancelled reindex job {}: {}", job.getIndexName(), job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 定时检查心跳超时的任务并接管，执行节点崩溃或出错后由此继续
+     */
+    @Scheduled(fixedDelayString = "${search.reindex.resume-check-interval-ms:60000}")
+    public void resumeStaleJob() {
+        if (running.get()) {
+            return;
+        }
+        try {
+            if (reindexJobRepository.findFirstByStatusOrderByIdDesc(SearchReindexJob.Status.RUNNING).isPresent()) {
+                start();
+            }
+        } catch (IllegalStateException e) {
+            logger.debug("Not resuming reindex job: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to resume reindex job: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 最近一个任务的进度和本节点的吞吐量
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        reindexJobRepository.findFirstByOrderByIdDesc().ifPresent(job -> {
+            status.put("jobId", job.getId());
+            status.put("indexName", job.getIndexName());
+            status.put("status", job.getStatus());
+            status.put("indexedCount", job.getIndexedCount());
+            status.put("totalCount", job.getTotalCount());
+            status.put("progress", job.getTotalCount() == 0 ? 1.0 : Math.min(1.0, (double) job.getIndexedCount() / job.getTotalCount()));
+            status.put("lastDocumentId", job.getLastDocumentId());
+            status.put("startedAt", String.valueOf(job.getStartedAt()));
+            status.put("heartbeatAt", String.valueOf(job.getHeartbeatAt()));
+            status.put("finishedAt", String.valueOf(job.getFinishedAt()));
+            status.put("lastError", job.getLastError());
+        });
+        status.put("runningOnThisNode", running.get());
+        status.put("documentsPerSecond", getThroughput());
+        return status;
+    }
+
+    public double getThroughput() {
+        if (!running.get()) {
+            return 0;
+        }
+        double seconds = (System.nanoTime() - runStartedNanos) / 1e9;
+        return seconds <= 0 ? 0 : runIndexed / seconds;
+    }
+
+    private String aliasName() {
+        return elasticsearchOperations.getIndexCoordinatesFor(DocumentSearchEntity.class).getIndexName();
+    }
+
+    /**
+     * 关闭时在当前批写完后停止，任务保持运行状态，之后由本节点重启或其他节点接管
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        runner.shutdown();
+        runner.awaitTermination(30, TimeUnit.SECONDS);
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.crdt.CRDTDocument;
+import com.example.wsTextEditor.crdt.CRDTOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文档协作房间
+ * 同一文档（按 uniqueId）的所有会话共享一个 CRDT 副本和一个 STOMP 目的地
+ */
+public class DocumentRoom {
+
+    /** 房间广播目的地前缀 */
+    public static final String DESTINATION_PREFIX = "/topic/doc/";
+    /** 二进制订阅目的地后缀，/topic/doc/{uniqueId}/bin */
+    public static final String BINARY_SUFFIX = "/bin";
+
+    private final String uniqueId;
+    private final CRDTDocument document;
+    /** 当前订阅，键为 sessionId + ":" + subscriptionId */
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    /** 其中订阅二进制目的地的部分，没有时不做二进制编码 */
+    private final Set<String> binarySubscriptions = ConcurrentHashMap.newKeySet();
+    private volatile long lastActive = System.currentTimeMillis();
+
+    /** 等待在下一个批次中广播的操作 */
+    private final List<CRDTOperation> outbound = new ArrayList<>();
+    private boolean flushScheduled;
+    /** 取批次并发送时持有，保证各批次按顺序发出；发送可能写套接字，用 ReentrantLock 避免钉住虚拟线程 */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    public DocumentRoom(String uniqueId, CRDTDocument document) {
+        this.uniqueId = uniqueId;
+        this.document = document;
+    }
+
+    /**
+     * 从订阅目的地中解析文档 uniqueId，例如 /topic/doc/{uniqueId} 或 /topic/doc/{uniqueId}/mouse
+     * @param destination 订阅目的地
+     * @return 文档 uniqueId，不是房间目的地时返回 null
+     */
+    public static String parseUniqueId(String destination) {
+        if (destination == null || !destination.startsWith(DESTINATION_PREFIX)) {
+            return null;
+        }
+        String rest = destination.substring(DESTINATION_PREFIX.length());
+        int slash = rest.indexOf('/');
+        String uniqueId = slash < 0 ? rest : rest.substring(0, slash);
+        return uniqueId.isEmpty() ? null : uniqueId;
+    }
+
+    void join(String subscriptionKey, String destination) {
+        subscriptions.add(subscriptionKey);
+        if (getBinaryDestination().equals(destination)) {
+            binarySubscriptions.add(subscriptionKey);
+        }
+        touch();
+    }
+
+    void leave(String subscriptionKey) {
+        subscriptions.remove(subscriptionKey);
+        binarySubscriptions.remove(subscriptionKey);
+        touch();
+    }
+
+    /**
+     * 把生效的操作加入待广播批次，与末尾的操作能连成一段时直接合并
+     * @return 批次此前为空、需要安排一次刷新时返回 true
+     */
+    synchronized boolean enqueue(List<CRDTOperation> operations) {
+        for (CRDTOperation op : operations) {
+            int last = outbound.size() - 1;
+            CRDTOperation merged = last < 0 ? null : outbound.get(last).mergeWith(op);
+            if (merged != null) {
+                outbound.set(last, merged);
+            } else {
+                outbound.add(op);
+            }
+        }
+        if (flushScheduled || outbound.isEmpty()) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    synchronized int getOutboundSize() {
+        return outbound.size();
+    }
+
+    /**
+     * 取出当前批次并清空
+     */
+    synchronized List<CRDTOperation> drainOutbound() {
+        List<CRDTOperation> batch = new ArrayList<>(outbound);
+        outbound.clear();
+        flushScheduled = false;
+        return batch;
+    }
+
+    ReentrantLock getSendLock() {
+        return sendLock;
+    }
+
+    void touch() {
+        lastActive = System.currentTimeMillis();
+    }
+
+    /**
+     * 没有订阅者且空闲超过给定时长时可以回收
+     */
+    boolean isIdle(long now, long idleTimeoutMs) {
+        return subscriptions.isEmpty() && now - lastActive >= idleTimeoutMs;
+    }
+
+    public String getUniqueId() { return uniqueId; }
+    public CRDTDocument getDocument() { return document; }
+    public String getDestination() { return DESTINATION_PREFIX + uniqueId; }
+    public String getBinaryDestination() { return DESTINATION_PREFIX + uniqueId + BINARY_SUFFIX; }
+    public int getSubscriberCount() { return subscriptions.size(); }
+    public boolean hasBinarySubscribers() { return !binarySubscriptions.isEmpty(); }
+    public long getLastActive() { return lastActive; }
+}
@@ -0,0 +1,224 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.crdt.CRDTBinaryCodec;
+import com.example.wsTextEditor.crdt.CRDTDocument;
+import com.example.wsTextEditor.crdt.CRDTUpdate;
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 文档房间管理服务
+ * 按文档 uniqueId 维护共享的 CRDT 副本，按订阅数做引用计数，并定时回收空闲房间。
+ * 集群模式下副本经 {@link RoomClusterRelay} 与其他节点的同一房间互相合并操作
+ */
+@Service
+public class DocumentRoomService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentRoomService.class);
+
+    /** 服务端副本的站点 ID，服务端只合并远端操作，不产生本地编辑 */
+    private static final String SERVER_SITE = "server";
+    /** 初始内容使用的固定站点，保证所有节点、所有客户端种子内容的 ID 一致 */
+    private static final String SEED_SITE = "document";
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentWriteBehindService documentWriteBehindService;
+
+    @Autowired
+    private DocumentContentService documentContentService;
+
+    @Autowired
+    private ObjectProvider<RoomClusterRelay> roomClusterRelay;
+
+    @Value("${crdt.room.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    /** 集群模式下新建房间时等待其他节点回复副本状态的时间（毫秒） */
+    @Value("${crdt.room.cluster-sync-timeout-ms:500}")
+    private long clusterSyncTimeoutMs;
+
+    /** 文档 uniqueId -> 房间 */
+    private final Map<String, DocumentRoom> rooms = new ConcurrentHashMap<>();
+
+    /** sessionId -> (subscriptionId -> 文档 uniqueId)，用于退订和断开时找回房间 */
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取文档房间，不存在时从数据库加载文档内容创建
+     * @param uniqueId 文档唯一标识符
+     * @return 文档房间
+     */
+    public DocumentRoom getOrCreateRoom(String uniqueId) {
+        DocumentRoom[] created = new DocumentRoom[1];
+        DocumentRoom room = rooms.computeIfAbsent(uniqueId, key -> created[0] = createRoom(key));
+        room.touch();
+        if (created[0] != null) {
+            requestMissing(created[0]);
+        }
+        return room;
+    }
+
+    /**
+     * 记录一次房间订阅
+     * @param sessionId STOMP 会话ID
+     * @param subscriptionId 订阅ID
+     * @param destination 订阅目的地
+     */
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        String uniqueId = DocumentRoom.parseUniqueId(destination);
+        if (uniqueId == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+        // 在 compute 中加入，保证不会与空闲回收交错
+        DocumentRoom[] created = new DocumentRoom[1];
+        rooms.compute(uniqueId, (key, room) -> {
+            DocumentRoom target = room != null ? room : (created[0] = createRoom(key));
+            target.join(subscriptionKey(sessionId, subscriptionId), destination);
+            return target;
+        });
+        if (created[0] != null) {
+            requestMissing(created[0]);
+        }
+        sessionSubscriptions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(subscriptionId, uniqueId);
+        logger.debug("Session {} subscribed to room {}", sessionId, uniqueId);
+    }
+
+    /**
+     * 取消一次房间订阅
+     * @param sessionId STOMP 会话ID
+     * @param subscriptionId 订阅ID
+     */
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessionSubscriptions.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        String uniqueId = subscriptions.remove(subscriptionId);
+        if (uniqueId != null) {
+            leave(uniqueId, subscriptionKey(sessionId, subscriptionId));
+        }
+    }
+
+    /**
+     * 会话断开时释放其全部房间订阅
+     * @param sessionId STOMP 会话ID
+     */
+    public void disconnect(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessionSubscriptions.remove(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        subscriptions.forEach((subscriptionId, uniqueId) -> leave(uniqueId, subscriptionKey(sessionId, subscriptionId)));
+    }
+
+    /**
+     * 定时回收没有订阅者且长时间无活动的房间
+     */
+    @Scheduled(fixedDelayString = "${crdt.room.eviction-interval-ms:60000}")
+    public void evictIdleRooms() {
+        long now = System.currentTimeMillis();
+        for (String uniqueId : rooms.keySet()) {
+            rooms.computeIfPresent(uniqueId, (key, room) -> {
+                if (room.isIdle(now, idleTimeoutMs)) {
+                    logger.info("Evicting idle document room {}", key);
+                    roomClusterRelay.ifAvailable(relay -> relay.unbind(RoomClusterRelay.CRDT, key));
+                    return null;
+                }
+                return room;
+            });
+        }
+    }
+
+    /**
+     * 处理其他节点发来的房间消息：合并其接受的操作（客户端已经由 STOMP 桥接收到同一批次，这里不再广播），
+     * 或用本地副本回答状态请求。本地没有该房间时忽略
+     * @param uniqueId 文档唯一标识符
+     * @param type 消息类型
+     * @param body 二进制编码的 CRDTUpdate
+     * @param reply 回复请求节点，非状态请求时为 null
+     */
+    public void receiveRemote(String uniqueId, String type, byte[] body, Consumer<byte[]> reply) {
+        DocumentRoom room = rooms.get(uniqueId);
+        if (room == null) {
+            return;
+        }
+        CRDTUpdate update = CRDTBinaryCodec.decode(body);
+        if (RoomClusterRelay.TYPE_STATE_REQUEST.equals(type)) {
+            if (reply != null) {
+                reply.accept(CRDTBinaryCodec.encode(room.getDocument().diff(update.getStateVector())));
+            }
+        } else {
+            room.getDocument().applyUpdate(update);
+        }
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    private void leave(String uniqueId, String subscriptionKey) {
+        DocumentRoom room = rooms.get(uniqueId);
+        if (room != null) {
+            room.leave(subscriptionKey);
+            logger.debug("Subscription {} left room {}, {} remaining", subscriptionKey, uniqueId, room.getSubscriberCount());
+        }
+    }
+
+    private DocumentRoom createRoom(String uniqueId) {
+        Document document = documentRepository.findByUniqueId(uniqueId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid document ID:" + uniqueId));
+        CRDTDocument replica = new CRDTDocument(SERVER_SITE);
+        RoomClusterRelay relay = roomClusterRelay.getIfAvailable();
+        if (relay != null) {
+            relay.bind(RoomClusterRelay.CRDT, uniqueId);
+            // 其他节点已有该房间时以其副本为准：数据库内容可能已包含它们的编辑，重新生成的种子会与已有操作重复
+            byte[] state = relay.requestState(RoomClusterRelay.CRDT, uniqueId,
+                    CRDTBinaryCodec.encode(new CRDTUpdate()), clusterSyncTimeoutMs);
+            if (state != null) {
+                replica.applyUpdate(CRDTBinaryCodec.decode(state));
+                logger.info("Created document room {} from a peer replica with {} characters", uniqueId, replica.getCharacterCount());
+                return new DocumentRoom(uniqueId, replica);
+            }
+        }
+        String pendingContent = documentWriteBehindService.getPendingContent(uniqueId);
+        String content = pendingContent != null ? pendingContent : documentContentService.load(uniqueId);
+        if (content != null && !content.isEmpty()) {
+            replica.applyOperation(new CRDTDocument(SEED_SITE).insertText(0, content));
+        }
+        logger.info("Created document room {} with {} characters", uniqueId, replica.getCharacterCount());
+        return new DocumentRoom(uniqueId, replica);
+    }
+
+    /**
+     * 房间放入表之前其他节点接受的操作不会转发到本节点，放入后再按状态向量补齐一次
+     */
+    private void requestMissing(DocumentRoom room) {
+        roomClusterRelay.ifAvailable(relay -> relay.publishStateRequest(RoomClusterRelay.CRDT, room.getUniqueId(),
+                CRDTBinaryCodec.encode(new CRDTUpdate(List.of(), room.getDocument().getStateVector()))));
+    }
+
+    private static String subscriptionKey(String sessionId, String subscriptionId) {
+        return sessionId + ":" + subscriptionId;
+    }
+}
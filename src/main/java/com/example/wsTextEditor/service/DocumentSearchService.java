@@ -1,67 +1,153 @@
 package com.example.wsTextEditor.service;
 
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import com.example.wsTextEditor.model.DocumentSearchEntity;
-import com.example.wsTextEditor.repository.DocumentSearchRepository;
+import com.example.wsTextEditor.pojo.DocumentSearchPage;
+import com.example.wsTextEditor.pojo.DocumentSearchResult;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.HighlightQuery;
+import org.springframework.data.elasticsearch.core.query.highlight.Highlight;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightField;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightFieldParameters;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightParameters;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
 import java.util.List;
 
+/**
+ * 文档全文搜索
+ * 按相关度排序，只返回调用者拥有或参与协作的文档，用 search_after 游标分页，
+ * 结果不带全文，只带标题和内容中的高亮片段
+ */
 @Service
 public class DocumentSearchService {
 
     @Autowired
-    private DocumentSearchRepository documentSearchRepository;
+    private ElasticsearchOperations elasticsearchOperations;
 
-    /**
-     * 根据标题或内容关键字搜索文档
-     * @param keyword 搜索关键字
-     * @return 匹配的文档列表
-     */
-    public List<DocumentSearchEntity> searchByKeyword(String keyword) {
-        return documentSearchRepository.findByTitleContainingOrContentContaining(keyword, keyword);
-    }
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${search.query.default-size:20}")
+    private int defaultSize;
+
+    @Value("${search.query.max-size:100}")
+    private int maxSize;
+
+    /** 内容高亮片段的长度（字符）与条数 */
+    @Value("${search.query.fragment-size:150}")
+    private int fragmentSize;
+
+    @Value("${search.query.fragments:3}")
+    private int fragments;
 
     /**
-     * 根据编程语言筛选文档
-     * @param language 编程语言
-     * @return 匹配的文档列表
+     * 搜索当前用户可访问的文档
+     * @param keyword 搜索关键字，为空时按更新时间倒序列出
+     * @param language 编程语言，为空时不限
+     * @param username 当前用户名
+     * @param cursor 上一页返回的 nextCursor，为空时取第一页
+     * @param size 每页条数，为空时使用默认值，超过上限时截断
+     * @return 一页搜索结果
      */
-    public List<DocumentSearchEntity> searchByLanguage(String language) {
-        return documentSearchRepository.findByLanguage(language);
+    public DocumentSearchPage search(String keyword, String language, String username, String cursor, Integer size) {
+        boolean hasKeyword = keyword != null && !keyword.isBlank();
+        int pageSize = size == null || size <= 0 ? defaultSize : Math.min(size, maxSize);
+
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        if (hasKeyword) {
+            bool.must(m -> m.multiMatch(mm -> mm.query(keyword).fields("title^3", "content")));
+        } else {
+            bool.must(m -> m.matchAll(ma -> ma));
+        }
+        // 权限过滤放在 filter 中，不参与评分且可被缓存
+        bool.filter(f -> f.bool(b -> b
+                .should(s -> s.term(t -> t.field("owner").value(username)))
+                .should(s -> s.term(t -> t.field("collaborators").value(username)))
+                .minimumShouldMatch("1")));
+        if (language != null && !language.isBlank()) {
+            bool.filter(f -> f.term(t -> t.field("language").value(language)));
+        }
+        BoolQuery query = bool.build();
+
+        NativeQueryBuilder builder = NativeQuery.builder()
+                .withQuery(q -> q.bool(query))
+                .withSourceFilter(FetchSourceFilter.of(b -> b.withExcludes("content")))
+                .withPageable(PageRequest.of(0, pageSize))
+                .withTrackTotalHits(false);
+        if (hasKeyword) {
+            builder.withSort(s -> s.score(sc -> sc.order(SortOrder.Desc)));
+            builder.withHighlightQuery(highlightQuery());
+        } else {
+            builder.withSort(s -> s.field(f -> f.field("updateAt").order(SortOrder.Desc)));
+        }
+        // uniqueId 作为排序的最后一项，保证 search_after 游标唯一
+        builder.withSort(s -> s.field(f -> f.field("uniqueId").order(SortOrder.Asc)));
+        if (cursor != null && !cursor.isBlank()) {
+            builder.withSearchAfter(decodeCursor(cursor));
+        }
+
+        SearchHits<DocumentSearchEntity> hits = elasticsearchOperations.search(builder.build(), DocumentSearchEntity.class);
+        List<DocumentSearchResult> results = hits.getSearchHits().stream().map(this::toResult).toList();
+        String nextCursor = null;
+        if (results.size() == pageSize) {
+            nextCursor = encodeCursor(hits.getSearchHit(results.size() - 1).getSortValues());
+        }
+        return new DocumentSearchPage(results, nextCursor);
     }
 
     /**
-     * 根据关键字和编程语言组合搜索文档
-     * @param keyword 搜索关键字
-     * @param language 编程语言
-     * @return 匹配的文档列表
+     * 标题整体高亮，内容只取匹配附近的片段；encoder 为 html 时片段中的原文被转义
      */
-    public List<DocumentSearchEntity> searchByKeywordAndLanguage(String keyword, String language) {
-        // 同时在标题和内容中搜索关键字
-        List<DocumentSearchEntity> titleMatches = documentSearchRepository.findByTitleContainingAndLanguage(keyword, language);
-        List<DocumentSearchEntity> contentMatches = documentSearchRepository.findByContentContainingAndLanguage(keyword, language);
-
-        // 合并结果并去重
-        titleMatches.addAll(contentMatches);
-        return titleMatches.stream().distinct().toList();
+    private HighlightQuery highlightQuery() {
+        HighlightParameters parameters = HighlightParameters.builder()
+                .withEncoder("html")
+                .withPreTags("<em>")
+                .withPostTags("</em>")
+                .build();
+        HighlightFieldParameters contentParameters = HighlightFieldParameters.builder()
+                .withFragmentSize(fragmentSize)
+                .withNumberOfFragments(fragments)
+                .build();
+        Highlight highlight = new Highlight(parameters, List.of(
+                new HighlightField("title", HighlightFieldParameters.builder().withNumberOfFragments(0).build()),
+                new HighlightField("content", contentParameters)));
+        return new HighlightQuery(highlight, DocumentSearchEntity.class);
     }
 
-    /**
-     * 保存文档到Elasticsearch索引中
-     * @param documentSearchEntity 要保存的文档实体
-     * @return 保存后的文档实体
-     */
-    public DocumentSearchEntity saveDocument(DocumentSearchEntity documentSearchEntity) {
-        return documentSearchRepository.save(documentSearchEntity);
+    private DocumentSearchResult toResult(SearchHit<DocumentSearchEntity> hit) {
+        DocumentSearchEntity entity = hit.getContent();
+        return new DocumentSearchResult(entity.getId(), entity.getUniqueId(), entity.getTitle(), entity.getLanguage(),
+                entity.getOwner(), entity.getCreateAt(), entity.getUpdateAt(), hit.getScore(), hit.getHighlightFields());
     }
 
-    /**
-     * 根据ID删除Elasticsearch中的文档
-     * @param id 文档ID
-     */
-    public void deleteDocumentById(Long id) {
-        documentSearchRepository.deleteById(id);
+    private String encodeCursor(List<Object> sortValues) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(sortValues));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
+    private List<Object> decodeCursor(String cursor) {
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), new TypeReference<List<Object>>() {});
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
 }
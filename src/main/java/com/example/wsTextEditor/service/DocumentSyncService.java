@@ -2,41 +2,126 @@ package com.example.wsTextEditor.service;
 
 import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.DocumentSearchEntity;
-import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
 import com.example.wsTextEditor.repository.DocumentSearchRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 //文档同步服务
 @Service
 public class DocumentSyncService {
 
     @Autowired
-    private DocumentRepository documentRepository;
+    private DocumentSearchRepository searchableDocumentRepository;
 
     @Autowired
-    private DocumentSearchRepository searchableDocumentRepository;
+    private DocumentContentService documentContentService;
+
+    @Autowired
+    private DocumentCollaboratorRepository documentCollaboratorRepository;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    /**
+     * 同步单个文档到 Elasticsearch
+     */
+    public void syncDocument(Document document) {
+        syncDocument(document, documentContentService.load(document.getUniqueId()));
+    }
 
     /**
-     * 同步所有文档到 Elasticsearch
+     * 同步单个文档到 Elasticsearch，内容已在手中时不再读取
      */
-    public void syncAllDocuments() {
-        List<Document> documents = documentRepository.findAll();
-        List<DocumentSearchEntity> searchableDocuments = documents.stream()
-                .map(this::convertToSearchableDocument)
+    public void syncDocument(Document document, String content) {
+        DocumentSearchEntity searchableDocument = convertToSearchableDocument(document, content,
+                loadCollaborators(List.of(document)).getOrDefault(document.getId(), List.of()));
+        searchableDocumentRepository.save(searchableDocument);
+    }
+
+    /**
+     * 用一次 bulk 请求把多个文档写入 Elasticsearch
+     * @param documents 文档（需已加载所有者）
+     * @throws BulkFailureException 部分文档写入失败，键为失败文档的 _id
+     */
+    public void bulkIndex(List<Document> documents) {
+        bulkIndex(documents, null);
+    }
+
+    /**
+     * 用一次 bulk 请求把多个文档写入指定索引
+     * 写入索引重建中的新索引时带上文档版本号（外部版本），较旧的读取不会覆盖已写入的新版本，这类版本冲突不算失败
+     * @param documents 文档（需已加载所有者）
+     * @param indexName 目标索引，为 null 时写入别名指向的当前索引
+     * @throws BulkFailureException 部分文档写入失败，键为失败文档的 _id
+     */
+    public void bulkIndex(List<Document> documents, String indexName) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        Map<Long, List<String>> collaborators = loadCollaborators(documents);
+        Map<String, String> contents = documentContentService.loadAll(documents.stream().map(Document::getUniqueId).toList());
+        List<IndexQuery> queries = documents.stream()
+                .map(document -> new IndexQueryBuilder()
+                        .withId(String.valueOf(document.getId()))
+                        .withObject(convertToSearchableDocument(document, contents.get(document.getUniqueId()),
+                                collaborators.getOrDefault(document.getId(), List.of())))
+                        .withVersion(indexName != null ? document.getVersion() : null)
+                        .build())
                 .collect(Collectors.toList());
+        if (indexName == null) {
+            elasticsearchOperations.bulkIndex(queries, DocumentSearchEntity.class);
+            return;
+        }
+        try {
+            elasticsearchOperations.bulkIndex(queries, IndexCoordinates.of(indexName));
+        } catch (BulkFailureException e) {
+            Map<String, BulkFailureException.FailureDetails> failures = new HashMap<>(e.getFailedDocuments());
+            failures.values().removeIf(failure -> Integer.valueOf(HttpStatus.CONFLICT.value()).equals(failure.status()));
+            if (!failures.isEmpty()) {
+                throw new BulkFailureException(e.getMessage(), failures);
+            }
+        }
+    }
 
-        searchableDocumentRepository.saveAll(searchableDocuments);
+    /**
+     * 用一次按查询删除请求从 Elasticsearch 中移除多个文档
+     * @param uniqueIds 文档唯一标识符
+     */
+    public void bulkDelete(Collection<String> uniqueIds) {
+        bulkDelete(uniqueIds, null);
     }
 
     /**
-     * 同步单个文档到 Elasticsearch
+     * 用一次按查询删除请求从指定索引中移除多个文档
+     * @param uniqueIds 文档唯一标识符
+     * @param indexName 目标索引，为 null 时使用别名指向的当前索引
      */
-    public void syncDocument(Document document) {
-        DocumentSearchEntity searchableDocument = convertToSearchableDocument(document);
-        searchableDocumentRepository.save(searchableDocument);
+    public void bulkDelete(Collection<String> uniqueIds, String indexName) {
+        if (uniqueIds.isEmpty()) {
+            return;
+        }
+        CriteriaQuery query = new CriteriaQuery(Criteria.where("uniqueId").in(uniqueIds));
+        if (indexName == null) {
+            elasticsearchOperations.delete(DeleteQuery.builder(query).build(), DocumentSearchEntity.class);
+        } else {
+            elasticsearchOperations.delete(DeleteQuery.builder(query).build(), DocumentSearchEntity.class,
+                    IndexCoordinates.of(indexName));
+        }
     }
 
     /**
@@ -47,20 +132,31 @@ public class DocumentSyncService {
             searchableDocumentRepository::delete);
     }
 
+    /**
+     * 一次查询读取多个文档的协作者用户名
+     * @return 文档ID -> 用户名
+     */
+    private Map<Long, List<String>> loadCollaborators(List<Document> documents) {
+        List<Long> ids = documents.stream().map(Document::getId).toList();
+        return documentCollaboratorRepository.findUsernamesByDocumentIdIn(ids).stream()
+                .collect(Collectors.groupingBy(row -> (Long) row[0],
+                        Collectors.mapping(row -> (String) row[1], Collectors.toList())));
+    }
+
     /**
      * 将 Document 对象转换为 DocumentSearchEntity 对象
      */
-    private DocumentSearchEntity convertToSearchableDocument(Document document) {
+    private DocumentSearchEntity convertToSearchableDocument(Document document, String content, List<String> collaborators) {
         DocumentSearchEntity entity = new DocumentSearchEntity();
         entity.setId(document.getId());
         entity.setTitle(document.getTitle());
-        entity.setContent(document.getContent());
+        entity.setContent(content);
         entity.setLanguage(document.getLanguage());
         entity.setUniqueId(document.getUniqueId());
         entity.setCreateAt(document.getCreatedAt());
         entity.setUpdateAt(document.getUpdatedAt());
         entity.setOwner(document.getOwner().getUsername());
-        System.out.println("DocumentSearchEntity: " + entity);
+        entity.setCollaborators(collaborators);
         return entity;
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentTag;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.pojo.DocumentSummary;
+import com.example.wsTextEditor.pojo.TagFacet;
+import com.example.wsTextEditor.repository.DocumentCollaboratorRepository;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.DocumentTagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 文档标签服务
+ * 标签以小写形式逐行存放在 document_tags 中用于筛选和统计，Document.tags 保留原始写法用于展示
+ */
+@Service
+public class DocumentTagService {
+
+    /** 单个标签的最大长度 */
+    private static final int MAX_TAG_LENGTH = 100;
+
+    @Autowired
+    private DocumentTagRepository documentTagRepository;
+
+    @Autowired
+    private DocumentCollaboratorRepository documentCollaboratorRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    /**
+     * 解析逗号分隔的标签：去掉空白、转为小写并去重
+     * @param tags 逗号分隔的标签
+     * @return 保持输入顺序的小写标签集合
+     */
+    public static Set<String> normalize(String tags) {
+        Set<String> result = new LinkedHashSet<>();
+        if (tags == null) {
+            return result;
+        }
+        for (String tag : tags.split(",")) {
+            String normalized = normalizeTag(tag);
+            if (normalized != null) {
+                result.add(normalized);
+            }
+        }
+        return result;
+    }
+
+    private static String normalizeTag(String tag) {
+        String trimmed = tag.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        if (trimmed.length() > MAX_TAG_LENGTH) {
+            throw new IllegalArgumentException("Tag is longer than " + MAX_TAG_LENGTH + " characters: " + trimmed);
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 给文档添加标签，已有的标签（不区分大小写）忽略。
+     * tags 列用一条 UPDATE 追加，不保存 Document 实体：延迟写入会直接用 SQL 递增版本号，
+     * 保存读取时的实体会与正在写出的编辑发生乐观锁冲突
+     * @param document 文档
+     * @param tagsString 逗号分隔的新标签
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void addTags(Document document, String tagsString) {
+        Set<String> existing = new HashSet<>(documentTagRepository.findTagsByDocumentId(document.getId()));
+        List<String> tagList = new ArrayList<>();
+        List<DocumentTag> added = new ArrayList<>();
+        for (String tag : tagsString.split(",")) {
+            String normalized = normalizeTag(tag);
+            if (normalized != null && existing.add(normalized)) {
+                tagList.add(tag.trim());
+                added.add(new DocumentTag(document, normalized));
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        documentTagRepository.saveAll(added);
+        documentRepository.appendTags(document.getId(), String.join(",", tagList), new Date());
+    }
+
+    /**
+     * 用户可访问文档的全部标签
+     */
+    public List<String> getUserTags(User user) {
+        return documentTagRepository.findTagsByUserId(user.getId());
+    }
+
+    /**
+     * 用户可访问文档的标签分面计数
+     * @param user 当前用户
+     * @param keyword 标签需包含的关键字，为空时返回全部
+     * @return 按文档数倒序的标签分面
+     */
+    public List<TagFacet> getFacets(User user, String keyword) {
+        String normalized = keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+        return documentTagRepository.findFacetsByUserId(user.getId(), escapeLike(normalized));
+    }
+
+    /**
+     * 转义 LIKE 通配符，关键字按字面匹配
+     */
+    static String escapeLike(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 按标签筛选用户可访问的文档，一条查询完成
+     * @param user 当前用户
+     * @param tags 小写标签
+     * @param matchAll true 时要求带有全部标签，否则带有任一标签即可
+     * @return 文档摘要列表
+     */
+    public List<DocumentSummary> findDocuments(User user, Set<String> tags, boolean matchAll) {
+        if (tags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (matchAll) {
+            return documentCollaboratorRepository.findSummariesByUserIdAndAllTags(user.getId(), tags, tags.size());
+        }
+        return documentCollaboratorRepository.findSummariesByUserIdAndAnyTag(user.getId(), tags);
+    }
+
+    /**
+     * 删除文档的全部标签索引
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteTags(Document document) {
+        documentTagRepository.deleteByDocumentId(document.getId());
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.Excption.DocumentConflictException;
+import com.example.wsTextEditor.Excption.InvalidPatchException;
+import com.example.wsTextEditor.pojo.DocumentPatch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 文档内容延迟写入服务
+ * 按文档 uniqueId 只保留最新一次保存，定时用一条批量 UPDATE 写回数据库；
+ * 同一文档的多个协作者在一个周期内的保存只产生一次写入。
+ */
+@Service
+public class DocumentWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentWriteBehindService.class);
+
+    // updated_at 取写入事务的时间而不是提交保存的时间：搜索变更同步按它推进水位，放回队列后重试的保存不能落在水位之后
+    private static final String UPDATE_CONTENT_SQL =
+            "UPDATE document SET language = COALESCE(?, language), title = COALESCE(?, title), updated_at = now(), " +
+            "version = version + 1 " +
+            "WHERE unique_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private DocumentContentService documentContentService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** 写入使用独立事务：flushDocument 可能在调用方的事务中执行，写出的保存须先提交，不随调用方回滚 */
+    private TransactionTemplate transactionTemplate;
+
+    /** 文档 uniqueId -> 尚未写入的最新内容 */
+    private final Map<String, PendingSave> pending = new ConcurrentHashMap<>();
+
+    /** 文档 uniqueId -> 已从 pending 取出、事务尚未提交的内容；提交或放回队列后移除 */
+    private final Map<String, PendingSave> inFlight = new ConcurrentHashMap<>();
+
+    /** 保证同一时刻只有一个线程在写入；写入在事务中进行，虚拟线程下不能用 synchronized 持有 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private record PendingSave(String uniqueId, String content, String language, String title) {
+
+        /** 用更新的保存覆盖本条，新保存未带的语言和标题沿用本条 */
+        PendingSave merge(PendingSave newer) {
+            return new PendingSave(uniqueId, newer.content,
+                    newer.language != null ? newer.language : language,
+                    newer.title != null ? newer.title : title);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 接收一次保存，覆盖该文档尚未写入的旧内容
+     * @param uniqueId 文档唯一标识符
+     * @param content 文档内容
+     * @param language 编程语言，为空时不修改
+     * @param title 文档标题，为空时不修改
+     */
+    public void submit(String uniqueId, String content, String language, String title) {
+        PendingSave save = new PendingSave(uniqueId, content, emptyToNull(language), emptyToNull(title));
+        pending.merge(uniqueId, save, PendingSave::merge);
+    }
+
+    /**
+     * 把增量编辑应用到文档的最新内容上，结果与整篇保存一样进入延迟写入
+     * @param uniqueId 文档唯一标识符
+     * @param patch 编辑列表及其所基于内容的哈希
+     * @param storedContent 没有待写入内容时读取数据库中的内容
+     * @return 应用后内容的哈希
+     * @throws DocumentConflictException 基础哈希与最新内容不一致
+     * @throws InvalidPatchException 编辑超出内容范围
+     */
+    public String applyPatch(String uniqueId, DocumentPatch patch, Supplier<String> storedContent) {
+        if (pending.containsKey(uniqueId) || inFlight.containsKey(uniqueId)) {
+            // 基础内容取自内存：待写入的保存，或正在写入的保存（它比数据库中的内容新）
+            return compute(uniqueId, patch, null);
+        }
+        // 基础内容取自数据库：持有写入锁，读取与应用之间不会有写入提交而使读到的内容过期
+        flushLock.lock();
+        try {
+            // 数据库读取放在 compute 之外，避免占用 map 的锁
+            String stored = pending.containsKey(uniqueId) ? null : storedContent.get();
+            return compute(uniqueId, patch, stored);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private String compute(String uniqueId, DocumentPatch patch, String stored) {
+        PendingSave patched = pending.compute(uniqueId, (key, current) -> {
+            PendingSave writing = inFlight.get(key);
+            String base = current != null ? current.content() : writing != null ? writing.content() : stored;
+            if (base == null) {
+                // 检查之后该文档的保存恰好写出并提交，让客户端重试
+                throw new DocumentConflictException("Document " + key + " changed while applying the patch",
+                        DocumentConflictException.CONTENT_HASH_HEADER, null);
+            }
+            String baseHash = contentHash(base);
+            if (!baseHash.equals(patch.getBaseHash())) {
+                throw new DocumentConflictException("Patch base is stale for document " + key,
+                        DocumentConflictException.CONTENT_HASH_HEADER, baseHash);
+            }
+            PendingSave save = new PendingSave(key, applyEdits(base, patch.getEdits()),
+                    emptyToNull(patch.getLanguage()), emptyToNull(patch.getTitle()));
+            return current != null ? current.merge(save) : save;
+        });
+        return contentHash(patched.content());
+    }
+
+    /**
+     * 按顺序应用编辑
+     */
+    static String applyEdits(String content, List<DocumentPatch.Edit> edits) {
+        StringBuilder builder = new StringBuilder(content);
+        for (DocumentPatch.Edit edit : edits) {
+            int offset = edit.getOffset();
+            int end = offset + edit.getDeleteCount();
+            if (offset < 0 || edit.getDeleteCount() < 0 || end > builder.length()) {
+                throw new InvalidPatchException("Edit [" + offset + ", " + end + ") is outside the document of length " + builder.length());
+            }
+            String insertText = edit.getInsertText() == null ? "" : edit.getInsertText();
+            builder.replace(offset, end, insertText);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 内容哈希：UTF-8 编码后的 SHA-256 十六进制串
+     */
+    public static String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * 尚未写入数据库的最新内容，读取文档时用来覆盖数据库中的旧内容
+     * @param uniqueId 文档唯一标识符
+     * @return 待写入的内容，没有时返回 null
+     */
+    public String getPendingContent(String uniqueId) {
+        PendingSave save = pending.get(uniqueId);
+        if (save == null) {
+            save = inFlight.get(uniqueId);
+        }
+        return save == null ? null : save.content();
+    }
+
+    /**
+     * 把每个文档的最新内容批量写入数据库，并在同一事务中登记搜索索引更新
+     */
+    @Scheduled(fixedDelayString = "${document.write-behind.flush-interval-ms:2000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingSave> batch = new ArrayList<>(pending.size());
+            for (String uniqueId : pending.keySet()) {
+                PendingSave save = take(uniqueId);
+                if (save != null) {
+                    batch.add(save);
+                }
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                logger.error("Failed to flush {} document saves, will retry: {}", batch.size(), e.getMessage());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 立即写入单个文档尚未写入的保存，供需要读取准确版本号的操作先行调用
+     * 在调用方的事务中调用时也在独立事务中提交，返回后保存已持久化，调用方随后回滚也不会丢失
+     * @param uniqueId 文档唯一标识符
+     * @throws RuntimeException 写入失败（数据访问或事务异常），保存已放回队列
+     */
+    public void flushDocument(String uniqueId) {
+        flushLock.lock();
+        try {
+            PendingSave save = take(uniqueId);
+            if (save != null) {
+                write(List.of(save));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 把文档的待写入内容移到 inFlight；两步在同一次 compute 中完成，读取方总能在其中之一看到它
+     */
+    private PendingSave take(String uniqueId) {
+        PendingSave[] taken = new PendingSave[1];
+        pending.computeIfPresent(uniqueId, (key, save) -> {
+            inFlight.put(key, save);
+            taken[0] = save;
+            return null;
+        });
+        return taken[0];
+    }
+
+    private void write(List<PendingSave> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // 先更新 document 行（同时锁定这些行），再在同一事务中写入内容块和搜索索引事件
+            transactionTemplate.executeWithoutResult(status -> {
+                int[][] counts = jdbcTemplate.batchUpdate(UPDATE_CONTENT_SQL, batch, batch.size(), (ps, save) -> {
+                    ps.setString(1, save.language());
+                    ps.setString(2, save.title());
+                    ps.setString(3, save.uniqueId());
+                });
+                for (int i = 0; i < batch.size(); i++) {
+                    // 文档已被删除时不再写入内容
+                    if (counts[0][i] != 0) {
+                        documentContentService.store(batch.get(i).uniqueId(), batch.get(i).content());
+                        outboxService.recordSearchIndex(batch.get(i).uniqueId());
+                    }
+                }
+            });
+            logger.debug("Flushed {} coalesced document saves", batch.size());
+        } catch (RuntimeException e) {
+            // 无法开启或提交事务（TransactionException）与数据访问失败一样放回队列；期间到达的新保存更新，保留新的
+            for (PendingSave save : batch) {
+                pending.merge(save.uniqueId(), save, (current, failed) -> failed.merge(current));
+            }
+            throw e;
+        } finally {
+            // 已提交或已放回 pending 后才移除
+            for (PendingSave save : batch) {
+                inFlight.remove(save.uniqueId(), save);
+            }
+        }
+    }
+
+    /**
+     * 关闭前写入剩余的保存
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
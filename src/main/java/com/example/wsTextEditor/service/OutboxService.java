@@ -0,0 +1,239 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.OutboxEvent;
+import com.example.wsTextEditor.model.OutboxEvent.Type;
+import com.example.wsTextEditor.model.SearchIndexDeadLetter;
+import com.example.wsTextEditor.pojo.MessageDTO;
+import com.example.wsTextEditor.repository.OutboxEventRepository;
+import com.example.wsTextEditor.repository.SearchIndexDeadLetterRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 事务发件箱服务
+ * 搜索索引更新和 RabbitMQ 通知先与实体变更在同一事务中写入 outbox_events，事务回滚则一并撤销；
+ * 定时任务用 FOR UPDATE SKIP LOCKED 锁定一批事件批量投递，成功后删除，失败按指数退避重试（至少一次投递）。
+ * 同一文档的多个搜索事件合并为一次写入，以最后一个事件为准
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    /** 每次投递锁定的事件数 */
+    @Value("${outbox.relay.batch-size:200}")
+    private int batchSize;
+
+    /** 单个事件最多投递的次数，之后搜索事件写入死信表，通知丢弃 */
+    @Value("${outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    /** 第一次重试前的等待（毫秒），之后每次翻倍 */
+    @Value("${outbox.backoff-ms:1000}")
+    private long backoffMs;
+
+    @Value("${outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    /** 每次重新投递的死信条数 */
+    @Value("${search.indexing.dead-letter-batch-size:500}")
+    private int deadLetterBatchSize;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private SearchIndexDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** 本节点同一时刻只有一个线程在投递，节点之间由行锁互斥 */
+    private final ReentrantLock relayLock = new ReentrantLock();
+
+    /**
+     * 登记文档的索引更新，必须在修改文档的事务中调用
+     * @param uniqueId 文档唯一标识符
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSearchIndex(String uniqueId) {
+        outboxEventRepository.save(new OutboxEvent(Type.SEARCH_INDEX, uniqueId, null, null, null));
+    }
+
+    /**
+     * 登记从索引中删除文档，必须在删除文档的事务中调用
+     * @param uniqueId 文档唯一标识符
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSearchDelete(String uniqueId) {
+        outboxEventRepository.save(new OutboxEvent(Type.SEARCH_DELETE, uniqueId, null, null, null));
+    }
+
+    /**
+     * 登记一条 RabbitMQ 消息，事务提交后才会发送；消息体在登记时序列化
+     * @param exchange 交换机
+     * @param routingKey 路由键
+     * @param message 消息
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordMessage(String exchange, String routingKey, MessageDTO message) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize outbox message: " + e.getMessage(), e);
+        }
+        outboxEventRepository.save(new OutboxEvent(Type.MESSAGE, null, exchange, routingKey, payload));
+    }
+
+    /**
+     * 投递已到时间的事件，直到没有满批为止
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relay() {
+        if (!relayLock.tryLock()) {
+            return;
+        }
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed >= batchSize);
+        } catch (DataAccessException e) {
+            logger.error("Failed to relay outbox events: {}", e.getMessage());
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    /**
+     * 在事务中锁定一批事件并投递，行锁保持到投递结果写回
+     * @return 本批锁定的事件数
+     */
+    private int relayBatch() {
+        List<OutboxEvent> events = outboxEventRepository.lockAvailable(LocalDateTime.now(), batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        // 事件按 id 有序，同一文档以最后一个搜索事件为准
+        Map<String, Type> searchOperations = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            if (event.getType() != Type.MESSAGE) {
+                searchOperations.put(event.getAggregateId(), event.getType());
+            }
+        }
+        Map<String, String> searchFailures = Map.of();
+        if (!searchOperations.isEmpty()) {
+            List<String> indexIds = new ArrayList<>();
+            List<String> deleteIds = new ArrayList<>();
+            searchOperations.forEach((uniqueId, type) -> (type == Type.SEARCH_INDEX ? indexIds : deleteIds).add(uniqueId));
+            searchFailures = searchIndexingService.write(indexIds, deleteIds);
+        }
+
+        List<OutboxEvent> finished = new ArrayList<>();
+        Set<String> deadLettered = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : events) {
+            String error = event.getType() == Type.MESSAGE ? send(event) : searchFailures.get(event.getAggregateId());
+            if (error == null) {
+                finished.add(event);
+                continue;
+            }
+            int attempts = event.getAttempts() + 1;
+            if (attempts < maxAttempts) {
+                long delay = Math.min(maxBackoffMs, backoffMs << Math.min(attempts - 1, 20));
+                logger.warn("Outbox event {} ({}) failed (attempt {}), retrying in {} ms: {}",
+                        event.getId(), event.getType(), attempts, delay, error);
+                event.setAttempts(attempts);
+                event.setLastError(error);
+                event.setAvailableAt(now.plusNanos(delay * 1_000_000));
+                continue;
+            }
+            finished.add(event);
+            if (event.getType() == Type.MESSAGE) {
+                logger.error("Dropping outbox message {} to {} after {} attempts: {}",
+                        event.getId(), event.getExchange(), attempts, error);
+            } else if (deadLettered.add(event.getAggregateId())) {
+                Type operation = searchOperations.get(event.getAggregateId());
+                logger.error("Search index {} of document {} failed {} times, moving to dead letters: {}",
+                        operation, event.getAggregateId(), attempts, error);
+                deadLetterRepository.save(new SearchIndexDeadLetter(event.getAggregateId(),
+                        operation == Type.SEARCH_INDEX ? SearchIndexDeadLetter.Operation.INDEX
+                                : SearchIndexDeadLetter.Operation.DELETE, attempts, error));
+            }
+        }
+        outboxEventRepository.deleteAllInBatch(finished);
+        logger.debug("Relayed {} outbox events, {} rescheduled", finished.size(), events.size() - finished.size());
+        return events.size();
+    }
+
+    /**
+     * @return 发送失败的原因，成功时为 null
+     */
+    private String send(OutboxEvent event) {
+        try {
+            MessageDTO message = objectMapper.readValue(event.getPayload(), MessageDTO.class);
+            rabbitTemplate.convertAndSend(event.getExchange(), event.getRoutingKey(), message);
+            return null;
+        } catch (JsonProcessingException | AmqpException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * 定时把死信重新写入发件箱，与删除死信在同一事务中，再次失败时会重新进入死信表
+     */
+    @Scheduled(fixedDelayString = "${search.indexing.dead-letter-redrive-interval-ms:1800000}",
+            initialDelayString = "${search.indexing.dead-letter-redrive-interval-ms:1800000}")
+    public void redriveDeadLetters() {
+        try {
+            Integer redriven = transactionTemplate.execute(status -> {
+                List<SearchIndexDeadLetter> deadLetters =
+                        deadLetterRepository.findByOrderByIdAsc(PageRequest.of(0, deadLetterBatchSize));
+                for (SearchIndexDeadLetter deadLetter : deadLetters) {
+                    outboxEventRepository.save(new OutboxEvent(
+                            deadLetter.getOperation() == SearchIndexDeadLetter.Operation.INDEX ? Type.SEARCH_INDEX : Type.SEARCH_DELETE,
+                            deadLetter.getUniqueId(), null, null, null));
+                }
+                deadLetterRepository.deleteAllInBatch(deadLetters);
+                return deadLetters.size();
+            });
+            if (redriven != null && redriven > 0) {
+                logger.info("Redrove {} search index dead letters", redriven);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to redrive search index dead letters: {}", e.getMessage());
+        }
+    }
+}
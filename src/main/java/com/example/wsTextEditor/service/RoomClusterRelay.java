@@ -0,0 +1,275 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.config.StompClusterBrokerConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 文档房间集群转发服务（stomp.broker.mode=cluster 时启用）
+ * STOMP 桥接只转发发给客户端的消息，各节点的 CRDT 副本和 Yjs 房间仍各自独立；
+ * 本服务把房间接受的更新按 {类型}.{文档 uniqueId} 发布到 RabbitMQ，持有同一房间的其他节点合并到本地房间。
+ * 节点在本地房间存在期间绑定对应路由键；新建房间时向其他节点请求状态，回复直接发往请求节点的匿名队列
+ */
+@Service
+@ConditionalOnProperty(name = "stomp.broker.mode", havingValue = "cluster")
+public class RoomClusterRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomClusterRelay.class);
+
+    /** 房间类型：CRDT 文档房间 */
+    public static final String CRDT = "crdt";
+    /** 房间类型：Yjs 房间 */
+    public static final String YJS = "yjs";
+
+    /** 消息类型：房间接受的更新；状态请求的回复也按更新处理 */
+    public static final String TYPE_UPDATE = "update";
+    /** 消息类型：新建房间的节点请求其他节点的状态 */
+    public static final String TYPE_STATE_REQUEST = "state-request";
+    /** 消息类型：文档已删除，其他节点关闭各自的房间 */
+    public static final String TYPE_CLOSE = "close";
+
+    private static final String KIND_HEADER = "room-kind";
+    private static final String DOC_ID_HEADER = "room-doc-id";
+    private static final String TYPE_HEADER = "room-message-type";
+    private static final String ORIGIN_HEADER = "room-origin";
+
+    /** 本节点标识，每次启动生成 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    @Qualifier("roomClusterQueue")
+    private Queue roomClusterQueue;
+
+    @Autowired
+    private DocumentRoomService documentRoomService;
+
+    @Autowired
+    private YjsRoomService yjsRoomService;
+
+    /** 已绑定的路由键 */
+    private final Set<String> bindings = ConcurrentHashMap.newKeySet();
+    /** 关联ID -> 等待第一个回复的状态请求 */
+    private final Map<String, CompletableFuture<byte[]>> pendingRequests = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 连接恢复后匿名队列被重新声明，但动态绑定需要重建
+        connectionFactory.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onCreate(Connection connection) {
+                rebindAll();
+            }
+        });
+        logger.info("Room cluster relay started on node {}", nodeId);
+    }
+
+    /**
+     * 本地房间创建时绑定，开始接收其他节点的更新
+     * @param kind 房间类型
+     * @param docId 文档唯一标识符
+     */
+    public void bind(String kind, String docId) {
+        String routingKey = routingKey(kind, docId);
+        if (bindings.add(routingKey)) {
+            try {
+                amqpAdmin.declareBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to bind {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 本地房间回收时解绑
+     * @param kind 房间类型
+     * @param docId 文档唯一标识符
+     */
+    public void unbind(String kind, String docId) {
+        String routingKey = routingKey(kind, docId);
+        if (bindings.remove(routingKey)) {
+            try {
+                amqpAdmin.removeBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to unbind {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 发布房间消息给持有同一房间的其他节点
+     * @param kind 房间类型
+     * @param docId 文档唯一标识符
+     * @param type 消息类型
+     * @param body 消息体
+     */
+    public void publish(String kind, String docId, String type, byte[] body) {
+        send(kind, docId, type, body, null);
+    }
+
+    /**
+     * 发布状态请求，其他节点的回复之后作为普通更新交给本地房间
+     * @param kind 房间类型
+     * @param docId 文档唯一标识符
+     * @param body 请求体（本地房间的状态向量）
+     */
+    public void publishStateRequest(String kind, String docId, byte[] body) {
+        send(kind, docId, TYPE_STATE_REQUEST, body, null);
+    }
+
+    /**
+     * 发布状态请求并等待第一个回复；其余节点的回复照常作为更新处理
+     * @param kind 房间类型
+     * @param docId 文档唯一标识符
+     * @param body 请求体
+     * @param timeoutMs 等待时间（毫秒）
+     * @return 回复的消息体，没有节点持有该房间或超时时返回 null
+     */
+    public byte[] requestState(String kind, String docId, byte[] body, long timeoutMs) {
+        String correlationId = UUID.randomUUID().toString();
+        CompletableFuture<byte[]> reply = new CompletableFuture<>();
+        pendingRequests.put(correlationId, reply);
+        try {
+            if (!send(kind, docId, TYPE_STATE_REQUEST, body, correlationId)) {
+                return null;
+            }
+            return reply.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            pendingRequests.remove(correlationId);
+        }
+    }
+
+    private boolean send(String kind, String docId, String type, byte[] body, String correlationId) {
+        MessageProperties properties = properties(kind, docId, type);
+        if (TYPE_STATE_REQUEST.equals(type)) {
+            properties.setReplyTo(roomClusterQueue.getName());
+            properties.setCorrelationId(correlationId);
+        }
+        try {
+            rabbitTemplate.send(StompClusterBrokerConfig.ROOM_CLUSTER_EXCHANGE, routingKey(kind, docId), new Message(body, properties));
+            return true;
+        } catch (AmqpException e) {
+            logger.warn("Failed to relay {} room message for {} to other nodes: {}", kind, docId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把其他节点的房间消息交给本地房间，状态请求的回复直接发回请求节点
+     */
+    @RabbitListener(queues = "#{roomClusterQueue.name}")
+    public void receive(Message amqpMessage) {
+        MessageProperties properties = amqpMessage.getMessageProperties();
+        if (nodeId.equals(String.valueOf(properties.getHeader(ORIGIN_HEADER)))) {
+            return;
+        }
+        String correlationId = properties.getCorrelationId();
+        String type = String.valueOf(properties.getHeader(TYPE_HEADER));
+        if (correlationId != null && TYPE_UPDATE.equals(type)) {
+            CompletableFuture<byte[]> pending = pendingRequests.remove(correlationId);
+            if (pending != null) {
+                pending.complete(amqpMessage.getBody());
+                return;
+            }
+        }
+        String kind = String.valueOf(properties.getHeader(KIND_HEADER));
+        Object docId = properties.getHeader(DOC_ID_HEADER);
+        if (docId == null) {
+            return;
+        }
+        String replyTo = properties.getReplyTo();
+        Consumer<byte[]> reply = replyTo == null ? null : body -> reply(kind, docId.toString(), replyTo, correlationId, body);
+        try {
+            if (CRDT.equals(kind)) {
+                documentRoomService.receiveRemote(docId.toString(), type, amqpMessage.getBody(), reply);
+            } else if (YJS.equals(kind) && TYPE_CLOSE.equals(type)) {
+                yjsRoomService.closeRoom(docId.toString());
+            } else if (YJS.equals(kind)) {
+                yjsRoomService.receiveRemote(docId.toString(), amqpMessage.getBody(), reply);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Dropping malformed {} room message for {}: {}", kind, docId, e.getMessage());
+        }
+    }
+
+    private void reply(String kind, String docId, String replyTo, String correlationId, byte[] body) {
+        MessageProperties properties = properties(kind, docId, TYPE_UPDATE);
+        properties.setCorrelationId(correlationId);
+        try {
+            // 默认交换机按队列名路由，回复只发给请求节点
+            rabbitTemplate.send("", replyTo, new Message(body, properties));
+        } catch (AmqpException e) {
+            logger.warn("Failed to answer {} state request for {}: {}", kind, docId, e.getMessage());
+        }
+    }
+
+    private MessageProperties properties(String kind, String docId, String type) {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(KIND_HEADER, kind);
+        properties.setHeader(DOC_ID_HEADER, docId);
+        properties.setHeader(TYPE_HEADER, type);
+        properties.setHeader(ORIGIN_HEADER, nodeId);
+        return properties;
+    }
+
+    /**
+     * 不加锁：连接工厂持有自身的锁回调此方法
+     */
+    private void rebindAll() {
+        for (String routingKey : bindings) {
+            try {
+                amqpAdmin.declareBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to restore binding {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    private static String routingKey(String kind, String docId) {
+        return kind + "." + docId;
+    }
+
+    private Binding binding(String routingKey) {
+        return new Binding(roomClusterQueue.getName(), Binding.DestinationType.QUEUE,
+                StompClusterBrokerConfig.ROOM_CLUSTER_EXCHANGE, routingKey, null);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentTombstone;
+import com.example.wsTextEditor.model.SearchIndexDeadLetter;
+import com.example.wsTextEditor.model.SearchSyncWatermark;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.DocumentTombstoneRepository;
+import com.example.wsTextEditor.repository.SearchIndexDeadLetterRepository;
+import com.example.wsTextEditor.repository.SearchSyncWatermarkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索变更同步服务
+ * 按 (updated_at, id) 水位轮询数据库中修改过的文档并批量写入 Elasticsearch，按删除触发器写入的墓碑移除已删除的文档。
+ * 不依赖修改文档的代码路径登记发件箱事件，绕过发件箱的修改最迟在下一次轮询时进入索引；
+ * 每批在事务级 advisory lock 下执行，多个节点同时运行时只有一个节点推进水位；
+ * 水位之后的文档连续失败达到上限时记为死信并跳过，不阻塞之后的变更
+ */
+@Service
+public class SearchChangeFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchChangeFeedService.class);
+
+    private static final String WATERMARK_NAME = "documents";
+
+    /** pg_try_advisory_xact_lock 的键，所有节点相同 */
+    private static final long ADVISORY_LOCK_KEY = 0x7365617263684664L;
+
+    /** 每批读取的文档数和墓碑数 */
+    @Value("${search.change-feed.batch-size:500}")
+    private int batchSize;
+
+    /** 只同步早于该时长（毫秒）之前的修改，留给较晚提交的事务和各节点的时钟偏差 */
+    @Value("${search.change-feed.lag-ms:10000}")
+    private long lagMs;
+
+    /** 每次轮询最多处理的批数 */
+    @Value("${search.change-feed.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    /** 水位之后第一个文档的最大连续失败次数，达到后记为死信并跳过 */
+    @Value("${search.change-feed.max-attempts:5}")
+    private int maxAttempts;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private SearchSyncWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private SearchIndexDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    /**
+     * 同步水位之后的修改和新的墓碑，直到没有满批或达到每次的批数上限
+     */
+    @Scheduled(fixedDelayString = "${search.change-feed.interval-ms:5000}")
+    public void sync() {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Boolean more = transactionTemplate.execute(status -> syncBatch());
+                if (!Boolean.TRUE.equals(more)) {
+                    return;
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Search change feed failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在事务中同步一批，锁随事务结束释放
+     * @return 本批是满批，可能还有更多变更
+     */
+    private boolean syncBatch() {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            logger.debug("Search change feed is running on another node");
+            return false;
+        }
+        SearchSyncWatermark watermark = watermarkRepository.findById(WATERMARK_NAME)
+                .orElseGet(() -> new SearchSyncWatermark(WATERMARK_NAME, new Date(0), 0));
+        Date before = new Date(System.currentTimeMillis() - lagMs);
+        List<Document> changed = documentRepository.findChangedAfter(watermark.getUpdatedAt(), watermark.getDocumentId(),
+                before, PageRequest.of(0, batchSize));
+        List<DocumentTombstone> tombstones = tombstoneRepository.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (changed.isEmpty() && tombstones.isEmpty()) {
+            return false;
+        }
+
+        List<String> deleteIds = tombstones.stream().map(DocumentTombstone::getUniqueId).distinct().toList();
+        Map<String, String> failures = searchIndexingService.writeDocuments(changed, deleteIds);
+
+        // 文档按水位顺序排列，水位推进到第一个失败的文档之前
+        Document last = null;
+        Document blocked = null;
+        for (Document document : changed) {
+            if (failures.containsKey(document.getUniqueId())) {
+                blocked = document;
+                break;
+            }
+            last = document;
+        }
+        if (blocked != null) {
+            // 紧跟水位的文档累计连续失败次数，达到上限后记为死信（由死信重新投递）并把水位推进到它之后
+            int attempts = last == null ? watermark.getFailedAttempts() + 1 : 1;
+            if (attempts >= maxAttempts) {
+                String error = failures.get(blocked.getUniqueId());
+                logger.error("Search change feed failed to write document {} {} times, moving to dead letters: {}",
+                        blocked.getUniqueId(), attempts, error);
+                deadLetterRepository.save(new SearchIndexDeadLetter(blocked.getUniqueId(),
+                        SearchIndexDeadLetter.Operation.INDEX, attempts, error));
+                last = blocked;
+                attempts = 0;
+            }
+            watermark.setFailedAttempts(attempts);
+        } else {
+            watermark.setFailedAttempts(0);
+        }
+        if (last != null) {
+            watermark.setUpdatedAt(last.getUpdatedAt());
+            watermark.setDocumentId(last.getId());
+        }
+        if (last != null || blocked != null) {
+            watermarkRepository.save(watermark);
+        }
+        tombstoneRepository.deleteAllInBatch(tombstones.stream()
+                .filter(tombstone -> !failures.containsKey(tombstone.getUniqueId()))
+                .toList());
+
+        if (!failures.isEmpty()) {
+            logger.warn("Search change feed failed to write {} documents, will retry from the watermark: {}",
+                    failures.size(), failures.values().iterator().next());
+            return false;
+        }
+        logger.debug("Search change feed synced {} changed documents and {} deletions up to {}",
+                changed.size(), deleteIds.size(), watermark.getUpdatedAt());
+        return changed.size() >= batchSize || tombstones.size() >= batchSize;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.SearchReindexJob;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.SearchReindexJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索索引批量写入服务
+ * 用一次 bulk 请求写入一批文档、一次按查询删除移除一批文档，并报告失败的文档；
+ * 有索引重建在进行时同时写入新索引，切换别名时新索引不会缺少重建期间的修改。
+ * 请求的持久化、合并与重试由 {@link OutboxService} 负责
+ */
+@Service
+public class SearchIndexingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexingService.class);
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentSyncService documentSyncService;
+
+    @Autowired
+    private SearchReindexJobRepository reindexJobRepository;
+
+    /**
+     * 批量写入索引更新和删除，写入时读取数据库中的最新内容
+     * @param indexIds 需要重新索引的文档 uniqueId，已删除的文档忽略
+     * @param deleteIds 需要从索引中移除的文档 uniqueId
+     * @return 写入失败的文档 uniqueId 及原因，全部成功时为空
+     */
+    public Map<String, String> write(Collection<String> indexIds, Collection<String> deleteIds) {
+        List<Document> documents;
+        try {
+            // 已删除的文档查不到，由对应的删除请求处理
+            documents = indexIds.isEmpty() ? List.of() : documentRepository.findWithOwnerByUniqueIdIn(indexIds);
+        } catch (DataAccessException e) {
+            return failAll(indexIds, deleteIds, e.getMessage());
+        }
+        return writeDocuments(documents, deleteIds);
+    }
+
+    /**
+     * 批量写入已读取的文档和删除
+     * @param documents 需要重新索引的文档（需已加载所有者）
+     * @param deleteIds 需要从索引中移除的文档 uniqueId
+     * @return 写入失败的文档 uniqueId 及原因，全部成功时为空
+     */
+    public Map<String, String> writeDocuments(List<Document> documents, Collection<String> deleteIds) {
+        List<String> indexIds = documents.stream().map(Document::getUniqueId).toList();
+        String reindexTarget;
+        try {
+            reindexTarget = reindexJobRepository.findFirstByStatusOrderByIdDesc(SearchReindexJob.Status.RUNNING)
+                    .map(SearchReindexJob::getIndexName)
+                    .orElse(null);
+        } catch (DataAccessException e) {
+            return failAll(indexIds, deleteIds, e.getMessage());
+        }
+        Map<String, String> failures = new HashMap<>();
+        writeIndexes(indexIds, documents, null, failures);
+        writeDeletes(deleteIds, null, failures);
+        if (reindexTarget != null) {
+            writeIndexes(indexIds, documents, reindexTarget, failures);
+            writeDeletes(deleteIds, reindexTarget, failures);
+        }
+        logger.debug("Wrote {} search index updates and {} deletions, {} failed",
+                documents.size(), deleteIds.size(), failures.size());
+        return failures;
+    }
+
+    private Map<String, String> failAll(Collection<String> indexIds, Collection<String> deleteIds, String error) {
+        Map<String, String> failures = new HashMap<>();
+        indexIds.forEach(uniqueId -> failures.put(uniqueId, error));
+        deleteIds.forEach(uniqueId -> failures.put(uniqueId, error));
+        return failures;
+    }
+
+    private void writeIndexes(Collection<String> indexIds, List<Document> documents, String indexName,
+                              Map<String, String> failures) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        try {
+            documentSyncService.bulkIndex(documents, indexName);
+        } catch (BulkFailureException e) {
+            // 失败项以 Elasticsearch 的 _id（文档主键）标识
+            Map<String, String> uniqueIdsById = new HashMap<>();
+            documents.forEach(document -> uniqueIdsById.put(String.valueOf(document.getId()), document.getUniqueId()));
+            e.getFailedDocuments().forEach((id, failure) -> {
+                String uniqueId = uniqueIdsById.get(id);
+                if (uniqueId != null) {
+                    failures.put(uniqueId, failure.errorMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            indexIds.forEach(uniqueId -> failures.put(uniqueId, e.getMessage()));
+        }
+    }
+
+    private void writeDeletes(Collection<String> deleteIds, String indexName, Map<String, String> failures) {
+        if (deleteIds.isEmpty()) {
+            return;
+        }
+        try {
+            documentSyncService.bulkDelete(deleteIds, indexName);
+        } catch (RuntimeException e) {
+            deleteIds.forEach(uniqueId -> failures.put(uniqueId, e.getMessage()));
+        }
+    }
+}
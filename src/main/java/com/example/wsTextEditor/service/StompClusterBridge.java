@@ -0,0 +1,323 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.config.StompClusterBrokerConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * STOMP 集群桥接服务（stomp.broker.mode=cluster 时启用）
+ * 拦截应用发往 brokerChannel 的 /topic 和 /user 消息，按目的地发布到 RabbitMQ；
+ * 其他节点的消息从本节点的匿名队列取出后重新投递给本地内存代理。
+ * 本地出现第一个订阅者（或用户的第一个连接）时绑定对应路由键，最后一个离开时解绑，
+ * 因此节点只接收本地有订阅者的目的地的流量
+ */
+@Service
+@ConditionalOnProperty(name = "stomp.broker.mode", havingValue = "cluster")
+public class StompClusterBridge implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompClusterBridge.class);
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_PREFIX = "/user/";
+
+    /** 本地消息头：该消息来自其他节点，不再转发 */
+    private static final String RELAYED_HEADER = "stompClusterRelayed";
+    private static final String DESTINATION_HEADER = "stomp-destination";
+    private static final String CONTENT_TYPE_HEADER = "stomp-content-type";
+    private static final String ORIGIN_HEADER = "stomp-origin";
+    private static final String NATIVE_HEADER_PREFIX = "stomp-native-";
+
+    /** 本节点标识，每次启动生成 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    @Qualifier("stompClusterQueue")
+    private Queue stompClusterQueue;
+
+    /** 会话ID -> (订阅ID -> /topic 目的地) */
+    private final Map<String, Map<String, String>> sessionSubscriptions = new HashMap<>();
+    /** 会话ID -> 用户路由键 */
+    private final Map<String, String> sessionUsers = new HashMap<>();
+    /** 路由键 -> 本地引用数，大于 0 时队列已绑定；连接恢复时在连接工厂的线程上无锁读取 */
+    private final Map<String, Integer> bindings = new ConcurrentHashMap<>();
+    /** 保护上面三个表的引用计数；持锁期间会调用 RabbitMQ，用 ReentrantLock 以免钉住虚拟线程 */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        brokerChannel.addInterceptor(this);
+        // 连接恢复后匿名队列被重新声明，但动态绑定需要重建
+        connectionFactory.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onCreate(Connection connection) {
+                rebindAll();
+            }
+        });
+        logger.info("STOMP cluster bridge started on node {}", nodeId);
+    }
+
+    /**
+     * 应用发往 /topic 和 /user 的消息照常交给本地代理，同时发布给其他节点
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(RELAYED_HEADER)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String routingKey = routingKey(destination);
+        if (routingKey != null) {
+            publish(routingKey, destination, message);
+        }
+        return message;
+    }
+
+    /**
+     * 路由键：/topic 目的地原样使用，未解析的用户目的地 /user/{用户名}/... 取 /user/{用户名}；
+     * 已解析为会话队列的用户消息和其他目的地不转发
+     */
+    private static String routingKey(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        if (destination.startsWith(TOPIC_PREFIX)) {
+            return destination;
+        }
+        if (destination.startsWith(USER_PREFIX)) {
+            int end = destination.indexOf('/', USER_PREFIX.length());
+            return end > USER_PREFIX.length() ? destination.substring(0, end) : null;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void publish(String routingKey, String destination, Message<?> message) {
+        Object payload = message.getPayload();
+        byte[] body;
+        if (payload instanceof byte[] bytes) {
+            body = bytes;
+        } else if (payload instanceof String text) {
+            body = text.getBytes(StandardCharsets.UTF_8);
+        } else {
+            logger.warn("Not relaying unconverted {} payload to {}", payload.getClass().getSimpleName(), destination);
+            return;
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(DESTINATION_HEADER, destination);
+        properties.setHeader(ORIGIN_HEADER, nodeId);
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            properties.setHeader(CONTENT_TYPE_HEADER, contentType.toString());
+        }
+        Map<String, List<String>> nativeHeaders =
+                (Map<String, List<String>>) message.getHeaders().get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders != null) {
+            nativeHeaders.forEach((name, values) -> properties.setHeader(NATIVE_HEADER_PREFIX + name, values));
+        }
+        try {
+            rabbitTemplate.send(StompClusterBrokerConfig.STOMP_CLUSTER_EXCHANGE, routingKey,
+                    new org.springframework.amqp.core.Message(body, properties));
+        } catch (AmqpException e) {
+            logger.warn("Failed to relay STOMP message for {} to other nodes: {}", destination, e.getMessage());
+        }
+    }
+
+    /**
+     * 把其他节点发布的消息投递给本地内存代理
+     */
+    @RabbitListener(queues = "#{stompClusterQueue.name}")
+    public void receive(org.springframework.amqp.core.Message amqpMessage) {
+        MessageProperties properties = amqpMessage.getMessageProperties();
+        if (nodeId.equals(String.valueOf(properties.getHeader(ORIGIN_HEADER)))) {
+            return;
+        }
+        Object destination = properties.getHeader(DESTINATION_HEADER);
+        if (destination == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination.toString());
+        Object contentType = properties.getHeader(CONTENT_TYPE_HEADER);
+        if (contentType != null) {
+            accessor.setContentType(MimeTypeUtils.parseMimeType(contentType.toString()));
+        }
+        properties.getHeaders().forEach((name, value) -> {
+            if (name.startsWith(NATIVE_HEADER_PREFIX) && value instanceof List<?> values) {
+                List<String> strings = new ArrayList<>(values.size());
+                values.forEach(v -> strings.add(String.valueOf(v)));
+                accessor.setNativeHeaderValues(name.substring(NATIVE_HEADER_PREFIX.length()), strings);
+            }
+        });
+        accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+        brokerChannel.send(MessageBuilder.createMessage(amqpMessage.getBody(), accessor.getMessageHeaders()));
+    }
+
+    @EventListener
+    public void handleConnected(SessionConnectedEvent event) {
+        lock.lock();
+        try {
+            Principal user = event.getUser();
+            String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+            if (user != null && sessionId != null) {
+                String routingKey = USER_PREFIX + user.getName();
+                sessionUsers.put(sessionId, routingKey);
+                retain(routingKey);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        lock.lock();
+        try {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+            String destination = accessor.getDestination();
+            if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+                return;
+            }
+            String previous = sessionSubscriptions.computeIfAbsent(accessor.getSessionId(), key -> new HashMap<>())
+                    .put(accessor.getSubscriptionId(), destination);
+            retain(destination);
+            if (previous != null) {
+                release(previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        lock.lock();
+        try {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+            Map<String, String> subscriptions = sessionSubscriptions.get(accessor.getSessionId());
+            if (subscriptions == null) {
+                return;
+            }
+            String destination = subscriptions.remove(accessor.getSubscriptionId());
+            if (destination != null) {
+                release(destination);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        lock.lock();
+        try {
+            Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+            if (subscriptions != null) {
+                subscriptions.values().forEach(this::release);
+            }
+            String userKey = sessionUsers.remove(event.getSessionId());
+            if (userKey != null) {
+                release(userKey);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retain(String routingKey) {
+        if (bindings.merge(routingKey, 1, Integer::sum) == 1) {
+            try {
+                amqpAdmin.declareBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to bind {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    private void release(String routingKey) {
+        if (!bindings.containsKey(routingKey)) {
+            return;
+        }
+        Integer remaining = bindings.computeIfPresent(routingKey, (key, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            try {
+                amqpAdmin.removeBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to unbind {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 不加锁：连接工厂持有自身的锁回调此方法，而事件处理方法在持有 lock 时会请求连接
+     */
+    private void rebindAll() {
+        for (String routingKey : bindings.keySet()) {
+            try {
+                amqpAdmin.declareBinding(binding(routingKey));
+            } catch (AmqpException e) {
+                logger.warn("Failed to restore binding {} on node {}: {}", routingKey, nodeId, e.getMessage());
+            }
+        }
+    }
+
+    private Binding binding(String routingKey) {
+        return new Binding(stompClusterQueue.getName(), Binding.DestinationType.QUEUE,
+                StompClusterBrokerConfig.STOMP_CLUSTER_EXCHANGE, routingKey, null);
+    }
+}
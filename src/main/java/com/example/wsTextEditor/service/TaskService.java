@@ -1,5 +1,6 @@
 package com.example.wsTextEditor.service;
 
+import com.example.wsTextEditor.config.RabbitMQConfig;
 import com.example.wsTextEditor.model.Document;
 import com.example.wsTextEditor.model.DocumentCollaborator;
 import com.example.wsTextEditor.model.Task;
@@ -9,6 +10,7 @@ import com.example.wsTextEditor.repository.TaskRepository;
 import com.example.wsTextEditor.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
@@ -31,7 +33,7 @@ public class TaskService {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private MessageProducerService messageProducerService;
+    private OutboxService outboxService;
     
     /**
      * 获取所有任务
@@ -65,6 +67,7 @@ public class TaskService {
      * @param username 创建者用户名
      * @return 保存后的任务对象
      */
+    @Transactional(rollbackFor = Exception.class)
     public Task createTask(Task task, String username) throws IllegalArgumentException, IllegalStateException {
         // 设置创建者
         task.setCreatedBy(username);
@@ -90,6 +93,7 @@ public class TaskService {
      * @param username 用户名
      * @throws RuntimeException 当任务不存在时抛出异常
      */
+    @Transactional(rollbackFor = Exception.class)
     public void deleteTask(Long id, String username) {
         Task task = taskRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Task not found with id: " + id));
@@ -98,7 +102,7 @@ public class TaskService {
             throw new IllegalStateException("You don't have permission to edit this task.");
         }
         
-        // 先发送删除通知，再删除任务
+        // 先登记删除通知（序列化任务内容），再删除任务
         sendTaskNotification(task, "delete");
         
         taskRepository.delete(task);
@@ -120,6 +124,7 @@ public class TaskService {
      * @param username 用户名
      * @return 更新后的任务对象
      */
+    @Transactional(rollbackFor = Exception.class)
     public Task updateTaskStatus(Long id, boolean completed, String username) throws IllegalArgumentException, IllegalStateException {
         // 查找任务
         Task task = taskRepository.findById(id)
@@ -141,25 +146,20 @@ public class TaskService {
     }
     
     /**
-     * 发送任务通知
+     * 登记任务通知，随当前事务提交后由发件箱发送
      * @param task 任务对象
      * @param action 操作类型 (create, update, delete)
      */
     private void sendTaskNotification(Task task, String action) {
-        try {
-            // 创建消息对象
-            com.example.wsTextEditor.pojo.MessageDTO message = new com.example.wsTextEditor.pojo.MessageDTO();
-            message.setType("task");
-            message.setAction(action);
-            message.setData(task);
-            // 将Date转换为LocalDateTime
-            message.setTimestamp(new Date().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
-            
-            // 发送到RabbitMQ，由MessageConsumerService处理并广播给WebSocket客户端
-            messageProducerService.sendTaskMessage(message);
-        } catch (Exception e) {
-            System.err.println("Failed to send task notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // 创建消息对象
+        com.example.wsTextEditor.pojo.MessageDTO message = new com.example.wsTextEditor.pojo.MessageDTO();
+        message.setType("task");
+        message.setAction(action);
+        message.setData(task);
+        // 将Date转换为LocalDateTime
+        message.setTimestamp(new Date().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+
+        // 写入发件箱，由 OutboxService 发送到RabbitMQ，再由MessageConsumerService广播给WebSocket客户端
+        outboxService.recordMessage(RabbitMQConfig.TASK_EXCHANGE, RabbitMQConfig.TASK_ROUTING_KEY, message);
     }
 }
\ No newline at end of file
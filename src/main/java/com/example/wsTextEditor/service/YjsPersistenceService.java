@@ -0,0 +1,202 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.YjsSnapshot;
+import com.example.wsTextEditor.model.YjsUpdateLog;
+import com.example.wsTextEditor.repository.YjsSnapshotRepository;
+import com.example.wsTextEditor.repository.YjsUpdateLogRepository;
+import com.example.wsTextEditor.yjs.YjsUpdates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Yjs 文档持久化服务
+ * 二进制更新先进入内存队列，定时批量追加到 yjs_updates 表；日志条数达到阈值后合并为 yjs_snapshots 中的快照。
+ * 房间加载时回放"快照 + 尾部日志"，不再依赖浏览器提交的全文。
+ * Yjs 更新可交换且幂等，因此写入失败重新入队、加载时读到重复数据都不会影响文档状态。
+ */
+@Service
+public class YjsPersistenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(YjsPersistenceService.class);
+
+    /** 删除已压缩日志时每条语句携带的主键数 */
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_UPDATE_SQL =
+            "INSERT INTO yjs_updates (doc_id, data, created_at) VALUES (?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private YjsUpdateLogRepository yjsUpdateLogRepository;
+
+    @Autowired
+    private YjsSnapshotRepository yjsSnapshotRepository;
+
+    /** 单次批量插入的最大条数 */
+    @Value("${yjs.persistence.batch-size:500}")
+    private int batchSize;
+
+    /** 文档日志达到该条数时压缩为快照 */
+    @Value("${yjs.persistence.compact-threshold:200}")
+    private long compactThreshold;
+
+    /** 待写入的更新 */
+    private final Queue<PendingUpdate> pending = new ConcurrentLinkedQueue<>();
+
+    /** 保证同一时刻只有一个线程在批量写入（持锁期间有 JDBC 调用，故不用 synchronized） */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private record PendingUpdate(String docId, byte[] data, LocalDateTime createdAt) {}
+
+    /**
+     * 追加一条更新，由定时任务批量写入数据库
+     * @param docId 文档唯一标识符
+     * @param update Yjs 更新（不含同步协议帧头）
+     */
+    public void append(String docId, byte[] update) {
+        pending.add(new PendingUpdate(docId, update, LocalDateTime.now()));
+    }
+
+    /**
+     * 把队列中的更新批量插入 yjs_updates
+     */
+    @Scheduled(fixedDelayString = "${yjs.persistence.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingUpdate> batch = new ArrayList<>();
+            PendingUpdate update;
+            while ((update = pending.poll()) != null) {
+                batch.add(update);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                jdbcTemplate.batchUpdate(INSERT_UPDATE_SQL, batch, batchSize, (ps, u) -> {
+                    ps.setString(1, u.docId());
+                    ps.setBytes(2, u.data());
+                    ps.setTimestamp(3, Timestamp.valueOf(u.createdAt()));
+                });
+            } catch (DataAccessException e) {
+                logger.error("Failed to persist {} Yjs updates, will retry: {}", batch.size(), e.getMessage());
+                pending.addAll(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 读取文档的持久化状态：快照在前，其后是尚未压缩的日志
+     * @param docId 文档唯一标识符
+     * @return Yjs 更新列表，文档没有持久化状态时为空
+     */
+    public List<byte[]> load(String docId) {
+        // 先写入队列中的更新，避免房间回收后立即重建时丢失
+        flush();
+        // 先读日志再读快照：中间发生的压缩只会让日志与快照重叠，不会遗漏。
+        // 日志不按快照的 lastUpdateId 过滤：其他节点迟提交的更新主键可能更小，却没有并入快照
+        List<YjsUpdateLog> tail = yjsUpdateLogRepository.findByDocIdOrderByIdAsc(docId);
+        Optional<YjsSnapshot> snapshot = yjsSnapshotRepository.findById(docId);
+        List<byte[]> updates = new ArrayList<>(tail.size() + 1);
+        snapshot.ifPresent(s -> updates.add(s.getData()));
+        for (YjsUpdateLog log : tail) {
+            updates.add(log.getData());
+        }
+        logger.debug("Loaded Yjs document {}: snapshot {}, {} tail updates", docId, snapshot.isPresent(), updates.size() - (snapshot.isPresent() ? 1 : 0));
+        return updates;
+    }
+
+    /**
+     * 定时压缩日志条数达到阈值的文档
+     */
+    @Scheduled(fixedDelayString = "${yjs.persistence.compact-interval-ms:60000}")
+    public void compact() {
+        for (String docId : yjsUpdateLogRepository.findDocIdsWithAtLeast(compactThreshold)) {
+            try {
+                compactDocument(docId);
+            } catch (RuntimeException e) {
+                logger.error("Failed to compact Yjs document {}: {}", docId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把快照与全部日志合并为新快照，并按主键删除已并入的日志。
+     * 不按主键范围删除：IDENTITY 主键按分配顺序而非提交顺序递增，范围内可能有读取时尚未提交的更新
+     * @param docId 文档唯一标识符
+     */
+    public void compactDocument(String docId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            YjsSnapshot snapshot = yjsSnapshotRepository.findById(docId).orElseGet(() -> new YjsSnapshot(docId));
+            List<YjsUpdateLog> tail = yjsUpdateLogRepository.findByDocIdOrderByIdAsc(docId);
+            if (tail.isEmpty()) {
+                return;
+            }
+            List<byte[]> updates = new ArrayList<>(tail.size() + 1);
+            if (snapshot.getData() != null) {
+                updates.add(snapshot.getData());
+            }
+            for (YjsUpdateLog log : tail) {
+                updates.add(log.getData());
+            }
+            List<Long> merged = tail.stream().map(YjsUpdateLog::getId).toList();
+            snapshot.setData(YjsUpdates.mergeUpdates(updates));
+            snapshot.setLastUpdateId(Collections.max(merged));
+            snapshot.setUpdatedAt(LocalDateTime.now());
+            yjsSnapshotRepository.save(snapshot);
+            int deleted = 0;
+            for (int from = 0; from < merged.size(); from += DELETE_CHUNK_SIZE) {
+                deleted += yjsUpdateLogRepository.deleteCompacted(merged.subList(from, Math.min(from + DELETE_CHUNK_SIZE, merged.size())));
+            }
+            logger.info("Compacted {} Yjs updates of document {} into a {} byte snapshot", deleted, docId, snapshot.getData().length);
+        });
+    }
+
+    /**
+     * 丢弃文档尚未写入的更新，房间关闭时调用
+     * @param docId 文档唯一标识符
+     */
+    public void discardPending(String docId) {
+        pending.removeIf(update -> update.docId().equals(docId));
+    }
+
+    /**
+     * 删除文档的全部 Yjs 持久化数据；调用前应先关闭文档的房间，否则之后的更新会重新写入
+     * @param docId 文档唯一标识符
+     */
+    public void deleteDocument(String docId) {
+        // 持有写入锁：已从队列取出、正在插入的批次写完后再删除
+        flushLock.lock();
+        try {
+            discardPending(docId);
+            yjsUpdateLogRepository.deleteByDocId(docId);
+            yjsSnapshotRepository.deleteById(docId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
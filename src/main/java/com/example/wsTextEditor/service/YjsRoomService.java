@@ -0,0 +1,162 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.yjs.YjsProtocol;
+import com.example.wsTextEditor.yjs.YjsRoom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Yjs 文档房间管理服务
+ * 按文档 uniqueId 在内存中保存 Yjs 更新日志，连接全部断开且空闲超时后回收；
+ * 房间创建时从持久化的快照和日志恢复，收到的更新交给 {@link YjsPersistenceService} 追加。
+ * 集群模式下本地连接的更新和 awareness 经 {@link RoomClusterRelay} 转发给持有同一文档房间的其他节点，
+ * 新建的房间再向其他节点请求本地缺少的部分；转发来的更新由接受它的节点持久化，这里只记录和下发
+ */
+@Service
+public class YjsRoomService {
+
+    private static final Logger logger = LoggerFactory.getLogger(YjsRoomService.class);
+
+    private static final byte[] QUERY_AWARENESS = {YjsProtocol.MESSAGE_QUERY_AWARENESS};
+
+    @Value("${yjs.room.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    /** 内存日志增长到该条数时合并为一条更新 */
+    @Value("${yjs.room.compact-threshold:500}")
+    private int compactThreshold;
+
+    @Autowired
+    private YjsPersistenceService yjsPersistenceService;
+
+    @Autowired
+    private ObjectProvider<RoomClusterRelay> roomClusterRelay;
+
+    /** 文档 uniqueId -> Yjs 房间 */
+    private final Map<String, YjsRoom> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * 把连接加入文档房间，房间不存在时创建
+     * @param docId 文档唯一标识符
+     * @param session WebSocket 会话
+     * @return 文档房间
+     */
+    public YjsRoom join(String docId, WebSocketSession session) {
+        // 在 compute 中加入，保证不会与空闲回收交错
+        YjsRoom existing = rooms.computeIfPresent(docId, (key, room) -> {
+            room.join(session);
+            return room;
+        });
+        if (existing != null) {
+            return existing;
+        }
+        RoomClusterRelay relay = roomClusterRelay.getIfAvailable();
+        if (relay != null) {
+            // 先绑定再加载，加载之后其他节点接受的更新不会漏掉
+            relay.bind(RoomClusterRelay.YJS, docId);
+        }
+        // 在 compute 之外读取数据库，避免长时间占用 map 的锁；并发加载时多读的一份直接丢弃
+        List<byte[]> persisted = yjsPersistenceService.load(docId);
+        Consumer<byte[]> relayListener = relay == null ? message -> {}
+                : message -> relay.publish(RoomClusterRelay.YJS, docId, RoomClusterRelay.TYPE_UPDATE, message);
+        YjsRoom[] created = new YjsRoom[1];
+        YjsRoom joined = rooms.compute(docId, (key, room) -> {
+            YjsRoom target = room != null ? room : (created[0] = new YjsRoom(key, persisted, compactThreshold,
+                    update -> yjsPersistenceService.append(key, update), relayListener));
+            target.join(session);
+            return target;
+        });
+        if (created[0] != null && relay != null) {
+            // 尚未持久化的更新和其他节点连接的 awareness 只能向其他节点的房间要
+            relay.publishStateRequest(RoomClusterRelay.YJS, docId, created[0].stateRequest());
+            relay.publishStateRequest(RoomClusterRelay.YJS, docId, QUERY_AWARENESS);
+        }
+        return joined;
+    }
+
+    /**
+     * 连接断开时离开房间
+     * @param docId 文档唯一标识符
+     * @param session WebSocket 会话
+     */
+    public void leave(String docId, WebSocketSession session) {
+        YjsRoom room = rooms.get(docId);
+        if (room != null) {
+            room.leave(session);
+        }
+    }
+
+    /**
+     * 处理其他节点转发来的消息，本地没有该文档房间时忽略
+     * @param docId 文档唯一标识符
+     * @param message Yjs 协议消息
+     * @param reply 回复请求节点，非请求消息时为 null
+     */
+    public void receiveRemote(String docId, byte[] message, Consumer<byte[]> reply) {
+        YjsRoom room = rooms.get(docId);
+        if (room != null) {
+            room.receiveRemote(message, reply);
+        }
+    }
+
+    /**
+     * 关闭并移除文档房间，丢弃其尚未写入的更新；文档删除时在本节点和其他节点上调用
+     * @param docId 文档唯一标识符
+     */
+    public void closeRoom(String docId) {
+        YjsRoom room = rooms.remove(docId);
+        if (room != null) {
+            room.close();
+            logger.info("Closed Yjs room {}", docId);
+        }
+        roomClusterRelay.ifAvailable(relay -> relay.unbind(RoomClusterRelay.YJS, docId));
+        yjsPersistenceService.discardPending(docId);
+    }
+
+    /**
+     * 删除文档的 Yjs 数据：先关闭各节点上的房间，保证之后不会再有更新写入，再删除日志和快照
+     * @param docId 文档唯一标识符
+     */
+    public void deleteDocument(String docId) {
+        closeRoom(docId);
+        roomClusterRelay.ifAvailable(relay -> relay.publish(RoomClusterRelay.YJS, docId, RoomClusterRelay.TYPE_CLOSE, new byte[0]));
+        yjsPersistenceService.deleteDocument(docId);
+    }
+
+    public YjsRoom getRoom(String docId) {
+        return rooms.get(docId);
+    }
+
+    /**
+     * 定时回收没有连接且长时间无活动的房间
+     */
+    @Scheduled(fixedDelayString = "${yjs.room.eviction-interval-ms:60000}")
+    public void evictIdleRooms() {
+        long now = System.currentTimeMillis();
+        for (String docId : rooms.keySet()) {
+            rooms.computeIfPresent(docId, (key, room) -> {
+                if (room.isIdle(now, idleTimeoutMs)) {
+                    logger.info("Evicting idle Yjs room {} with {} updates", key, room.getUpdateCount());
+                    roomClusterRelay.ifAvailable(relay -> relay.unbind(RoomClusterRelay.YJS, key));
+                    return null;
+                }
+                return room;
+            });
+        }
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.wsTextEditor.yjs;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.DocumentPermissionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Yjs 握手拦截器
+ * 握手时检查一次文档权限并写入会话属性，连接期间的每条消息不再查询数据库
+ */
+@Component
+public class YjsHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(YjsHandshakeInterceptor.class);
+
+    /** 会话属性：文档 uniqueId */
+    public static final String DOC_ID_ATTRIBUTE = "yjs.docId";
+    /** 会话属性：是否允许写入（OWNER 或 EDITOR） */
+    public static final String CAN_EDIT_ATTRIBUTE = "yjs.canEdit";
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentPermissionService documentPermissionService;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String path = request.getURI().getPath();
+        String docId = path.substring(path.lastIndexOf('/') + 1);
+        Principal principal = request.getPrincipal();
+        if (principal == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        Optional<Document> document = documentRepository.findByUniqueId(docId);
+        Optional<User> user = userRepository.findByUsername(principal.getName());
+        if (document.isEmpty() || user.isEmpty()) {
+            logger.warn("Rejecting Yjs connection of {} to unknown document {}", principal.getName(), docId);
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        // 只允许所有者和协作者连接；getUserPermissionLevel 对任何用户都回退为 VIEWER，不能用于此处
+        PermissionLevel level = documentPermissionService.getGrantedPermissionLevel(document.get(), user.get());
+        if (level == null) {
+            logger.warn("User {} is not a collaborator of document {}", principal.getName(), docId);
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+        attributes.put(DOC_ID_ATTRIBUTE, docId);
+        attributes.put(CAN_EDIT_ATTRIBUTE, level == PermissionLevel.OWNER || level == PermissionLevel.EDITOR);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.wsTextEditor.yjs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message framing of the y-websocket sync and awareness protocol (lib0 encoding).
+ * <pre>
+ * message   := messageType payload
+ * sync      := 0 syncType varUint8Array     syncType 0 = step 1 (state vector), 1 = step 2 (update), 2 = update
+ * awareness := 1 varUint8Array(count (clientId clock varString(json))*)
+ * queryAwareness := 3
+ * </pre>
+ * Routing only needs the framing; {@link YjsUpdates} reads inside updates to compact and diff them.
+ */
+public final class YjsProtocol {
+
+    public static final int MESSAGE_SYNC = 0;
+    public static final int MESSAGE_AWARENESS = 1;
+    public static final int MESSAGE_AUTH = 2;
+    public static final int MESSAGE_QUERY_AWARENESS = 3;
+
+    public static final int SYNC_STEP1 = 0;
+    public static final int SYNC_STEP2 = 1;
+    public static final int SYNC_UPDATE = 2;
+
+    /** An update with no structs and an empty delete set. */
+    public static final byte[] EMPTY_UPDATE = {0, 0};
+    /** A state vector that knows no clients. */
+    public static final byte[] EMPTY_STATE_VECTOR = {0};
+
+    private YjsProtocol() {}
+
+    public static byte[] syncMessage(int syncType, byte[] payload) {
+        Encoder encoder = new Encoder(payload.length + 8);
+        encoder.writeVarUint(MESSAGE_SYNC);
+        encoder.writeVarUint(syncType);
+        encoder.writeVarUint8Array(payload);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * The Yjs update carried by a sync step 2 or sync-update message.
+     */
+    public static byte[] updatePayload(byte[] syncMessage) {
+        Decoder decoder = new Decoder(syncMessage);
+        decoder.readVarUint();
+        decoder.readVarUint();
+        return decoder.readVarUint8Array();
+    }
+
+    public static boolean isEmptyUpdate(byte[] update) {
+        return isEmptyUpdate(update, 0, update.length);
+    }
+
+    public static boolean isEmptyUpdate(byte[] bytes, int offset, int length) {
+        return length == 0 || (length == 2 && bytes[offset] == 0 && bytes[offset + 1] == 0);
+    }
+
+    public static final class Encoder extends ByteArrayOutputStream {
+        public Encoder(int size) {
+            super(size);
+        }
+
+        public void writeVarUint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        public void writeVarUint8Array(byte[] bytes) {
+            writeVarUint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        public void writeVarString(String value) {
+            writeVarUint8Array(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        public Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public boolean hasContent() {
+            return position < bytes.length;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int readUint8() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Unexpected end of Yjs message");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        public long readVarUint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Unexpected end of Yjs message");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varUint in Yjs message");
+        }
+
+        public int readLength() {
+            long length = readVarUint();
+            if (length > bytes.length - position) {
+                throw new IllegalArgumentException("Unexpected end of Yjs message");
+            }
+            return (int) length;
+        }
+
+        public byte[] readVarUint8Array() {
+            int length = readLength();
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        public void skipVarUint8Array() {
+            skip(readLength());
+        }
+
+        /**
+         * Skip a lib0 signed varint (sign and continuation bits in the first byte, 7 bits after).
+         */
+        public void skipVarInt() {
+            while ((readUint8() & 0x80) != 0) {
+                // continuation
+            }
+        }
+
+        public void skip(int length) {
+            if (length > bytes.length - position) {
+                throw new IllegalArgumentException("Unexpected end of Yjs message");
+            }
+            position += length;
+        }
+
+        /**
+         * Copy of the bytes read since the given position.
+         */
+        public byte[] copy(int from) {
+            byte[] value = new byte[position - from];
+            System.arraycopy(bytes, from, value, 0, value.length);
+            return value;
+        }
+
+        public String readVarString() {
+            int length = readLength();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.example.wsTextEditor.yjs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * One Yjs document served by this node: the log of binary updates received for it,
+ * the awareness state of every connected client, and the connections to relay to.
+ * All methods hold the room lock so that updates are logged and relayed in one order. The lock
+ * is a ReentrantLock rather than a monitor: sends may write to the socket while it is held, and a
+ * virtual thread blocked on I/O inside a synchronized block would pin its carrier thread.
+ * <p>
+ * Updates are logged and relayed as the framed sync-update message they arrived in, without
+ * decoding them: every peer is sent a duplicate() of one read-only buffer. Each accepted update
+ * is also handed to an update listener for persistence, and once the log has grown by
+ * {@code compactThreshold} messages it is merged into a single update.
+ * <p>
+ * Only the handshake decodes: the log is compacted so that a joining client can be asked for
+ * the difference to the room's state vector and sent the difference to its own. A reconnecting
+ * client therefore sends back little more than its delete set, and what it repeats is dropped
+ * the next time the log is merged.
+ * <p>
+ * In cluster mode the same document may have a room on several nodes. Updates and awareness
+ * accepted from local connections are also handed to a relay listener, and what other nodes
+ * relay comes in through {@link #receiveRemote}: it is logged and sent to local connections
+ * but neither persisted nor relayed again, since the node that accepted it does both.
+ */
+public class YjsRoom {
+
+    private static final Logger logger = LoggerFactory.getLogger(YjsRoom.class);
+
+    private static final String NULL_STATE = "null";
+    private static final CloseStatus DOCUMENT_DELETED = CloseStatus.NORMAL.withReason("Document deleted");
+
+    private final String docId;
+    /** Sync-update messages (messageSync, syncUpdate, update) in the order they were received */
+    private final List<byte[]> updates = new ArrayList<>();
+    private final Map<String, WebSocketSession> connections = new LinkedHashMap<>();
+    /** Awareness client IDs announced by each connection, removed when it closes */
+    private final Map<String, Set<Long>> controlledClients = new LinkedHashMap<>();
+    private final Map<Long, AwarenessEntry> awareness = new LinkedHashMap<>();
+    private final int compactThreshold;
+    private final Consumer<byte[]> updateListener;
+    private final Consumer<byte[]> relayListener;
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Log size after the last compaction; the next one runs compactThreshold messages later */
+    private int compactedSize;
+    private long lastActive = System.currentTimeMillis();
+    /** Set once the document is deleted; later messages are dropped instead of logged and persisted */
+    private boolean closed;
+
+    private record AwarenessEntry(long clock, String state) {}
+
+    public YjsRoom(String docId) {
+        this(docId, List.of(), Integer.MAX_VALUE, update -> {});
+    }
+
+    public YjsRoom(String docId, List<byte[]> persistedUpdates, int compactThreshold, Consumer<byte[]> updateListener) {
+        this(docId, persistedUpdates, compactThreshold, updateListener, message -> {});
+    }
+
+    /**
+     * @param docId Document uniqueId
+     * @param persistedUpdates Updates loaded from storage (snapshot first, then the tail of the log)
+     * @param compactThreshold Number of logged messages that triggers merging the log
+     * @param updateListener Receives the payload of every accepted update, called under the room lock
+     * @param relayListener Receives every sync-update and awareness message accepted from a local
+     *                      connection, framed as sent to peers, called under the room lock
+     */
+    public YjsRoom(String docId, List<byte[]> persistedUpdates, int compactThreshold,
+                   Consumer<byte[]> updateListener, Consumer<byte[]> relayListener) {
+        this.docId = docId;
+        this.compactThreshold = compactThreshold;
+        this.updateListener = updateListener;
+        this.relayListener = relayListener;
+        if (!persistedUpdates.isEmpty()) {
+            try {
+                byte[] merged = YjsUpdates.mergeUpdates(persistedUpdates);
+                updates.add(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, merged));
+            } catch (RuntimeException e) {
+                logger.warn("Could not merge persisted updates of room {}, replaying them one by one: {}", docId, e.getMessage());
+                for (byte[] update : persistedUpdates) {
+                    updates.add(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, update));
+                }
+            }
+        }
+        this.compactedSize = updates.size();
+    }
+
+    /**
+     * Register a connection and start the handshake: ask the client for what the room is missing
+     * with the room's state vector and send the awareness of everyone already present.
+     */
+    public void join(WebSocketSession session) {
+        lock.lock();
+        try {
+            if (closed) {
+                closeQuietly(session);
+                return;
+            }
+            connections.put(session.getId(), session);
+            controlledClients.put(session.getId(), new HashSet<>());
+            lastActive = System.currentTimeMillis();
+            send(session, ByteBuffer.wrap(YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP1, encodeStateVector())));
+            if (!awareness.isEmpty()) {
+                send(session, ByteBuffer.wrap(awarenessMessage(awareness)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a connection and tell the others that its awareness states are gone.
+     */
+    public void leave(WebSocketSession session) {
+        lock.lock();
+        try {
+            connections.remove(session.getId());
+            Set<Long> clients = controlledClients.remove(session.getId());
+            lastActive = System.currentTimeMillis();
+            if (clients == null || clients.isEmpty()) {
+                return;
+            }
+            Map<Long, AwarenessEntry> removed = new LinkedHashMap<>();
+            for (Long clientId : clients) {
+                AwarenessEntry entry = awareness.remove(clientId);
+                removed.put(clientId, new AwarenessEntry(entry == null ? 1 : entry.clock() + 1, NULL_STATE));
+            }
+            byte[] message = awarenessMessage(removed);
+            broadcast(ByteBuffer.wrap(message).asReadOnlyBuffer(), null);
+            relayListener.accept(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle one protocol message from a connection.
+     * @param session The sending connection
+     * @param message The message; the room takes ownership of the array
+     * @param canEdit Whether the connection may change the document, decided once at handshake
+     */
+    public void receive(WebSocketSession session, byte[] message, boolean canEdit) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            lastActive = System.currentTimeMillis();
+            YjsProtocol.Decoder decoder = new YjsProtocol.Decoder(message);
+            int messageType = (int) decoder.readVarUint();
+            switch (messageType) {
+                case YjsProtocol.MESSAGE_SYNC -> receiveSync(session, decoder, message, canEdit);
+                case YjsProtocol.MESSAGE_AWARENESS -> receiveAwareness(session, decoder, message);
+                case YjsProtocol.MESSAGE_QUERY_AWARENESS -> send(session, ByteBuffer.wrap(awarenessMessage(awareness)));
+                default -> logger.debug("Ignoring Yjs message type {} in room {}", messageType, docId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle one message relayed by another node's room for the same document.
+     * @param message The message; the room takes ownership of the array
+     * @param reply Sends an answer back to the requesting node, null unless the message is a request
+     */
+    public void receiveRemote(byte[] message, Consumer<byte[]> reply) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            YjsProtocol.Decoder decoder = new YjsProtocol.Decoder(message);
+            int messageType = (int) decoder.readVarUint();
+            switch (messageType) {
+                case YjsProtocol.MESSAGE_SYNC -> {
+                    int syncType = (int) decoder.readVarUint();
+                    if (syncType == YjsProtocol.SYNC_STEP1) {
+                        if (reply != null) {
+                            for (ByteBuffer answer : missingFor(decoder.readVarUint8Array())) {
+                                reply.accept(toArray(answer));
+                            }
+                        }
+                    } else if (syncType == YjsProtocol.SYNC_STEP2 || syncType == YjsProtocol.SYNC_UPDATE) {
+                        acceptUpdate(message, decoder, null);
+                    }
+                }
+                case YjsProtocol.MESSAGE_AWARENESS -> receiveAwareness(null, decoder, message);
+                case YjsProtocol.MESSAGE_QUERY_AWARENESS -> {
+                    if (reply != null && !awareness.isEmpty()) {
+                        reply.accept(awarenessMessage(awareness));
+                    }
+                }
+                default -> logger.debug("Ignoring relayed Yjs message type {} in room {}", messageType, docId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The request a newly created room sends to the other nodes: a sync step 1 with its state vector.
+     */
+    public byte[] stateRequest() {
+        lock.lock();
+        try {
+            return YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP1, encodeStateVector());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void receiveSync(WebSocketSession session, YjsProtocol.Decoder decoder, byte[] message, boolean canEdit) {
+        int syncType = (int) decoder.readVarUint();
+        switch (syncType) {
+            case YjsProtocol.SYNC_STEP1 -> {
+                for (ByteBuffer answer : missingFor(decoder.readVarUint8Array())) {
+                    send(session, answer);
+                }
+            }
+            case YjsProtocol.SYNC_STEP2, YjsProtocol.SYNC_UPDATE -> {
+                if (!canEdit) {
+                    logger.debug("Dropping update from read-only connection {} in room {}", session.getId(), docId);
+                    return;
+                }
+                acceptUpdate(message, decoder, session);
+            }
+            default -> logger.debug("Ignoring Yjs sync message type {} in room {}", syncType, docId);
+        }
+    }
+
+    /**
+     * Log an update and send it to every local connection but its sender. Updates from a local
+     * connection are also persisted and relayed; relayed ones (no session) already were.
+     * The update itself is not decoded, only its length is read.
+     * @param decoder Positioned at the update payload of the message
+     */
+    private void acceptUpdate(byte[] message, YjsProtocol.Decoder decoder, WebSocketSession session) {
+        int length = decoder.readLength();
+        int offset = decoder.getPosition();
+        if (YjsProtocol.isEmptyUpdate(message, offset, length)) {
+            return;
+        }
+        // Message and sync types are single-byte varints, so a step 2 becomes an update in place
+        message[1] = YjsProtocol.SYNC_UPDATE;
+        updates.add(message);
+        broadcast(ByteBuffer.wrap(message).asReadOnlyBuffer(), session == null ? null : session.getId());
+        if (session != null) {
+            updateListener.accept(Arrays.copyOfRange(message, offset, offset + length));
+            relayListener.accept(message);
+        }
+        if (updates.size() - compactedSize >= compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * The room's state vector, taken from the log compacted into one update. If the log cannot be
+     * merged or decoded the empty state vector is sent and the peer answers with everything it has.
+     */
+    private byte[] encodeStateVector() {
+        if (updates.size() > 1) {
+            compact();
+        }
+        if (updates.size() == 1) {
+            try {
+                return YjsUpdates.encodeStateVector(YjsUpdates.stateVector(YjsProtocol.updatePayload(updates.get(0))));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Could not read the state vector of room {}: {}", docId, e.getMessage());
+            }
+        }
+        return YjsProtocol.EMPTY_STATE_VECTOR;
+    }
+
+    /**
+     * The messages that answer a state vector with the part of the log it is missing. The log is
+     * compacted first so the difference can be taken from one update; if it cannot be merged, the
+     * whole log is sent and Yjs ignores what the peer already has.
+     */
+    private List<ByteBuffer> missingFor(byte[] stateVector) {
+        if (updates.size() > 1) {
+            compact();
+        }
+        if (updates.size() == 1) {
+            try {
+                byte[] diff = YjsUpdates.diffUpdate(YjsProtocol.updatePayload(updates.get(0)),
+                        YjsUpdates.decodeStateVector(stateVector));
+                return List.of(ByteBuffer.wrap(YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP2, diff)));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Could not diff the log of room {}: {}", docId, e.getMessage());
+            }
+        }
+        List<ByteBuffer> messages = new ArrayList<>(updates.size() + 1);
+        for (byte[] update : updates) {
+            messages.add(ByteBuffer.wrap(update).asReadOnlyBuffer());
+        }
+        messages.add(ByteBuffer.wrap(YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP2, YjsProtocol.EMPTY_UPDATE)));
+        return messages;
+    }
+
+    /**
+     * Replace the log with one update holding the same state, so a joining client is sent one
+     * message instead of the whole history. Messages already relayed are unaffected.
+     */
+    private void compact() {
+        List<byte[]> payloads = new ArrayList<>(updates.size());
+        for (byte[] update : updates) {
+            payloads.add(YjsProtocol.updatePayload(update));
+        }
+        try {
+            byte[] merged = YjsUpdates.mergeUpdates(payloads);
+            logger.debug("Compacted {} updates of room {} into {} bytes", updates.size(), docId, merged.length);
+            updates.clear();
+            updates.add(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, merged));
+        } catch (RuntimeException e) {
+            logger.warn("Could not compact the update log of room {}: {}", docId, e.getMessage());
+        }
+        compactedSize = updates.size();
+    }
+
+    /**
+     * Apply an awareness update and send it on. Clients announced by another node (no session)
+     * are not owned by any local connection; that node relays their removal.
+     */
+    private void receiveAwareness(WebSocketSession session, YjsProtocol.Decoder decoder, byte[] message) {
+        YjsProtocol.Decoder update = new YjsProtocol.Decoder(decoder.readVarUint8Array());
+        long count = update.readVarUint();
+        Set<Long> clients = session == null ? null : controlledClients.get(session.getId());
+        for (long i = 0; i < count; i++) {
+            long clientId = update.readVarUint();
+            long clock = update.readVarUint();
+            String state = update.readVarString();
+            AwarenessEntry current = awareness.get(clientId);
+            if (current != null && current.clock() > clock) {
+                continue;
+            }
+            if (NULL_STATE.equals(state)) {
+                awareness.remove(clientId);
+                if (clients != null) {
+                    clients.remove(clientId);
+                }
+            } else {
+                awareness.put(clientId, new AwarenessEntry(clock, state));
+                if (clients != null) {
+                    clients.add(clientId);
+                }
+            }
+        }
+        broadcast(ByteBuffer.wrap(message).asReadOnlyBuffer(), session == null ? null : session.getId());
+        if (session != null) {
+            relayListener.accept(message);
+        }
+    }
+
+    private static byte[] awarenessMessage(Map<Long, AwarenessEntry> entries) {
+        YjsProtocol.Encoder update = new YjsProtocol.Encoder(64);
+        update.writeVarUint(entries.size());
+        entries.forEach((clientId, entry) -> {
+            update.writeVarUint(clientId);
+            update.writeVarUint(entry.clock());
+            update.writeVarString(entry.state());
+        });
+        YjsProtocol.Encoder message = new YjsProtocol.Encoder(update.size() + 8);
+        message.writeVarUint(YjsProtocol.MESSAGE_AWARENESS);
+        message.writeVarUint8Array(update.toByteArray());
+        return message.toByteArray();
+    }
+
+    private void broadcast(ByteBuffer message, String exceptSessionId) {
+        for (WebSocketSession connection : connections.values()) {
+            if (!connection.getId().equals(exceptSessionId)) {
+                // Each peer gets its own position and limit over the same bytes
+                send(connection, message.duplicate());
+            }
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer message) {
+        byte[] bytes = new byte[message.remaining()];
+        message.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private void send(WebSocketSession session, ByteBuffer message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new BinaryMessage(message));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to send Yjs message to session {} in room {}: {}", session.getId(), docId, e.getMessage());
+        }
+    }
+
+    /**
+     * Close every connection and drop whatever arrives afterwards, for a document that was deleted.
+     * Messages already being handled by another thread wait for the lock and are then dropped.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (WebSocketSession connection : connections.values()) {
+                closeQuietly(connection);
+            }
+            connections.clear();
+            controlledClients.clear();
+            awareness.clear();
+            updates.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(WebSocketSession session) {
+        try {
+            session.close(DOCUMENT_DELETED);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Failed to close session {} of room {}: {}", session.getId(), docId, e.getMessage());
+        }
+    }
+
+    public boolean isIdle(long now, long idleTimeoutMs) {
+        lock.lock();
+        try {
+            return connections.isEmpty() && now - lastActive >= idleTimeoutMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getDocId() { return docId; }
+
+    public int getConnectionCount() {
+        lock.lock();
+        try {
+            return connections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getUpdateCount() {
+        lock.lock();
+        try {
+            return updates.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package com.example.wsTextEditor.yjs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Port of Yjs {@code mergeUpdates}, {@code encodeStateVectorFromUpdate} and {@code diffUpdate}
+ * (update format v1) so the server can compact an update log and answer sync step 1 without a
+ * Y.Doc. When merging, the structs of all updates are walked per client in descending client order,
+ * overlapping structs are trimmed, gaps are filled with Skip structs and the delete sets are
+ * unioned, producing the same bytes as {@code Y.mergeUpdates}.
+ * Content is kept in its encoded form except where it has to be sliced (strings, JSON and Any
+ * arrays, deleted ranges).
+ */
+public final class YjsUpdates {
+
+    private static final int STRUCT_GC = 0;
+    private static final int STRUCT_SKIP = 10;
+
+    private static final int BIT8 = 0x80;
+    private static final int BIT7 = 0x40;
+    private static final int BIT6 = 0x20;
+    private static final int BITS5 = 0x1F;
+
+    private static final int CONTENT_DELETED = 1;
+    private static final int CONTENT_JSON = 2;
+    private static final int CONTENT_BINARY = 3;
+    private static final int CONTENT_STRING = 4;
+    private static final int CONTENT_EMBED = 5;
+    private static final int CONTENT_FORMAT = 6;
+    private static final int CONTENT_TYPE = 7;
+    private static final int CONTENT_ANY = 8;
+    private static final int CONTENT_DOC = 9;
+
+    private static final int TYPE_XML_ELEMENT = 3;
+    private static final int TYPE_XML_HOOK = 5;
+
+    private YjsUpdates() {}
+
+    /**
+     * Merge several updates into one. Like Yjs, a single update is returned unchanged.
+     */
+    public static byte[] mergeUpdates(List<byte[]> updates) {
+        if (updates.size() == 1) {
+            return updates.get(0);
+        }
+        List<StructReader> readers = new ArrayList<>(updates.size());
+        List<Map<Long, List<long[]>>> deleteSets = new ArrayList<>(updates.size());
+        for (byte[] update : updates) {
+            YjsProtocol.Decoder decoder = new YjsProtocol.Decoder(update);
+            readers.add(new StructReader(readStructs(decoder)));
+            deleteSets.add(readDeleteSet(decoder));
+        }
+
+        Comparator<StructReader> order = (r1, r2) -> {
+            Struct s1 = r1.curr;
+            Struct s2 = r2.curr;
+            if (s1.client == s2.client) {
+                // Skips are filtered out by the readers, so equal clocks compare equal
+                return Long.compare(s1.clock, s2.clock);
+            }
+            return Long.compare(s2.client, s1.client);
+        };
+
+        StructWriter writer = new StructWriter();
+        Struct currWrite = null;
+        while (true) {
+            readers.removeIf(reader -> reader.curr == null);
+            readers.sort(order);
+            if (readers.isEmpty()) {
+                break;
+            }
+            StructReader currReader = readers.get(0);
+            long firstClient = currReader.curr.client;
+
+            if (currWrite != null) {
+                Struct curr = currReader.curr;
+                boolean iterated = false;
+                // Skip everything that has been written already
+                while (curr != null && curr.clock + curr.length <= currWrite.clock + currWrite.length
+                        && curr.client >= currWrite.client) {
+                    curr = currReader.next();
+                    iterated = true;
+                }
+                if (curr == null || curr.client != firstClient
+                        || (iterated && curr.clock > currWrite.clock + currWrite.length)) {
+                    continue;
+                }
+
+                if (firstClient != currWrite.client) {
+                    writer.write(currWrite);
+                    currWrite = curr;
+                    currReader.next();
+                } else if (currWrite.clock + currWrite.length < curr.clock) {
+                    if (currWrite.kind == STRUCT_SKIP) {
+                        currWrite.length = curr.clock + curr.length - currWrite.clock;
+                    } else {
+                        writer.write(currWrite);
+                        long diff = curr.clock - currWrite.clock - currWrite.length;
+                        currWrite = Struct.skip(firstClient, currWrite.clock + currWrite.length, diff);
+                    }
+                } else {
+                    long diff = currWrite.clock + currWrite.length - curr.clock;
+                    if (diff > 0) {
+                        if (currWrite.kind == STRUCT_SKIP) {
+                            currWrite.length -= diff;
+                        } else {
+                            curr = curr.slice((int) diff, true);
+                        }
+                    }
+                    if (!currWrite.mergeWith(curr)) {
+                        writer.write(currWrite);
+                        currWrite = curr;
+                        currReader.next();
+                    }
+                }
+            } else {
+                currWrite = currReader.curr;
+                currReader.next();
+            }
+            for (Struct next = currReader.curr;
+                 next != null && next.client == firstClient
+                         && next.clock == currWrite.clock + currWrite.length && next.kind != STRUCT_SKIP;
+                 next = currReader.next()) {
+                writer.write(currWrite);
+                currWrite = next;
+            }
+        }
+        if (currWrite != null) {
+            writer.write(currWrite);
+        }
+
+        YjsProtocol.Encoder encoder = writer.finish();
+        writeDeleteSet(encoder, mergeDeleteSets(deleteSets));
+        return encoder.toByteArray();
+    }
+
+    /**
+     * The state vector of an update: per client, the clock up to which the update holds every
+     * struct from clock 0. Clients whose structs start later or after a gap stop counting there.
+     */
+    public static Map<Long, Long> stateVector(byte[] update) {
+        Map<Long, Long> stateVector = new LinkedHashMap<>();
+        List<Struct> structs = readStructs(new YjsProtocol.Decoder(update));
+        if (structs.isEmpty()) {
+            return stateVector;
+        }
+        long currClient = structs.get(0).client;
+        boolean stopCounting = structs.get(0).clock != 0;
+        long currClock = 0;
+        for (Struct curr : structs) {
+            if (currClient != curr.client) {
+                if (currClock != 0) {
+                    stateVector.put(currClient, currClock);
+                }
+                currClient = curr.client;
+                currClock = 0;
+                stopCounting = curr.clock != 0;
+            }
+            if (curr.kind == STRUCT_SKIP) {
+                stopCounting = true;
+            }
+            if (!stopCounting) {
+                currClock = curr.clock + curr.length;
+            }
+        }
+        if (currClock != 0) {
+            stateVector.put(currClient, currClock);
+        }
+        return stateVector;
+    }
+
+    public static byte[] encodeStateVector(Map<Long, Long> stateVector) {
+        YjsProtocol.Encoder encoder = new YjsProtocol.Encoder(stateVector.size() * 8 + 1);
+        encoder.writeVarUint(stateVector.size());
+        stateVector.forEach((client, clock) -> {
+            encoder.writeVarUint(client);
+            encoder.writeVarUint(clock);
+        });
+        return encoder.toByteArray();
+    }
+
+    public static Map<Long, Long> decodeStateVector(byte[] encoded) {
+        YjsProtocol.Decoder decoder = new YjsProtocol.Decoder(encoded);
+        Map<Long, Long> stateVector = new LinkedHashMap<>();
+        long size = decoder.readVarUint();
+        for (long i = 0; i < size; i++) {
+            stateVector.put(decoder.readVarUint(), decoder.readVarUint());
+        }
+        return stateVector;
+    }
+
+    /**
+     * The part of an update a peer with the given state vector is missing, like
+     * {@code Y.diffUpdate}: known structs are dropped or sliced, the delete set is kept whole.
+     */
+    public static byte[] diffUpdate(byte[] update, Map<Long, Long> stateVector) {
+        YjsProtocol.Decoder decoder = new YjsProtocol.Decoder(update);
+        List<Struct> structs = readStructs(decoder);
+        StructWriter writer = new StructWriter();
+        writeMissingStructs(structs, stateVector, writer);
+        YjsProtocol.Encoder encoder = writer.finish();
+        writeDeleteSet(encoder, readDeleteSet(decoder));
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Write the structs above the state vector, slicing the first one of a client that starts
+     * below it.
+     * @return Whether every struct was written unchanged
+     */
+    private static boolean writeMissingStructs(List<Struct> structs, Map<Long, Long> stateVector, StructWriter writer) {
+        boolean unchanged = true;
+        int i = 0;
+        while (i < structs.size()) {
+            Struct curr = structs.get(i);
+            long client = curr.client;
+            long svClock = stateVector.getOrDefault(client, 0L);
+            if (curr.kind == STRUCT_SKIP) {
+                // The first written struct of a client must not be a skip
+                unchanged = false;
+                i++;
+                continue;
+            }
+            if (curr.clock + curr.length > svClock) {
+                long offset = Math.max(svClock - curr.clock, 0);
+                if (offset > 0) {
+                    unchanged = false;
+                    curr = curr.slice((int) offset, false);
+                }
+                writer.write(curr);
+                i++;
+                while (i < structs.size() && structs.get(i).client == client) {
+                    writer.write(structs.get(i++));
+                }
+            } else {
+                unchanged = false;
+                while (i < structs.size() && structs.get(i).client == client
+                        && structs.get(i).clock + structs.get(i).length <= svClock) {
+                    i++;
+                }
+            }
+        }
+        return unchanged;
+    }
+
+    private static List<Struct> readStructs(YjsProtocol.Decoder decoder) {
+        List<Struct> structs = new ArrayList<>();
+        long numOfStateUpdates = decoder.readVarUint();
+        for (long i = 0; i < numOfStateUpdates; i++) {
+            long numberOfStructs = decoder.readVarUint();
+            long client = decoder.readVarUint();
+            long clock = decoder.readVarUint();
+            for (long j = 0; j < numberOfStructs; j++) {
+                int info = decoder.readUint8();
+                Struct struct;
+                if (info == STRUCT_SKIP) {
+                    struct = Struct.skip(client, clock, decoder.readVarUint());
+                } else if ((info & BITS5) != 0) {
+                    struct = readItem(decoder, info, client, clock);
+                } else {
+                    struct = new Struct(STRUCT_GC, client, clock, decoder.readVarUint());
+                }
+                structs.add(struct);
+                clock += struct.length;
+            }
+        }
+        return structs;
+    }
+
+    private static Struct readItem(YjsProtocol.Decoder decoder, int info, long client, long clock) {
+        Struct item = new Struct(info & BITS5, client, clock, 0);
+        if ((info & BIT8) != 0) {
+            item.origin = new long[]{decoder.readVarUint(), decoder.readVarUint()};
+        }
+        if ((info & BIT7) != 0) {
+            item.rightOrigin = new long[]{decoder.readVarUint(), decoder.readVarUint()};
+        }
+        if (item.origin == null && item.rightOrigin == null) {
+            // Parent is only encoded when it cannot be derived from the neighbours; keep it verbatim
+            item.parentSub = (info & BIT6) != 0;
+            int start = decoder.getPosition();
+            if (decoder.readVarUint() == 1) {
+                decoder.skipVarUint8Array();
+            } else {
+                decoder.readVarUint();
+                decoder.readVarUint();
+            }
+            if (item.parentSub) {
+                decoder.skipVarUint8Array();
+            }
+            item.parent = decoder.copy(start);
+        }
+
+        int start = decoder.getPosition();
+        switch (item.kind) {
+            case CONTENT_DELETED -> item.length = decoder.readVarUint();
+            case CONTENT_STRING -> {
+                item.text = decoder.readVarString();
+                item.length = item.text.length();
+            }
+            case CONTENT_JSON, CONTENT_ANY -> {
+                int count = decoder.readLength();
+                item.elements = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    int elementStart = decoder.getPosition();
+                    if (item.kind == CONTENT_JSON) {
+                        decoder.skipVarUint8Array();
+                    } else {
+                        skipAny(decoder);
+                    }
+                    item.elements.add(decoder.copy(elementStart));
+                }
+                item.length = count;
+            }
+            case CONTENT_BINARY, CONTENT_EMBED -> {
+                decoder.skipVarUint8Array();
+                item.length = 1;
+            }
+            case CONTENT_FORMAT -> {
+                decoder.skipVarUint8Array();
+                decoder.skipVarUint8Array();
+                item.length = 1;
+            }
+            case CONTENT_TYPE -> {
+                long typeRef = decoder.readVarUint();
+                if (typeRef == TYPE_XML_ELEMENT || typeRef == TYPE_XML_HOOK) {
+                    decoder.skipVarUint8Array();
+                }
+                item.length = 1;
+            }
+            case CONTENT_DOC -> {
+                decoder.skipVarUint8Array();
+                skipAny(decoder);
+                item.length = 1;
+            }
+            default -> throw new IllegalArgumentException("Unknown Yjs content type " + item.kind);
+        }
+        if (item.kind != CONTENT_STRING && item.kind != CONTENT_DELETED && item.elements == null) {
+            item.raw = decoder.copy(start);
+        }
+        return item;
+    }
+
+    /**
+     * Skip one value in lib0 "any" encoding.
+     */
+    private static void skipAny(YjsProtocol.Decoder decoder) {
+        int type = decoder.readUint8();
+        switch (type) {
+            case 127, 126, 121, 120 -> { } // undefined, null, false, true
+            case 125 -> decoder.skipVarInt();
+            case 124 -> decoder.skip(4);
+            case 123, 122 -> decoder.skip(8);
+            case 119, 116 -> decoder.skipVarUint8Array(); // string, Uint8Array
+            case 118 -> {
+                long size = decoder.readVarUint();
+                for (long i = 0; i < size; i++) {
+                    decoder.skipVarUint8Array();
+                    skipAny(decoder);
+                }
+            }
+            case 117 -> {
+                long size = decoder.readVarUint();
+                for (long i = 0; i < size; i++) {
+                    skipAny(decoder);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown lib0 any type " + type);
+        }
+    }
+
+    private static Map<Long, List<long[]>> readDeleteSet(YjsProtocol.Decoder decoder) {
+        Map<Long, List<long[]>> deleteSet = new LinkedHashMap<>();
+        long numClients = decoder.readVarUint();
+        for (long i = 0; i < numClients; i++) {
+            long client = decoder.readVarUint();
+            long numberOfDeletes = decoder.readVarUint();
+            if (numberOfDeletes > 0) {
+                List<long[]> ranges = deleteSet.computeIfAbsent(client, k -> new ArrayList<>());
+                for (long j = 0; j < numberOfDeletes; j++) {
+                    ranges.add(new long[]{decoder.readVarUint(), decoder.readVarUint()});
+                }
+            }
+        }
+        return deleteSet;
+    }
+
+    private static Map<Long, List<long[]>> mergeDeleteSets(List<Map<Long, List<long[]>>> deleteSets) {
+        Map<Long, List<long[]>> merged = new LinkedHashMap<>();
+        for (Map<Long, List<long[]>> deleteSet : deleteSets) {
+            deleteSet.forEach((client, ranges) -> {
+                List<long[]> target = merged.computeIfAbsent(client, k -> new ArrayList<>());
+                for (long[] range : ranges) {
+                    target.add(range.clone());
+                }
+            });
+        }
+        for (List<long[]> ranges : merged.values()) {
+            ranges.sort(Comparator.comparingLong(range -> range[0]));
+            int j = 1;
+            for (int i = 1; i < ranges.size(); i++) {
+                long[] left = ranges.get(j - 1);
+                long[] right = ranges.get(i);
+                if (left[0] + left[1] >= right[0]) {
+                    left[1] = Math.max(left[1], right[0] + right[1] - left[0]);
+                } else {
+                    ranges.set(j++, right);
+                }
+            }
+            ranges.subList(Math.min(j, ranges.size()), ranges.size()).clear();
+        }
+        return merged;
+    }
+
+    private static void writeDeleteSet(YjsProtocol.Encoder encoder, Map<Long, List<long[]>> deleteSet) {
+        encoder.writeVarUint(deleteSet.size());
+        deleteSet.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getKey(), a.getKey()))
+                .forEach(entry -> {
+                    encoder.writeVarUint(entry.getKey());
+                    encoder.writeVarUint(entry.getValue().size());
+                    for (long[] range : entry.getValue()) {
+                        encoder.writeVarUint(range[0]);
+                        encoder.writeVarUint(range[1]);
+                    }
+                });
+    }
+
+    /**
+     * A GC, Skip or Item struct. For items {@code kind} is the content reference number.
+     */
+    private static final class Struct {
+        final int kind;
+        final long client;
+        final long clock;
+        long length;
+        long[] origin;
+        long[] rightOrigin;
+        boolean parentSub;
+        /** Encoded parent info (and parent sub key), only present without origins */
+        byte[] parent;
+        String text;
+        List<byte[]> elements;
+        /** Encoded content of kinds that are never sliced */
+        byte[] raw;
+
+        Struct(int kind, long client, long clock, long length) {
+            this.kind = kind;
+            this.client = client;
+            this.clock = clock;
+            this.length = length;
+        }
+
+        static Struct skip(long client, long clock, long length) {
+            return new Struct(STRUCT_SKIP, client, clock, length);
+        }
+
+        boolean isItem() {
+            return kind != STRUCT_GC && kind != STRUCT_SKIP;
+        }
+
+        boolean isSkip() {
+            return kind == STRUCT_SKIP;
+        }
+
+        /**
+         * The right part of this struct starting {@code diff} positions in. The slice of an item
+         * follows the character before it.
+         * @param replaceSplitSurrogate Replace a split surrogate pair like splicing does (merge);
+         *                              diffing writes the string slice as is
+         */
+        Struct slice(int diff, boolean replaceSplitSurrogate) {
+            Struct right = new Struct(kind, client, clock + diff, length - diff);
+            if (!isItem()) {
+                return right;
+            }
+            right.origin = new long[]{client, clock + diff - 1};
+            right.rightOrigin = rightOrigin;
+            right.parentSub = parentSub;
+            switch (kind) {
+                case CONTENT_DELETED -> { }
+                case CONTENT_STRING -> {
+                    String rightText = text.substring(diff);
+                    // Yjs does not split surrogate pairs; both halves become U+FFFD
+                    if (replaceSplitSurrogate && Character.isHighSurrogate(text.charAt(diff - 1))) {
+                        rightText = '�' + rightText.substring(1);
+                    }
+                    right.text = rightText;
+                }
+                case CONTENT_JSON, CONTENT_ANY -> right.elements = new ArrayList<>(elements.subList(diff, elements.size()));
+                default -> throw new IllegalStateException("Yjs content type " + kind + " cannot be sliced");
+            }
+            return right;
+        }
+
+        /**
+         * Only GC and Skip structs merge while merging updates; items never do because they
+         * have no integrated right neighbour.
+         */
+        boolean mergeWith(Struct right) {
+            if (isItem() || kind != right.kind) {
+                return false;
+            }
+            length += right.length;
+            return true;
+        }
+
+        void write(YjsProtocol.Encoder encoder) {
+            if (kind == STRUCT_GC) {
+                encoder.write(STRUCT_GC);
+                encoder.writeVarUint(length);
+                return;
+            }
+            if (kind == STRUCT_SKIP) {
+                encoder.write(STRUCT_SKIP);
+                encoder.writeVarUint(length);
+                return;
+            }
+            int info = kind
+                    | (origin == null ? 0 : BIT8)
+                    | (rightOrigin == null ? 0 : BIT7)
+                    | (parentSub ? BIT6 : 0);
+            encoder.write(info);
+            if (origin != null) {
+                encoder.writeVarUint(origin[0]);
+                encoder.writeVarUint(origin[1]);
+            }
+            if (rightOrigin != null) {
+                encoder.writeVarUint(rightOrigin[0]);
+                encoder.writeVarUint(rightOrigin[1]);
+            }
+            if (origin == null && rightOrigin == null) {
+                encoder.write(parent, 0, parent.length);
+            }
+            switch (kind) {
+                case CONTENT_DELETED -> encoder.writeVarUint(length);
+                case CONTENT_STRING -> encoder.writeVarString(text);
+                case CONTENT_JSON, CONTENT_ANY -> {
+                    encoder.writeVarUint(elements.size());
+                    for (byte[] element : elements) {
+                        encoder.write(element, 0, element.length);
+                    }
+                }
+                default -> encoder.write(raw, 0, raw.length);
+            }
+        }
+    }
+
+    private static final class StructReader {
+        private final List<Struct> structs;
+        private int index;
+        Struct curr;
+
+        StructReader(List<Struct> structs) {
+            this.structs = structs;
+            next();
+        }
+
+        /**
+         * Advance to the next struct, ignoring Skip structs.
+         */
+        Struct next() {
+            curr = null;
+            while (index < structs.size()) {
+                Struct struct = structs.get(index++);
+                if (struct.kind != STRUCT_SKIP) {
+                    curr = struct;
+                    break;
+                }
+            }
+            return curr;
+        }
+    }
+
+    /**
+     * Writes structs grouped by client; the number of structs per client is only known at the end.
+     */
+    private static final class StructWriter {
+        private final List<byte[]> fragments = new ArrayList<>();
+        private final List<Integer> fragmentCounts = new ArrayList<>();
+        private YjsProtocol.Encoder current = new YjsProtocol.Encoder(256);
+        private long currentClient;
+        private int written;
+
+        void write(Struct struct) {
+            if (written > 0 && currentClient != struct.client) {
+                flush();
+            }
+            if (written == 0) {
+                currentClient = struct.client;
+                current.writeVarUint(struct.client);
+                current.writeVarUint(struct.clock);
+            }
+            struct.write(current);
+            written++;
+        }
+
+        private void flush() {
+            if (written > 0) {
+                fragments.add(current.toByteArray());
+                fragmentCounts.add(written);
+                current = new YjsProtocol.Encoder(256);
+                written = 0;
+            }
+        }
+
+        YjsProtocol.Encoder finish() {
+            flush();
+            YjsProtocol.Encoder encoder = new YjsProtocol.Encoder(256);
+            encoder.writeVarUint(fragments.size());
+            for (int i = 0; i < fragments.size(); i++) {
+                encoder.writeVarUint(fragmentCounts.get(i));
+                byte[] fragment = fragments.get(i);
+                encoder.write(fragment, 0, fragment.length);
+            }
+            return encoder;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.wsTextEditor.yjs;
+
+import com.example.wsTextEditor.service.YjsRoomService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Yjs WebSocket 处理器，替代独立的 Node y-websocket 服务
+ * 客户端按 y-websocket 约定连接 /yjs/{docId}，同一文档的连接共享一个 {@link YjsRoom}；
+ * 只有握手时判定为 OWNER 或 EDITOR 的连接可以写入，查看者的更新会被丢弃
+ */
+@Component
+public class YjsWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(YjsWebSocketHandler.class);
+
+    @Autowired
+    private YjsRoomService yjsRoomService;
+
+    /** 单个连接发送超时（毫秒） */
+    @Value("${yjs.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    /** 单个连接发送缓冲上限（字节） */
+    @Value("${yjs.send-buffer-size-limit:5242880}")
+    private int sendBufferSizeLimit;
+
+    /** 单条消息大小上限（字节），首次同步会发送整个文档状态，容器默认的 8KB 不够 */
+    @Value("${yjs.max-message-size:5242880}")
+    private int maxMessageSize;
+
+    /** 原始会话 ID -> 线程安全的发送包装 */
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // 文档 ID 和权限由 YjsHandshakeInterceptor 在握手时写入
+        String docId = (String) session.getAttributes().get(YjsHandshakeInterceptor.DOC_ID_ATTRIBUTE);
+        if (docId == null) {
+            logger.warn("Yjs connection {} without document ID, closing", session.getId());
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        session.setBinaryMessageSizeLimit(maxMessageSize);
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, sendBufferSizeLimit);
+        sessions.put(session.getId(), concurrentSession);
+        yjsRoomService.join(docId, concurrentSession);
+        logger.info("Yjs connection {} joined document {}", session.getId(), docId);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        String docId = (String) session.getAttributes().get(YjsHandshakeInterceptor.DOC_ID_ATTRIBUTE);
+        WebSocketSession concurrentSession = sessions.get(session.getId());
+        YjsRoom room = docId == null ? null : yjsRoomService.getRoom(docId);
+        if (room == null || concurrentSession == null) {
+            return;
+        }
+        // 容器会复用接收缓冲区，这里复制一次；之后记录日志和转发给所有连接都共用这份数据
+        byte[] payload = new byte[message.getPayloadLength()];
+        message.getPayload().get(payload);
+        boolean canEdit = Boolean.TRUE.equals(session.getAttributes().get(YjsHandshakeInterceptor.CAN_EDIT_ATTRIBUTE));
+        try {
+            room.receive(concurrentSession, payload, canEdit);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Malformed Yjs message from {} in document {}: {}", session.getId(), docId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        String docId = (String) session.getAttributes().get(YjsHandshakeInterceptor.DOC_ID_ATTRIBUTE);
+        WebSocketSession concurrentSession = sessions.remove(session.getId());
+        if (docId != null && concurrentSession != null) {
+            yjsRoomService.leave(docId, concurrentSession);
+            logger.info("Yjs connection {} left document {}", session.getId(), docId);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+-- 在 Hibernate 建表之后执行（spring.jpa.defer-datasource-initialization=true），每次启动执行，语句均可重复执行
+-- 任何语句失败都会使启动失败；可能因环境而失败的语句须在 DO 块中自行处理
+
+-- 标签关键字搜索（LIKE '%keyword%'）使用的三元组索引；数据库用户无权创建扩展或未安装 contrib 时跳过，标签搜索退化为顺序扫描
+DO '
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege OR undefined_file THEN
+    RAISE WARNING ''pg_trgm is not available, skipping the trigram index on document_tags: %'', SQLERRM;
+END';
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = ''pg_trgm'') THEN
+        CREATE INDEX IF NOT EXISTS idx_document_tags_tag_trgm ON document_tags USING gin (tag gin_trgm_ops);
+    END IF;
+END';
+
+-- 把旧版本只存在 document.tags 逗号分隔列中的标签补写到 document_tags
+INSERT INTO document_tags (document_id, tag)
+SELECT DISTINCT d.id, lower(trim(t.tag))
+FROM document d CROSS JOIN LATERAL unnest(string_to_array(d.tags, ',')) AS t(tag)
+WHERE d.tags IS NOT NULL AND trim(t.tag) <> '' AND length(trim(t.tag)) <= 100
+ON CONFLICT (document_id, tag) DO NOTHING;
+
+-- 文档删除时写入墓碑，供搜索变更同步移除索引；函数体用单引号包裹，避免按分号拆分脚本时被截断
+CREATE OR REPLACE FUNCTION record_document_tombstone() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    INSERT INTO document_tombstones (document_id, unique_id, deleted_at) VALUES (OLD.id, OLD.unique_id, now());
+    RETURN OLD;
+END';
+DROP TRIGGER IF EXISTS trg_document_tombstone ON document;
+CREATE TRIGGER trg_document_tombstone AFTER DELETE ON document FOR EACH ROW EXECUTE FUNCTION record_document_tombstone();
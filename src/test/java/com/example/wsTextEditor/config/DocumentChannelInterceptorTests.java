@@ -0,0 +1,97 @@
+package com.example.wsTextEditor.config;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentCollaborator.PermissionLevel;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.DocumentPermissionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * STOMP 订阅和发送的文档权限
+ */
+class DocumentChannelInterceptorTests {
+
+	private static final String DOC = "doc-1";
+
+	private final DocumentChannelInterceptor interceptor = new DocumentChannelInterceptor();
+	private final DocumentPermissionService documentPermissionService = mock(DocumentPermissionService.class);
+	private final Map<String, Object> sessionAttributes = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		DocumentRepository documentRepository = mock(DocumentRepository.class);
+		UserRepository userRepository = mock(UserRepository.class);
+		when(documentRepository.findByUniqueId(DOC)).thenReturn(Optional.of(new Document()));
+		when(userRepository.findByUsername(any())).thenReturn(Optional.of(new User()));
+		ReflectionTestUtils.setField(interceptor, "documentRepository", documentRepository);
+		ReflectionTestUtils.setField(interceptor, "userRepository", userRepository);
+		ReflectionTestUtils.setField(interceptor, "documentPermissionService", documentPermissionService);
+	}
+
+	@Test
+	void strangerCannotSubscribeSyncOrEdit() {
+		when(documentPermissionService.getGrantedPermissionLevel(any(), any())).thenReturn(null);
+
+		assertThrows(AccessDeniedException.class, () -> send(StompCommand.SUBSCRIBE, "/topic/doc/" + DOC));
+		assertThrows(AccessDeniedException.class, () -> send(StompCommand.SUBSCRIBE, "/topic/doc/" + DOC + "/bin"));
+		assertThrows(AccessDeniedException.class, () -> send(StompCommand.SEND, "/app/doc/" + DOC + "/sync"));
+		assertThrows(AccessDeniedException.class, () -> send(StompCommand.SEND, "/app/doc/" + DOC + "/update"));
+		// 判定结果按会话缓存
+		verify(documentPermissionService, times(1)).getGrantedPermissionLevel(any(), any());
+	}
+
+	@Test
+	void viewerCanReadButNotWrite() {
+		when(documentPermissionService.getGrantedPermissionLevel(any(), any())).thenReturn(PermissionLevel.VIEWER);
+
+		send(StompCommand.SUBSCRIBE, "/topic/doc/" + DOC);
+		send(StompCommand.SEND, "/app/doc/" + DOC + "/sync");
+		assertThrows(AccessDeniedException.class, () -> send(StompCommand.SEND, "/app/doc/" + DOC + "/operation"));
+	}
+
+	@Test
+	void editorCanWriteAndOtherDestinationsPassThrough() {
+		when(documentPermissionService.getGrantedPermissionLevel(any(), any())).thenReturn(PermissionLevel.EDITOR);
+
+		send(StompCommand.SEND, "/app/doc/" + DOC + "/update");
+		Message<byte[]> other = message(StompCommand.SUBSCRIBE, "/topic/online-users");
+		assertSame(other, interceptor.preSend(other, null));
+		verify(documentPermissionService, times(1)).getGrantedPermissionLevel(any(), any());
+	}
+
+	private void send(StompCommand command, String destination) {
+		Message<byte[]> message = message(command, destination);
+		assertSame(message, interceptor.preSend(message, null));
+	}
+
+	private Message<byte[]> message(StompCommand command, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setDestination(destination);
+		accessor.setSessionId("session-1");
+		accessor.setSessionAttributes(sessionAttributes);
+		accessor.setUser(new UsernamePasswordAuthenticationToken("alice", null));
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.wsTextEditor.controller;
+
+import com.example.wsTextEditor.Excption.DocumentConflictException;
+import com.example.wsTextEditor.Excption.GlobalExceptionHandler;
+import com.example.wsTextEditor.Excption.InvalidPatchException;
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.pojo.DocumentPatch;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.UserRepository;
+import com.example.wsTextEditor.service.DocumentContentService;
+import com.example.wsTextEditor.service.DocumentPermissionService;
+import com.example.wsTextEditor.service.DocumentWriteBehindService;
+import com.example.wsTextEditor.service.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 按版本号保存（比较并交换）
+ */
+class DocumentsControllerTests {
+
+	private static final String DOC = "doc-1";
+
+	private final DocumentsController controller = new DocumentsController();
+	private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+	private final DocumentWriteBehindService documentWriteBehindService = mock(DocumentWriteBehindService.class);
+	private final DocumentContentService documentContentService = mock(DocumentContentService.class);
+	private final OutboxService outboxService = mock(OutboxService.class);
+	private final UserDetails alice = org.springframework.security.core.userdetails.User
+			.withUsername("alice").password("x").authorities(List.of()).build();
+
+	@BeforeEach
+	void setUp() {
+		UserRepository userRepository = mock(UserRepository.class);
+		DocumentPermissionService documentPermissionService = mock(DocumentPermissionService.class);
+		when(documentRepository.findByUniqueId(DOC)).thenReturn(Optional.of(new Document()));
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User()));
+		when(documentPermissionService.canEditDocument(any(), any())).thenReturn(true);
+		ReflectionTestUtils.setField(controller, "documentRepository", documentRepository);
+		ReflectionTestUtils.setField(controller, "userRepository", userRepository);
+		ReflectionTestUtils.setField(controller, "documentPermissionService", documentPermissionService);
+		ReflectionTestUtils.setField(controller, "documentWriteBehindService", documentWriteBehindService);
+		ReflectionTestUtils.setField(controller, "documentContentService", documentContentService);
+		ReflectionTestUtils.setField(controller, "outboxService", outboxService);
+	}
+
+	@Test
+	void saveAtTheCurrentVersionStoresAndAdvancesIt() throws Exception {
+		when(documentRepository.compareAndSetVersion(eq(DOC), eq(4L), any())).thenReturn(1);
+
+		ResponseEntity<String> response = controller.updateDocumentContent(DOC, "content", 4L, alice);
+
+		assertEquals("5", response.getHeaders().getFirst(DocumentConflictException.VERSION_HEADER));
+		// 先写出延迟写入中的保存，再比较版本号
+		var order = inOrder(documentWriteBehindService, documentRepository, documentContentService);
+		order.verify(documentWriteBehindService).flushDocument(DOC);
+		order.verify(documentRepository).compareAndSetVersion(eq(DOC), eq(4L), any());
+		order.verify(documentContentService).store(DOC, "content");
+		verify(outboxService).recordSearchIndex(DOC);
+	}
+
+	@Test
+	void saveAtAStaleVersionIsAConflictCarryingTheCurrentVersion() {
+		when(documentRepository.compareAndSetVersion(eq(DOC), eq(4L), any())).thenReturn(0);
+		when(documentRepository.findVersionByUniqueId(DOC)).thenReturn(Optional.of(6L));
+
+		DocumentConflictException conflict = assertThrows(DocumentConflictException.class,
+				() -> controller.updateDocumentContent(DOC, "content", 4L, alice));
+
+		ResponseEntity<String> response = new GlobalExceptionHandler().handleDocumentConflictException(conflict);
+		assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+		assertEquals("6", response.getHeaders().getFirst(DocumentConflictException.VERSION_HEADER));
+		verify(documentContentService, never()).store(anyString(), anyString());
+	}
+
+	@Test
+	void patchOutsideTheContentIsABadRequest() {
+		DocumentPatch patch = new DocumentPatch();
+		patch.setEdits(List.of(new DocumentPatch.Edit(3, 5, "")));
+		when(documentWriteBehindService.applyPatch(eq(DOC), eq(patch), any()))
+				.thenThrow(new InvalidPatchException("Edit [3, 8) is outside the document of length 5"));
+
+		InvalidPatchException invalid = assertThrows(InvalidPatchException.class,
+				() -> controller.patchDocument(DOC, patch, alice));
+
+		assertEquals(HttpStatus.BAD_REQUEST, new GlobalExceptionHandler().handleInvalidPatchException(invalid).getStatusCode());
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.wsTextEditor.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CRDTDocumentTests {
+
+	@Test
+	void localEditsMatchPlainString() {
+		CRDTDocument document = new CRDTDocument("site-a");
+		StringBuilder expected = new StringBuilder();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			if (expected.length() > 0 && random.nextInt(4) == 0) {
+				int position = random.nextInt(expected.length());
+				int length = 1 + random.nextInt(Math.min(5, expected.length() - position));
+				document.deleteText(position, length);
+				expected.delete(position, position + length);
+			} else {
+				int position = random.nextInt(expected.length() + 1);
+				String text = String.valueOf((char) ('a' + random.nextInt(26)));
+				document.insertText(position, text);
+				expected.insert(position, text);
+			}
+		}
+		assertEquals(expected.toString(), document.getText());
+		assertEquals(expected.length(), document.getCharacterCount());
+	}
+
+	@Test
+	void sequentialTypingIsStoredAsOneBlock() {
+		CRDTDocument document = new CRDTDocument("site-a");
+		for (int i = 0; i < 200000; i++) {
+			document.insertText(i, "x");
+		}
+		assertEquals(200000, document.getText().length());
+		assertEquals(1, document.getItemCount());
+
+		// A remote insert into the middle of the run splits the block lazily
+		CRDTDocument remote = new CRDTDocument("site-b");
+		document.getOperations().forEach(remote::applyOperation);
+		document.applyOperation(remote.insertText(1000, "y"));
+		assertEquals(3, document.getItemCount());
+		assertEquals('y', document.getText().charAt(1000));
+	}
+
+	@Test
+	void reconnectingReplicaReceivesOnlyTheDelta() {
+		CRDTDocument server = new CRDTDocument("server");
+		server.insertText(0, "hello world");
+		CRDTDocument client = new CRDTDocument("client");
+		client.applyUpdate(server.diff(Collections.emptyMap()));
+
+		server.insertText(5, ",");
+		server.deleteText(7, 5);
+		server.insertText(7, "there");
+
+		CRDTUpdate delta = server.diff(client.getStateVector());
+		assertEquals(3, delta.getOperations().size()); // two insert runs plus the delete set
+		client.applyUpdate(delta);
+		assertEquals("hello, there", client.getText());
+		assertEquals(server.getStateVector(), client.getStateVector());
+	}
+
+	@Test
+	void replicasConvergeRegardlessOfDeliveryOrder() {
+		CRDTDocument siteA = new CRDTDocument("site-a");
+		CRDTDocument siteB = new CRDTDocument("site-b");
+		List<CRDTOperation> operations = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			operations.add(siteA.insertText(i, "a"));
+			operations.add(siteB.insertText(i, "b"));
+		}
+		operations.addAll(siteA.deleteText(10, 20));
+
+		CRDTDocument inOrder = new CRDTDocument("replica-1");
+		operations.forEach(inOrder::applyOperation);
+		CRDTDocument shuffled = new CRDTDocument("replica-2");
+		Collections.shuffle(operations, new Random(7));
+		operations.forEach(shuffled::applyOperation);
+
+		assertEquals(inOrder.getText(), shuffled.getText());
+		assertEquals(180, shuffled.getCharacterCount());
+	}
+
+	@Test
+	void binaryFrameRoundTripsAndIsCompact() {
+		CRDTDocument server = new CRDTDocument("server");
+		server.insertText(0, "héllo wörld");
+		server.deleteText(2, 3);
+		CRDTUpdate update = server.diff(Collections.emptyMap());
+		update.getOperations().forEach(op -> op.setSessionId("session-1"));
+
+		CRDTDocument client = new CRDTDocument("client");
+		client.applyUpdate(CRDTBinaryCodec.decode(CRDTBinaryCodec.encode(update)));
+		assertEquals(server.getText(), client.getText());
+		assertEquals(server.getStateVector(), client.getStateVector());
+
+		CRDTOperation typed = client.insertText(3, "x");
+		typed.setSessionId("session-1");
+		CRDTUpdate single = new CRDTUpdate(new ArrayList<>(List.of(typed)), Collections.emptyMap());
+		assertTrue(CRDTBinaryCodec.encode(single).length < 40);
+		assertEquals(typed.toString().replace("timestamp=" + typed.getTimestamp(), "timestamp=0"),
+				CRDTBinaryCodec.decode(CRDTBinaryCodec.encode(single)).getOperations().get(0).toString());
+	}
+
+	@Test
+	void adjacentRunsMergeIntoOneOperation() {
+		CRDTDocument document = new CRDTDocument("site-a");
+		CRDTOperation typed = document.insertText(0, "a");
+		typed = typed.mergeWith(document.insertText(1, "b"));
+		typed = typed.mergeWith(document.insertText(2, "c"));
+		assertEquals("abc", typed.getContent());
+
+		CRDTOperation backspaced = document.deleteText(2, 1).get(0);
+		backspaced = backspaced.mergeWith(document.deleteText(1, 1).get(0));
+		assertEquals(typed.getClock(), backspaced.getClock() - 1);
+		assertEquals(2, backspaced.getLength());
+
+		CRDTDocument replica = new CRDTDocument("replica");
+		replica.applyOperation(typed);
+		replica.applyOperation(backspaced);
+		assertEquals(document.getText(), replica.getText());
+	}
+}
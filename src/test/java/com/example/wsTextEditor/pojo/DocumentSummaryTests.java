@@ -0,0 +1,38 @@
+package com.example.wsTextEditor.pojo;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 仪表板游标保留 updated_at 的微秒
+ */
+class DocumentSummaryTests {
+
+	@Test
+	void cursorKeepsMicroseconds() {
+		Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123_456_000));
+		String cursor = summary(updatedAt).getCursor();
+
+		String[] position = cursor.split("_");
+		assertEquals("7", position[1]);
+		// 同一毫秒内更晚的行排在游标之后，不会被截断的游标误判为更早
+		assertEquals(updatedAt, DocumentSummary.cursorTime(Long.parseLong(position[0])));
+		assertEquals(1, Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123_457_000))
+				.compareTo(DocumentSummary.cursorTime(Long.parseLong(position[0]))));
+	}
+
+	@Test
+	void cursorOfAPlainDateUsesItsMilliseconds() {
+		assertEquals("1700000000123000_7", summary(new Date(1_700_000_000_123L)).getCursor());
+		assertEquals(new Timestamp(1_700_000_000_123L), DocumentSummary.cursorTime(1_700_000_000_123_000L));
+	}
+
+	private static DocumentSummary summary(Date updatedAt) {
+		return new DocumentSummary(7L, "doc-7", "title", "java", null, updatedAt, updatedAt, "alice", null);
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.wsTextEditor.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class DocumentChunkerTests {
+
+	private static final String DOC = "doc-1";
+
+	private JdbcTemplate jdbcTemplate;
+	private final DocumentContentService contentService = new DocumentContentService();
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		ReflectionTestUtils.setField(contentService, "jdbcTemplate", jdbcTemplate);
+	}
+
+	@Test
+	void chunksConcatenateToTheContentWithinSizeBounds() {
+		String content = randomText(300_000, 1);
+		List<String> chunks = DocumentChunker.split(content);
+		assertEquals(content, String.join("", chunks));
+		assertTrue(chunks.size() > 10);
+		for (int i = 0; i < chunks.size() - 1; i++) {
+			assertTrue(chunks.get(i).length() >= DocumentChunker.MIN_CHUNK_LENGTH);
+			assertTrue(chunks.get(i).length() <= DocumentChunker.MAX_CHUNK_LENGTH + 1);
+		}
+		assertTrue(DocumentChunker.split("").isEmpty());
+	}
+
+	@Test
+	void insertionOnlyChangesNearbyChunks() {
+		String content = randomText(300_000, 2);
+		String edited = content.substring(0, 150_000) + "inserted text" + content.substring(150_000);
+		List<String> before = DocumentChunker.split(content);
+		List<String> after = DocumentChunker.split(edited);
+
+		Set<String> unchanged = new HashSet<>(before);
+		long changed = after.stream().filter(chunk -> !unchanged.contains(chunk)).count();
+		assertTrue(changed <= 2, "changed chunks: " + changed);
+		assertEquals(before.size(), after.size());
+	}
+
+	@Test
+	void surrogatePairsAreNeverSplit() {
+		StringBuilder builder = new StringBuilder();
+		Random random = new Random(3);
+		while (builder.length() < 200_000) {
+			builder.appendCodePoint(0x1F600 + random.nextInt(64));
+		}
+		for (String chunk : DocumentChunker.split(builder.toString())) {
+			assertFalse(Character.isLowSurrogate(chunk.charAt(0)));
+			assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void storeWritesOnlyNewChunksAndReferencesAfterTheCommonPrefix() {
+		String content = randomText(300_000, 4);
+		List<String> existing = hashes(DocumentChunker.split(content));
+		when(jdbcTemplate.queryForList(startsWith("SELECT chunk_hash"), eq(String.class), eq(DOC))).thenReturn(existing);
+		String edited = content.substring(0, 200_000) + "x" + content.substring(200_000);
+		List<String> editedHashes = hashes(DocumentChunker.split(edited));
+		int common = 0;
+		while (editedHashes.get(common).equals(existing.get(common))) {
+			common++;
+		}
+
+		contentService.store(DOC, edited);
+
+		ArgumentCaptor<Collection<Object>> fresh = ArgumentCaptor.forClass(Collection.class);
+		verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO document_chunks"), fresh.capture(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		assertTrue(fresh.getValue().size() <= 2, "new chunks: " + fresh.getValue().size());
+		verify(jdbcTemplate).update(startsWith("DELETE FROM document_chunk_refs"), eq(DOC), eq(common));
+		ArgumentCaptor<BatchPreparedStatementSetter> refs = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+		verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO document_chunk_refs"), refs.capture());
+		assertEquals(editedHashes.size() - common, refs.getValue().getBatchSize());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void repeatedChunksAreWrittenOnce() {
+		String half = randomText(100_000, 5);
+		List<String> chunkHashes = hashes(DocumentChunker.split(half + half));
+		when(jdbcTemplate.queryForList(startsWith("SELECT chunk_hash"), eq(String.class), eq(DOC))).thenReturn(new ArrayList<>());
+
+		contentService.store(DOC, half + half);
+
+		ArgumentCaptor<Collection<Object>> fresh = ArgumentCaptor.forClass(Collection.class);
+		verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO document_chunks"), fresh.capture(), anyInt(),
+				any(ParameterizedPreparedStatementSetter.class));
+		assertEquals(new HashSet<>(chunkHashes).size(), fresh.getValue().size());
+		assertTrue(fresh.getValue().size() < chunkHashes.size());
+	}
+
+	@Test
+	void unchangedContentWritesNothing() {
+		String content = randomText(50_000, 6);
+		when(jdbcTemplate.queryForList(startsWith("SELECT chunk_hash"), eq(String.class), eq(DOC)))
+				.thenReturn(hashes(DocumentChunker.split(content)));
+
+		contentService.store(DOC, content);
+
+		verify(jdbcTemplate).queryForList(startsWith("SELECT chunk_hash"), eq(String.class), eq(DOC));
+		verifyNoMoreInteractions(jdbcTemplate);
+	}
+
+	private static List<String> hashes(List<String> chunks) {
+		return chunks.stream().map(DocumentWriteBehindService::contentHash).toList();
+	}
+
+	private static String randomText(int length, long seed) {
+		Random random = new Random(seed);
+		StringBuilder builder = new StringBuilder(length);
+		while (builder.length() < length) {
+			builder.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+		}
+		return builder.toString();
+	}
+}
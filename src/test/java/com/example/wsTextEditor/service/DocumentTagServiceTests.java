@@ -0,0 +1,61 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.User;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.DocumentTagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 标签追加与分面关键字
+ */
+class DocumentTagServiceTests {
+
+	private final DocumentTagService service = new DocumentTagService();
+	private final DocumentTagRepository documentTagRepository = mock(DocumentTagRepository.class);
+	private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(service, "documentTagRepository", documentTagRepository);
+		ReflectionTestUtils.setField(service, "documentRepository", documentRepository);
+	}
+
+	@Test
+	void newTagsAreAppendedWithoutSavingTheVersionedDocument() {
+		Document document = new Document();
+		document.setId(7L);
+		document.setTags("Java");
+		when(documentTagRepository.findTagsByDocumentId(7L)).thenReturn(List.of("java"));
+
+		service.addTags(document, " JAVA, Spring ,,Yjs");
+
+		verify(documentTagRepository).saveAll(anyList());
+		verify(documentRepository).appendTags(eq(7L), eq("Spring,Yjs"), any());
+		verify(documentRepository, never()).save(any());
+	}
+
+	@Test
+	void facetKeywordMatchesWildcardsLiterally() {
+		User user = new User();
+		user.setId(3L);
+
+		service.getFacets(user, " 100%_A\\b ");
+
+		verify(documentTagRepository).findFacetsByUserId(3L, "100\\%\\_a\\\\b");
+		assertEquals("plain", DocumentTagService.escapeLike("plain"));
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.Excption.DocumentConflictException;
+import com.example.wsTextEditor.Excption.InvalidPatchException;
+import com.example.wsTextEditor.Excption.GlobalExceptionHandler;
+import com.example.wsTextEditor.pojo.DocumentPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentWriteBehindServiceTests {
+
+	private static final String DOC = "doc-1";
+
+	private final DocumentWriteBehindService service = new DocumentWriteBehindService();
+	private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+	private final DocumentContentService documentContentService = mock(DocumentContentService.class);
+	private final OutboxService outboxService = mock(OutboxService.class);
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+				.thenAnswer(inv -> {
+					int[] counts = new int[inv.<Collection<?>>getArgument(1).size()];
+					Arrays.fill(counts, 1);
+					return new int[][]{counts};
+				});
+		ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+		ReflectionTestUtils.setField(service, "documentContentService", documentContentService);
+		ReflectionTestUtils.setField(service, "outboxService", outboxService);
+	}
+
+	@Test
+	void batchIsRequeuedWhenTheTransactionCannotStart() {
+		service.submit(DOC, "hello", null, null);
+		doThrow(new CannotCreateTransactionException("pool exhausted")).when(transactionTemplate).executeWithoutResult(any());
+
+		service.flush();
+
+		assertEquals(1, service.getPendingCount());
+		assertEquals("hello", service.getPendingContent(DOC));
+
+		runTransactions();
+		service.flush();
+
+		assertEquals(0, service.getPendingCount());
+		assertNull(service.getPendingContent(DOC));
+		verify(documentContentService).store(DOC, "hello");
+		verify(outboxService).recordSearchIndex(DOC);
+	}
+
+	@Test
+	void editsApplyInOrderAndMustStayInsideTheContent() {
+		List<DocumentPatch.Edit> edits = List.of(new DocumentPatch.Edit(5, 6, ", there"), new DocumentPatch.Edit(0, 1, "H"));
+		assertEquals("Hello, there", DocumentWriteBehindService.applyEdits("hello world", edits));
+		assertThrows(InvalidPatchException.class,
+				() -> DocumentWriteBehindService.applyEdits("hello", List.of(new DocumentPatch.Edit(3, 5, ""))));
+	}
+
+	@Test
+	void patchOnAStaleBaseIsAConflictCarryingTheCurrentHash() {
+		service.submit(DOC, "hello world", null, null);
+
+		DocumentConflictException conflict = assertThrows(DocumentConflictException.class,
+				() -> service.applyPatch(DOC, patch("hello", 0, 0, "x"), () -> "unused"));
+
+		assertEquals(DocumentConflictException.CONTENT_HASH_HEADER, conflict.getVersionHeader());
+		assertEquals(DocumentWriteBehindService.contentHash("hello world"), conflict.getCurrentVersion());
+		assertEquals(HttpStatus.CONFLICT, new GlobalExceptionHandler().handleDocumentConflictException(conflict).getStatusCode());
+		assertEquals("hello world", service.getPendingContent(DOC));
+	}
+
+	@Test
+	void patchWithoutPendingSaveAppliesToStoredContent() {
+		String hash = service.applyPatch(DOC, patch("stored", 6, 0, "!"), () -> "stored");
+
+		assertEquals(DocumentWriteBehindService.contentHash("stored!"), hash);
+		assertEquals("stored!", service.getPendingContent(DOC));
+	}
+
+	@Test
+	void patchDuringAFlushAppliesToTheSaveBeingWritten() {
+		service.submit(DOC, "in flight", null, null);
+		AtomicReference<String> patchedHash = new AtomicReference<>();
+		doAnswer(inv -> {
+			// The save is out of pending but not committed; the database still holds older content
+			patchedHash.set(service.applyPatch(DOC, patch("in flight", 9, 0, "!"), () -> "older stored content"));
+			inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+
+		service.flush();
+
+		verify(documentContentService).store(DOC, "in flight");
+		assertEquals(DocumentWriteBehindService.contentHash("in flight!"), patchedHash.get());
+		assertEquals("in flight!", service.getPendingContent(DOC));
+	}
+
+	@Test
+	void flushCommitsInItsOwnTransaction() {
+		DocumentWriteBehindService fresh = new DocumentWriteBehindService();
+		ReflectionTestUtils.setField(fresh, "transactionManager", mock(PlatformTransactionManager.class));
+		fresh.init();
+
+		TransactionTemplate template = (TransactionTemplate) ReflectionTestUtils.getField(fresh, "transactionTemplate");
+		// flushDocument 在保存接口的事务中调用，加入外层事务会在提交前移出 inFlight、随外层回滚丢失
+		assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, template.getPropagationBehavior());
+	}
+
+	private static DocumentPatch patch(String base, int offset, int deleteCount, String insertText) {
+		DocumentPatch patch = new DocumentPatch();
+		patch.setBaseHash(DocumentWriteBehindService.contentHash(base));
+		patch.setEdits(List.of(new DocumentPatch.Edit(offset, deleteCount, insertText)));
+		return patch;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void runTransactions() {
+		doAnswer(inv -> {
+			inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+	}
+}
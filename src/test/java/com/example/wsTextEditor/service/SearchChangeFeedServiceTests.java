@@ -0,0 +1,184 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.Document;
+import com.example.wsTextEditor.model.DocumentTombstone;
+import com.example.wsTextEditor.model.SearchIndexDeadLetter;
+import com.example.wsTextEditor.model.SearchSyncWatermark;
+import com.example.wsTextEditor.repository.DocumentRepository;
+import com.example.wsTextEditor.repository.DocumentTombstoneRepository;
+import com.example.wsTextEditor.repository.SearchIndexDeadLetterRepository;
+import com.example.wsTextEditor.repository.SearchSyncWatermarkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 按 (updated_at, id) 水位的变更同步，文档与墓碑来自内存中的列表
+ */
+class SearchChangeFeedServiceTests {
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final SearchChangeFeedService service = new SearchChangeFeedService();
+	private final List<Document> documents = new ArrayList<>();
+	private final List<DocumentTombstone> tombstones = new ArrayList<>();
+	private SearchSyncWatermark watermark;
+	private final SearchIndexingService searchIndexingService = mock(SearchIndexingService.class);
+	private final DocumentTombstoneRepository tombstoneRepository = mock(DocumentTombstoneRepository.class);
+	private final SearchIndexDeadLetterRepository deadLetterRepository = mock(SearchIndexDeadLetterRepository.class);
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any())).thenReturn(true);
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<Boolean>>getArgument(0).doInTransaction(null));
+
+		DocumentRepository documentRepository = mock(DocumentRepository.class);
+		when(documentRepository.findChangedAfter(any(), any(), any(), any())).thenAnswer(inv -> {
+			Date updatedAt = inv.getArgument(0);
+			long afterId = inv.<Long>getArgument(1);
+			Date before = inv.getArgument(2);
+			return documents.stream()
+					.filter(d -> d.getUpdatedAt().after(updatedAt) || (d.getUpdatedAt().equals(updatedAt) && d.getId() > afterId))
+					.filter(d -> !d.getUpdatedAt().after(before))
+					.limit(inv.<Pageable>getArgument(3).getPageSize())
+					.toList();
+		});
+		when(tombstoneRepository.findByOrderByIdAsc(any())).thenAnswer(inv -> List.copyOf(tombstones));
+		doAnswer(inv -> {
+			tombstones.removeAll(inv.<Collection<DocumentTombstone>>getArgument(0));
+			return null;
+		}).when(tombstoneRepository).deleteAllInBatch(anyCollection());
+
+		SearchSyncWatermarkRepository watermarkRepository = mock(SearchSyncWatermarkRepository.class);
+		when(watermarkRepository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(watermark));
+		when(watermarkRepository.save(any())).thenAnswer(inv -> watermark = inv.getArgument(0));
+		when(searchIndexingService.writeDocuments(anyList(), anyCollection())).thenReturn(Map.of());
+
+		ReflectionTestUtils.setField(service, "batchSize", 2);
+		ReflectionTestUtils.setField(service, "lagMs", 10_000L);
+		ReflectionTestUtils.setField(service, "maxBatchesPerRun", 10);
+		ReflectionTestUtils.setField(service, "maxAttempts", MAX_ATTEMPTS);
+		ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+		ReflectionTestUtils.setField(service, "documentRepository", documentRepository);
+		ReflectionTestUtils.setField(service, "tombstoneRepository", tombstoneRepository);
+		ReflectionTestUtils.setField(service, "watermarkRepository", watermarkRepository);
+		ReflectionTestUtils.setField(service, "deadLetterRepository", deadLetterRepository);
+		ReflectionTestUtils.setField(service, "searchIndexingService", searchIndexingService);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void watermarkAdvancesBatchByBatchAndSkipsRecentChanges() {
+		long now = System.currentTimeMillis();
+		document(1, now - 60_000);
+		document(2, now - 60_000);
+		document(3, now - 30_000);
+		document(4, now - 1_000);
+
+		service.sync();
+
+		ArgumentCaptor<List<Document>> written = ArgumentCaptor.forClass(List.class);
+		verify(searchIndexingService, times(2)).writeDocuments(written.capture(), anyCollection());
+		assertEquals(List.of("doc-1", "doc-2"), uniqueIds(written.getAllValues().get(0)));
+		assertEquals(List.of("doc-3"), uniqueIds(written.getAllValues().get(1)));
+		// 同一时间戳的文档按主键区分；尚在延迟窗口内的修改留到下一次
+		assertEquals(3, watermark.getDocumentId());
+		assertEquals(new Date(now - 30_000), watermark.getUpdatedAt());
+		assertEquals(0, watermark.getFailedAttempts());
+	}
+
+	@Test
+	void tombstonesAreDeletedFromTheIndexAndRemovedOnceWritten() {
+		tombstone(1, "gone-1");
+		tombstone(2, "gone-2");
+		when(searchIndexingService.writeDocuments(anyList(), anyCollection())).thenReturn(Map.of("gone-2", "unavailable"));
+
+		service.sync();
+
+		verify(searchIndexingService).writeDocuments(List.of(), List.of("gone-1", "gone-2"));
+		assertEquals(List.of("gone-2"), tombstones.stream().map(DocumentTombstone::getUniqueId).toList());
+	}
+
+	@Test
+	void failedDocumentHoldsTheWatermarkUntilItIsDeadLettered() {
+		long now = System.currentTimeMillis();
+		document(1, now - 60_000);
+		document(2, now - 50_000);
+		document(3, now - 40_000);
+		when(searchIndexingService.writeDocuments(anyList(), anyCollection())).thenReturn(Map.of("doc-2", "mapping error"));
+
+		// 第一次：水位推进到失败的文档之前
+		service.sync();
+		assertEquals(1, watermark.getDocumentId());
+		assertEquals(1, watermark.getFailedAttempts());
+
+		service.sync();
+		assertEquals(1, watermark.getDocumentId());
+		assertEquals(2, watermark.getFailedAttempts());
+		verify(deadLetterRepository, never()).save(any());
+
+		// 达到上限：记为死信，水位越过它，之后的文档照常同步
+		when(searchIndexingService.writeDocuments(anyList(), anyCollection())).thenAnswer(inv ->
+				inv.<List<Document>>getArgument(0).get(0).getId() == 2 ? Map.of("doc-2", "mapping error") : Map.of());
+		service.sync();
+		ArgumentCaptor<SearchIndexDeadLetter> deadLetter = ArgumentCaptor.forClass(SearchIndexDeadLetter.class);
+		verify(deadLetterRepository).save(deadLetter.capture());
+		assertEquals("doc-2", deadLetter.getValue().getUniqueId());
+		assertEquals(SearchIndexDeadLetter.Operation.INDEX, deadLetter.getValue().getOperation());
+		assertEquals(MAX_ATTEMPTS, deadLetter.getValue().getAttempts());
+		assertEquals(2, watermark.getDocumentId());
+		assertEquals(0, watermark.getFailedAttempts());
+
+		service.sync();
+		assertEquals(3, watermark.getDocumentId());
+		assertEquals(new Date(now - 40_000), watermark.getUpdatedAt());
+	}
+
+	private void document(long id, long updatedAt) {
+		Document document = new Document();
+		document.setId(id);
+		document.setUniqueId("doc-" + id);
+		document.setUpdatedAt(new Date(updatedAt));
+		documents.add(document);
+	}
+
+	private void tombstone(long id, String uniqueId) {
+		DocumentTombstone tombstone = new DocumentTombstone();
+		tombstone.setId(id);
+		tombstone.setUniqueId(uniqueId);
+		tombstones.add(tombstone);
+	}
+
+	private static List<String> uniqueIds(List<Document> documents) {
+		return documents.stream().map(Document::getUniqueId).toList();
+	}
+}
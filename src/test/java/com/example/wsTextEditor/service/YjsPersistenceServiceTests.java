@@ -0,0 +1,138 @@
+package com.example.wsTextEditor.service;
+
+import com.example.wsTextEditor.model.YjsSnapshot;
+import com.example.wsTextEditor.model.YjsUpdateLog;
+import com.example.wsTextEditor.repository.YjsSnapshotRepository;
+import com.example.wsTextEditor.repository.YjsUpdateLogRepository;
+import com.example.wsTextEditor.yjs.YjsUpdates;
+import com.example.wsTextEditor.yjs.YjsUpdatesTests;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshot compaction and reload over in-memory repositories, using the Yjs fixtures of {@link YjsUpdatesTests}.
+ */
+class YjsPersistenceServiceTests {
+
+	private static final String DOC = "doc-1";
+
+	private final List<YjsUpdateLog> rows = new ArrayList<>();
+	private final Map<String, YjsSnapshot> snapshots = new HashMap<>();
+	private final YjsPersistenceService service = new YjsPersistenceService();
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		YjsUpdateLogRepository logRepository = mock(YjsUpdateLogRepository.class);
+		when(logRepository.findByDocIdOrderByIdAsc(anyString())).thenAnswer(inv ->
+				rows.stream().filter(row -> row.getDocId().equals(inv.getArgument(0))).toList());
+		when(logRepository.deleteCompacted(anyCollection())).thenAnswer(inv -> {
+			int before = rows.size();
+			rows.removeIf(row -> inv.<Collection<Long>>getArgument(0).contains(row.getId()));
+			return before - rows.size();
+		});
+		YjsSnapshotRepository snapshotRepository = mock(YjsSnapshotRepository.class);
+		when(snapshotRepository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(snapshots.get(inv.<String>getArgument(0))));
+		when(snapshotRepository.save(any())).thenAnswer(inv -> {
+			YjsSnapshot snapshot = inv.getArgument(0);
+			snapshots.put(snapshot.getDocId(), snapshot);
+			return snapshot;
+		});
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		doAnswer(inv -> {
+			inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+
+		ReflectionTestUtils.setField(service, "yjsUpdateLogRepository", logRepository);
+		ReflectionTestUtils.setField(service, "yjsSnapshotRepository", snapshotRepository);
+		ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+		for (byte[] update : YjsUpdatesTests.LOG) {
+			YjsUpdateLog row = new YjsUpdateLog();
+			row.setId((long) rows.size() + 1);
+			row.setDocId(DOC);
+			row.setData(update);
+			rows.add(row);
+		}
+	}
+
+	@Test
+	void compactionReplacesTheLogWithOneSnapshot() {
+		service.compactDocument(DOC);
+
+		YjsSnapshot snapshot = snapshots.get(DOC);
+		assertArrayEquals(YjsUpdatesTests.MERGED, snapshot.getData());
+		assertEquals(YjsUpdatesTests.LOG.size(), snapshot.getLastUpdateId());
+		assertTrue(rows.isEmpty());
+		List<byte[]> loaded = service.load(DOC);
+		assertEquals(1, loaded.size());
+		assertArrayEquals(YjsUpdatesTests.MERGED, loaded.get(0));
+	}
+
+	@Test
+	void compactionMergesTheTailIntoAnExistingSnapshot() {
+		snapshot(YjsUpdatesTests.COMPACTED, 3L);
+		rows.removeIf(row -> row.getId() <= 3);
+
+		service.compactDocument(DOC);
+
+		assertArrayEquals(YjsUpdatesTests.MERGED, snapshots.get(DOC).getData());
+		assertEquals(YjsUpdatesTests.LOG.size(), snapshots.get(DOC).getLastUpdateId());
+	}
+
+	@Test
+	void reloadMergesRowsThatOverlapTheSnapshot() {
+		// A compaction committed between reading the log and reading the snapshot: rows 1 to 3 are in both
+		snapshot(YjsUpdatesTests.COMPACTED, 3L);
+
+		List<byte[]> loaded = service.load(DOC);
+
+		assertEquals(1 + YjsUpdatesTests.LOG.size(), loaded.size());
+		assertArrayEquals(YjsUpdatesTests.COMPACTED, loaded.get(0));
+		assertArrayEquals(YjsUpdatesTests.MERGED, YjsUpdates.mergeUpdates(loaded));
+	}
+
+	@Test
+	void rowCommittedLateBelowTheSnapshotIsKeptUntilItIsMerged() {
+		// Row 2 was allocated its id before row 9 but was not yet visible to the first compaction
+		YjsUpdateLog late = rows.remove(1);
+		service.compactDocument(DOC);
+		assertEquals(YjsUpdatesTests.LOG.size(), snapshots.get(DOC).getLastUpdateId());
+
+		rows.add(late);
+		List<byte[]> loaded = service.load(DOC);
+		assertEquals(2, loaded.size());
+		assertArrayEquals(late.getData(), loaded.get(1));
+
+		service.compactDocument(DOC);
+		assertTrue(rows.isEmpty());
+	}
+
+	private void snapshot(byte[] data, Long lastUpdateId) {
+		YjsSnapshot snapshot = new YjsSnapshot(DOC);
+		snapshot.setData(data);
+		snapshot.setLastUpdateId(lastUpdateId);
+		snapshots.put(DOC, snapshot);
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.wsTextEditor.yjs;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Updates relayed between the rooms of one document on different nodes
+ */
+class YjsRoomTests {
+
+	private final List<byte[]> persisted = new ArrayList<>();
+	private final List<byte[]> relayed = new ArrayList<>();
+	private final YjsRoom room = new YjsRoom("doc-1", List.of(), Integer.MAX_VALUE, persisted::add, relayed::add);
+
+	@Test
+	void localUpdatesArePersistedAndRelayedButRelayedOnesOnlyReachLocalConnections() throws Exception {
+		WebSocketSession writer = session("writer");
+		WebSocketSession reader = session("reader");
+		room.join(writer);
+		room.join(reader);
+
+		byte[] local = YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.LOG.get(0));
+		room.receive(writer, local, true);
+		assertArrayEquals(YjsUpdatesTests.LOG.get(0), persisted.get(0));
+		// The frame is relayed as received, not decoded and re-encoded
+		assertSame(local, relayed.get(0));
+
+		room.receiveRemote(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.LOG.get(2)), null);
+		assertEquals(1, persisted.size());
+		assertEquals(1, relayed.size());
+		assertEquals(2, room.getUpdateCount());
+		// Step 1 and the local update for the reader, then the relayed update for both
+		verify(reader, times(3)).sendMessage(any(BinaryMessage.class));
+		verify(writer, times(2)).sendMessage(any(BinaryMessage.class));
+	}
+
+	@Test
+	void joiningClientIsAskedForWhatTheCompactedLogIsMissing() throws Exception {
+		YjsRoom restored = new YjsRoom("doc-1", YjsUpdatesTests.LOG.subList(0, 3), Integer.MAX_VALUE, persisted::add);
+		restored.receive(session("writer"), YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.LOG.get(3)), true);
+		WebSocketSession client = session("client");
+		restored.join(client);
+
+		ArgumentCaptor<BinaryMessage> step1 = ArgumentCaptor.forClass(BinaryMessage.class);
+		verify(client).sendMessage(step1.capture());
+		byte[] stateVector = YjsUpdates.encodeStateVector(YjsUpdates.stateVector(YjsUpdates.mergeUpdates(YjsUpdatesTests.LOG.subList(0, 4))));
+		assertArrayEquals(YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP1, stateVector), step1.getValue().getPayload().array());
+		assertEquals(1, restored.getUpdateCount());
+	}
+
+	@Test
+	void stateRequestFromAnotherNodeIsAnsweredWithTheMissingPart() {
+		room.receiveRemote(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.COMPACTED), null);
+
+		List<byte[]> answers = new ArrayList<>();
+		room.receiveRemote(YjsProtocol.syncMessage(YjsProtocol.SYNC_STEP1, YjsProtocol.EMPTY_STATE_VECTOR), answers::add);
+		assertEquals(1, answers.size());
+		assertArrayEquals(YjsUpdatesTests.COMPACTED, YjsProtocol.updatePayload(answers.get(0)));
+	}
+
+	@Test
+	void closedRoomClosesItsConnectionsAndDropsLaterUpdates() throws Exception {
+		WebSocketSession writer = session("writer");
+		room.join(writer);
+		room.close();
+
+		verify(writer).close(any(CloseStatus.class));
+		room.receive(writer, YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.LOG.get(0)), true);
+		room.receiveRemote(YjsProtocol.syncMessage(YjsProtocol.SYNC_UPDATE, YjsUpdatesTests.LOG.get(2)), null);
+		assertTrue(persisted.isEmpty());
+		assertTrue(relayed.isEmpty());
+		assertEquals(0, room.getUpdateCount());
+	}
+
+	private static WebSocketSession session(String id) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		return session;
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.wsTextEditor.yjs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Expected bytes were produced by Yjs 13 from two docs with client IDs 1 and 2 editing
+ * "monaco": "hello world" -> "hello, there 😀!" with a concurrent insert, a delete and a map entry.
+ * The log holds duplicates, as a room's log does after reconnects. The fixtures are shared with
+ * the persistence tests.
+ */
+public class YjsUpdatesTests {
+
+	private static final HexFormat HEX = HexFormat.of();
+
+	public static final List<byte[]> LOG = hex(
+			"010101000401066d6f6e61636f0b68656c6c6f20776f726c6400",
+			"010101000401066d6f6e61636f0b68656c6c6f20776f726c6400",
+			"01010200c401040105012c00",
+			"000101010605",
+			"0101010b84010a0a746865726520f09f988000",
+			"010101132801046d657461046c616e670177046a61766100",
+			"01010200c401040105012c00",
+			"0102010b84010a0a746865726520f09f98802801046d657461046c616e670177046a6176610101010605",
+			"01010201840112012100");
+
+	/** Y.mergeUpdates(LOG) */
+	public static final byte[] MERGED = HEX.parseHex("02020200c401040105012c84011201210301000401066d6f6e61636f0b68656c6c6f"
+			+ "20776f726c6484010a0a746865726520f09f98802801046d657461046c616e670177046a6176610101010605");
+
+	/** Y.mergeUpdates(LOG.slice(0, 3)) */
+	public static final byte[] COMPACTED = HEX.parseHex("02010200c401040105012c0101000401066d6f6e61636f0b68656c6c6f20776f726c6400");
+
+	@Test
+	void mergeMatchesYjs() {
+		assertArrayEquals(MERGED, YjsUpdates.mergeUpdates(LOG));
+		assertArrayEquals(COMPACTED, YjsUpdates.mergeUpdates(LOG.subList(0, 3)));
+	}
+
+	@Test
+	void mergingACompactedSnapshotWithItsTailEqualsMergingEverything() {
+		List<byte[]> afterCompaction = new ArrayList<>();
+		afterCompaction.add(YjsUpdates.mergeUpdates(LOG.subList(0, 3)));
+		afterCompaction.addAll(LOG.subList(3, LOG.size()));
+		assertArrayEquals(MERGED, YjsUpdates.mergeUpdates(afterCompaction));
+
+		// Compacting again over a snapshot that overlaps its tail changes nothing
+		afterCompaction.add(0, MERGED);
+		assertArrayEquals(MERGED, YjsUpdates.mergeUpdates(afterCompaction));
+		assertSame(MERGED, YjsUpdates.mergeUpdates(List.of(MERGED)));
+	}
+
+	@Test
+	void stateVectorAndDiffMatchYjs() {
+		assertEquals(Map.of(1L, 20L, 2L, 2L), YjsUpdates.stateVector(MERGED));
+		Map<Long, Long> compactedState = YjsUpdates.stateVector(COMPACTED);
+		assertArrayEquals(HEX.parseHex("020201010b"), YjsUpdates.encodeStateVector(compactedState));
+		assertEquals(compactedState, YjsUpdates.decodeStateVector(HEX.parseHex("020201010b")));
+
+		assertArrayEquals(HEX.parseHex("02010201840112012102010b84010a0a746865726520f09f98802801046d657461046c616e670177046a6176610101010605"),
+				YjsUpdates.diffUpdate(MERGED, compactedState));
+		// A state vector inside "hello world" slices the struct after "hello"
+		assertArrayEquals(HEX.parseHex("02020200c401040105012c84011201210301058401040620776f726c6484010a0a746865726520f09f98802801046d657461046c616e670177046a6176610101010605"),
+				YjsUpdates.diffUpdate(MERGED, Map.of(1L, 5L)));
+	}
+
+	private static List<byte[]> hex(String... updates) {
+		List<byte[]> result = new ArrayList<>();
+		for (String update : updates) {
+			result.add(HEX.parseHex(update));
+		}
+		return result;
+	}
+}